@@ -0,0 +1,101 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jweather.metar.Metar;
+import net.sf.jweather.metar.MetarParseException;
+import net.sf.jweather.metar.MetarParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the Metar unit conversion getters on the parsed corpus. The
+ * primitive get...Value() getters and their boxed counterparts are measured
+ * separately, so the allocation profile shows what boxing costs.
+ *
+ * @see MetarCorpus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MetarGettersBenchmark {
+    private Metar[] metars;
+
+    @Setup
+    public void setUp() throws MetarParseException {
+        metars = new Metar[MetarCorpus.SIZE];
+        for (int i = 0; i < metars.length; i++) {
+            metars[i] = MetarParser.parseRecord(MetarCorpus.RECORDS[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void primitiveConversions(Blackhole blackhole) {
+        for (int i = 0; i < metars.length; i++) {
+            Metar metar = metars[i];
+            blackhole.consume(metar.getWindSpeedInMPHValue());
+            blackhole.consume(metar.getWindSpeedInMPSValue());
+            blackhole.consume(metar.getWindGustsInMPHValue());
+            blackhole.consume(metar.getVisibilityInKilometersValue());
+            blackhole.consume(metar.getVisibilityInMetersValue());
+            blackhole.consume(metar.getPressureInHectoPascalsValue());
+            blackhole.consume(metar.getTemperatureInFahrenheitValue());
+            blackhole.consume(metar.getTemperatureMostPreciseInFahrenheitValue());
+            blackhole.consume(metar.getDewPointInFahrenheitValue());
+            blackhole.consume(metar.getDewPointMostPreciseInFahrenheitValue());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void boxedConversions(Blackhole blackhole) {
+        for (int i = 0; i < metars.length; i++) {
+            Metar metar = metars[i];
+            blackhole.consume(metar.getWindSpeedInMPH());
+            blackhole.consume(metar.getWindSpeedInMPS());
+            blackhole.consume(metar.getWindGustsInMPH());
+            blackhole.consume(metar.getVisibilityInKilometers());
+            blackhole.consume(metar.getVisibilityInMeters());
+            blackhole.consume(metar.getPressureInHectoPascals());
+            blackhole.consume(metar.getTemperatureInFahrenheit());
+            blackhole.consume(metar.getTemperatureMostPreciseInFahrenheit());
+            blackhole.consume(metar.getDewPointInFahrenheit());
+            blackhole.consume(metar.getDewPointMostPreciseInFahrenheit());
+        }
+    }
+}
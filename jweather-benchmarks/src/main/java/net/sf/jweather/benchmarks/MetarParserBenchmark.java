@@ -0,0 +1,117 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.benchmarks;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jweather.metar.MetarParseException;
+import net.sf.jweather.metar.MetarParser;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the MetarParser entry points over the fixed corpus. Every
+ * invocation parses the whole corpus, and scores are per record.
+ *
+ * @see MetarCorpus
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MetarParserBenchmark {
+    private String[] records;
+
+    private String[] reports;
+
+    private byte[][] recordBytes;
+
+    private Instant reference;
+
+    @Setup
+    public void setUp() {
+        records = MetarCorpus.RECORDS;
+        reports = MetarCorpus.reports();
+        recordBytes = MetarCorpus.recordBytes();
+        reference = Instant.parse("2004-01-31T00:00:00Z");
+    }
+
+    /**
+     * A report line, dated against the current time.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void parseReport(Blackhole blackhole) throws MetarParseException {
+        for (int i = 0; i < reports.length; i++) {
+            blackhole.consume(MetarParser.parseReport(reports[i]));
+        }
+    }
+
+    /**
+     * A report line, dated against a fixed reference.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void parseReportWithReference(Blackhole blackhole)
+            throws MetarParseException {
+        for (int i = 0; i < reports.length; i++) {
+            blackhole.consume(MetarParser.parseReport(reports[i], reference));
+        }
+    }
+
+    /**
+     * A date line and report held in one String.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void parseRecord(Blackhole blackhole) throws MetarParseException {
+        for (int i = 0; i < records.length; i++) {
+            blackhole.consume(MetarParser.parseRecord(records[i]));
+        }
+    }
+
+    /**
+     * A date line and report held as ASCII bytes, as downloaded.
+     */
+    @Benchmark
+    @OperationsPerInvocation(MetarCorpus.SIZE)
+    public void parseRecordBytes(Blackhole blackhole)
+            throws MetarParseException {
+        for (int i = 0; i < recordBytes.length; i++) {
+            blackhole.consume(MetarParser.parseRecord(recordBytes[i], 0,
+                    recordBytes[i].length));
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import net.sf.jweather.station.StationSearch;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time per station-name search on the bundled station lists, for every
+ * keystroke of a few queries typed into an autocomplete box, some of them
+ * misspelled.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class StationSearchBenchmark {
+    private static final String[] TYPED = { "london heathrow", "San Francisco",
+            "frankfurt m", "sao paulo", "zurich", "KLAX", "united kingdom" };
+
+    private static final String[] MISSPELLED = { "londn heatrow",
+            "san fransisco", "frankfrt", "heatrow", "zuric" };
+
+    private StationSearch search;
+
+    private String[] typed;
+
+    private String[] misspelled;
+
+    private int next;
+
+    @Setup
+    public void setUp() {
+        search = StationSearch.getDefault();
+        typed = keystrokes(TYPED);
+        misspelled = MISSPELLED;
+    }
+
+    private static String[] keystrokes(String[] queries) {
+        int n = 0;
+        for (int i = 0; i < queries.length; i++) {
+            n += queries[i].length();
+        }
+        String[] keystrokes = new String[n];
+        n = 0;
+        for (int i = 0; i < queries.length; i++) {
+            for (int j = 1; j <= queries[i].length(); j++) {
+                keystrokes[n++] = queries[i].substring(0, j);
+            }
+        }
+        return keystrokes;
+    }
+
+    @Benchmark
+    public int[] typed() {
+        next = next + 1 == typed.length ? 0 : next + 1;
+        return search.search(typed[next], 10);
+    }
+
+    @Benchmark
+    public int[] misspelled() {
+        next = next + 1 == misspelled.length ? 0 : next + 1;
+        return search.search(misspelled[next], 10);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import net.sf.jweather.metar.Metar;
+
+/**
+ * Gets the reports of many stations with at most a given number of downloads
+ * in flight. Each finished download is decoded right away on the common
+ * ForkJoinPool, which then starts the next one, so no thread waits on a
+ * download and the whole batch takes about as long as its slowest waves of
+ * downloads.
+ * Stations are loaded through a MetarLoader, so cached reports and downloads
+ * already in progress are reused.
+ *
+ * @see Weather#getMetars(Collection, int, int)
+ */
+final class BatchFetch {
+	private final MetarLoader loader;
+
+	private final String[] stations;
+
+	private final int parallelism;
+
+	private final int timeout;
+
+	/** index of the next station to download */
+	private final AtomicInteger next = new AtomicInteger();
+
+	private final AtomicReferenceArray<MetarResult> results;
+
+	private final CountDownLatch done;
+
+	BatchFetch(MetarLoader loader, Collection<String> stations,
+			int parallelism, int timeout) {
+		if (parallelism <= 0) {
+			throw new IllegalArgumentException("parallelism " + parallelism);
+		}
+		this.loader = loader;
+		this.stations = new LinkedHashSet<String>(stations)
+				.toArray(new String[0]);
+		this.parallelism = parallelism;
+		this.timeout = timeout;
+		results = new AtomicReferenceArray<MetarResult>(this.stations.length);
+		done = new CountDownLatch(this.stations.length);
+	}
+
+	/**
+	 * Download and decode every station, waiting until all are done.
+	 *
+	 * @return the result of every station, in the order given
+	 */
+	Map<String, MetarResult> run() {
+		for (int i = 0; i < Math.min(parallelism, stations.length); i++) {
+			fetchNext();
+		}
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			// stop starting downloads, the stations left out fail below
+			next.set(stations.length);
+			Thread.currentThread().interrupt();
+		}
+
+		Map<String, MetarResult> map = new LinkedHashMap<String, MetarResult>();
+		for (int i = 0; i < stations.length; i++) {
+			MetarResult result = results.get(i);
+			if (result == null) {
+				result = new MetarResult(stations[i], null,
+						new InterruptedIOException("interrupted"));
+			}
+			map.put(stations[i], result);
+		}
+		return map;
+	}
+
+	private void fetchNext() {
+		int i;
+		// downloads failing at once are handled in this loop, not by
+		// recursing through their callbacks
+		while ((i = next.getAndIncrement()) < stations.length) {
+			CompletableFuture<Metar> load = loader.load(stations[i], timeout);
+			if (load.isDone()) {
+				Throwable e = error(load);
+				finish(i, e == null ? load.join() : null, e);
+				continue;
+			}
+			final int index = i;
+			load.whenComplete((metar, e) -> {
+				finish(index, metar, e);
+				fetchNext();
+			});
+			return;
+		}
+	}
+
+	private static Throwable error(CompletableFuture<Metar> load) {
+		try {
+			load.join();
+			return null;
+		} catch (RuntimeException e) {
+			return e;
+		}
+	}
+
+	private void finish(int i, Metar metar, Throwable e) {
+		MetarResult result;
+		if (e == null) {
+			result = new MetarResult(stations[i], metar, null);
+		} else {
+			if (e instanceof CompletionException && e.getCause() != null) {
+				e = e.getCause();
+			}
+			result = new MetarResult(stations[i], null,
+					e instanceof Exception ? (Exception) e
+							: new IOException(e));
+		}
+		results.set(i, result);
+		done.countDown();
+	}
+}
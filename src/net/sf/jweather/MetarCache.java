@@ -0,0 +1,295 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import net.sf.jweather.metar.Metar;
+import net.sf.jweather.metar.StationFile;
+
+/**
+ * A bounded cache of decoded reports by station id.
+ *
+ * <p>
+ * Stations issue a routine report once an hour, observed at about 53 minutes
+ * past the hour and published a few minutes later. A report is therefore kept
+ * until the next routine report should be out, but at least the minimum and
+ * at most the maximum time to live, counted from when it was stored; a
+ * station that is late is polled again every minimum TTL. When the cache is
+ * full the least recently used station is dropped.
+ * </p>
+ *
+ * <p>
+ * Expired reports are kept along with the station file they were decoded
+ * from, so that the next download can be made conditional on the file having
+ * changed; an unchanged file renews the report without decoding it again.
+ * </p>
+ *
+ * Cached reports are shared by every caller and must not be modified. All
+ * methods are synchronized, lookups only hold the lock for a map access.
+ *
+ * @see Weather#getMetar(String)
+ */
+public class MetarCache {
+	static final long MINUTE = 60 * 1000L;
+
+	static final long HOUR = 60 * MINUTE;
+
+	/** minute past the hour routine reports are observed */
+	public static final int REPORT_MINUTE = 53;
+
+	/** time between observing a report and it being published */
+	public static final long PUBLICATION_DELAY = 5 * MINUTE;
+
+	public static final long DEFAULT_MIN_TTL = 2 * MINUTE;
+
+	public static final long DEFAULT_MAX_TTL = HOUR;
+
+	private final int maxSize;
+
+	private final long minTtl;
+
+	private final long maxTtl;
+
+	private final LinkedHashMap<String, Entry> entries;
+
+	private long hits;
+
+	private long misses;
+
+	private long evictions;
+
+	public MetarCache(int maxSize) {
+		this(maxSize, DEFAULT_MIN_TTL, DEFAULT_MAX_TTL);
+	}
+
+	/**
+	 * @param maxSize the most stations kept
+	 * @param minTtl the least time in milliseconds a report is kept
+	 * @param maxTtl the most time in milliseconds a report is kept
+	 */
+	public MetarCache(int maxSize, long minTtl, long maxTtl) {
+		if (maxSize <= 0 || minTtl < 0 || maxTtl < minTtl) {
+			throw new IllegalArgumentException("cache size " + maxSize
+					+ ", ttl " + minTtl + " - " + maxTtl);
+		}
+		this.maxSize = maxSize;
+		this.minTtl = minTtl;
+		this.maxTtl = maxTtl;
+		// access order, the eldest entry is the least recently used
+		entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> e) {
+				if (size() > MetarCache.this.maxSize) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached report of the station, or null if there is none or
+	 *         it has expired
+	 */
+	public synchronized Metar get(String station) {
+		Entry entry = entries.get(station);
+		if (entry != null && entry.expires > System.currentTimeMillis()) {
+			hits++;
+			return entry.metar;
+		}
+		misses++;
+		return null;
+	}
+
+	/**
+	 * @return the entry of the station, even if it has expired, or null
+	 */
+	synchronized Entry entry(String station) {
+		return entries.get(station);
+	}
+
+	/**
+	 * Same as get() without counting a hit or miss.
+	 */
+	synchronized Metar peek(String station) {
+		Entry entry = entries.get(station);
+		if (entry != null && entry.expires > System.currentTimeMillis()) {
+			return entry.metar;
+		}
+		return null;
+	}
+
+	/**
+	 * Cache the report of a station until expiryTime().
+	 */
+	public void put(String station, Metar metar) {
+		put(station, metar, null);
+	}
+
+	/**
+	 * Cache the report of a station and the file it was decoded from until
+	 * expiryTime().
+	 */
+	void put(String station, Metar metar, StationFile file) {
+		long now = System.currentTimeMillis();
+		Entry entry = new Entry(metar, file, expiryTime(metar, now));
+		synchronized (this) {
+			entries.put(station, entry);
+		}
+	}
+
+	/**
+	 * Cache the report of a station unless the cache holds a later one.
+	 *
+	 * @return true if the report was cached
+	 */
+	public boolean putIfNewer(String station, Metar metar) {
+		long now = System.currentTimeMillis();
+		Entry entry = new Entry(metar, null, expiryTime(metar, now));
+		synchronized (this) {
+			Entry cached = entries.get(station);
+			if (cached != null
+					&& cached.metar.getDateValue() > metar.getDateValue()) {
+				return false;
+			}
+			entries.put(station, entry);
+			return true;
+		}
+	}
+
+	/**
+	 * @param metar a report
+	 * @param now the time the report is stored, in epoch milliseconds
+	 * @return the time the report expires: when the next routine report
+	 *         after it should be published, within the minimum and maximum
+	 *         time to live
+	 */
+	public long expiryTime(Metar metar, long now) {
+		long expires;
+		long observed = metar.getDateValue();
+		if (observed == Metar.MISSING_DATE) {
+			expires = now + minTtl;
+		} else {
+			expires = nextReportTime(observed) + PUBLICATION_DELAY;
+		}
+		return Math.max(now + minTtl, Math.min(now + maxTtl, expires));
+	}
+
+	/**
+	 * @return the observation time of the first routine report after the
+	 *         given time, in epoch milliseconds
+	 */
+	public static long nextReportTime(long observed) {
+		long next = Math.floorDiv(observed, HOUR) * HOUR + REPORT_MINUTE
+				* MINUTE;
+		return next > observed ? next : next + HOUR;
+	}
+
+	public synchronized void remove(String station) {
+		entries.remove(station);
+	}
+
+	/**
+	 * Expire the report of a station, so that the next lookup checks for a
+	 * new one with a conditional download.
+	 */
+	public synchronized void invalidate(String station) {
+		Entry entry = entries.get(station);
+		if (entry != null) {
+			entries.put(station, new Entry(entry.metar, entry.file, 0));
+		}
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+	}
+
+	/**
+	 * @return the number of stations cached, including expired ones
+	 */
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	/**
+	 * @return the number of lookups answered from the cache
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that found nothing or an expired report
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of reports dropped to make room for others
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	/**
+	 * @return hits divided by lookups, or 0 if there were none
+	 */
+	public synchronized double getHitRate() {
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Reset the hit, miss and eviction counts.
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+	}
+
+	public synchronized String toString() {
+		return "MetarCache[size=" + entries.size() + "/" + maxSize
+				+ ", hits=" + hits + ", misses=" + misses + ", evictions="
+				+ evictions + "]";
+	}
+
+	static final class Entry {
+		final Metar metar;
+
+		/** the file the report was decoded from, or null */
+		final StationFile file;
+
+		final long expires;
+
+		Entry(Metar metar, StationFile file, long expires) {
+			this.metar = metar;
+			this.file = file;
+			this.expires = expires;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import net.sf.jweather.metar.Metar;
+import net.sf.jweather.metar.MetarFetcher;
+import net.sf.jweather.metar.MetarParser;
+import net.sf.jweather.metar.StationFile;
+
+/**
+ * Downloads and decodes the reports of single stations, at most once at a
+ * time per station.
+ *
+ * A station that is already being loaded is not requested again: every
+ * caller asking for it meanwhile shares the pending download and decoded
+ * report, so a cache entry of a busy station expiring does not send a burst
+ * of identical requests upstream. Reports are taken from and added to the
+ * cache, if there is one. An expired report is checked with a conditional
+ * download and kept without decoding anything if its file is unchanged.
+ * Reports are decoded on the common ForkJoinPool rather than on the
+ * fetcher's I/O threads, which keep serving the other connections meanwhile.
+ *
+ * @see Weather#getMetar(String, int)
+ */
+final class MetarLoader {
+	private final MetarFetcher fetcher;
+
+	private final MetarCache cache;
+
+	/** the loads in progress by station id */
+	private final ConcurrentHashMap<String, CompletableFuture<Metar>> loads = new ConcurrentHashMap<String, CompletableFuture<Metar>>();
+
+	MetarLoader(MetarFetcher fetcher, MetarCache cache) {
+		this.fetcher = fetcher;
+		this.cache = cache;
+	}
+
+	/**
+	 * @param station the station id, e.g. 'KLAX'
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @return a future for the station's report, which completes on a
+	 *         thread of the common ForkJoinPool, right away if the report is
+	 *         cached, or exceptionally if the report could not be fetched or
+	 *         decoded. Cancelling it does not affect other callers waiting
+	 *         for the same station
+	 */
+	CompletableFuture<Metar> load(final String station, int timeout) {
+		Metar metar = cache == null ? null : cache.get(station);
+		if (metar != null) {
+			return CompletableFuture.completedFuture(metar);
+		}
+
+		final CompletableFuture<Metar> load = new CompletableFuture<Metar>();
+		CompletableFuture<Metar> pending = loads.putIfAbsent(station, load);
+		if (pending != null) {
+			return pending.thenApply(report -> report);
+		}
+		// a load may have finished between the cache lookup and ours
+		// starting, the report is cached before the load is removed
+		metar = cache == null ? null : cache.peek(station);
+		if (metar != null) {
+			load.complete(metar);
+			loads.remove(station, load);
+			return load;
+		}
+		final MetarCache.Entry previous = cache == null ? null : cache
+				.entry(station);
+		final StationFile known = previous == null || previous.file == null
+				|| !previous.file.isValidatable() ? null : previous.file;
+
+		CompletableFuture<StationFile> download;
+		try {
+			download = fetcher.fetchFileAsync(station, timeout, known);
+		} catch (RuntimeException e) {
+			loads.remove(station, load);
+			load.completeExceptionally(e);
+			return load;
+		}
+		// decoded off the I/O thread, which serves all of the connections
+		download.whenCompleteAsync((file, e) -> {
+			Metar report = null;
+			Throwable error = null;
+			if (e != null) {
+				error = e instanceof CompletionException
+						&& e.getCause() != null ? e.getCause() : e;
+			} else if (known != null && file == known) {
+				// unchanged, renew the report decoded before
+				report = previous.metar;
+				cache.put(station, report, file);
+			} else {
+				try {
+					byte[] body = file.getData();
+					report = MetarParser.parseRecord(body, 0, body.length);
+					if (cache != null) {
+						cache.put(station, report, file);
+					}
+				} catch (Exception parseError) {
+					error = parseError;
+				}
+			}
+			// removed first, so callers seeing the result and asking again
+			// start a new load
+			loads.remove(station, load);
+			if (error != null) {
+				load.completeExceptionally(error);
+			} else {
+				load.complete(report);
+			}
+		});
+		return load.thenApply(report -> report);
+	}
+
+	/**
+	 * @return the number of stations being loaded
+	 */
+	int pending() {
+		return loads.size();
+	}
+}
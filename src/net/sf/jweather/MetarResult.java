@@ -0,0 +1,96 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather;
+
+import net.sf.jweather.metar.Metar;
+
+/**
+ * The outcome of getting the report of one station: the decoded report, or
+ * the reason there is none.
+ *
+ * @see Weather#getMetars(java.util.Collection)
+ */
+public class MetarResult {
+	private final String station;
+
+	private final Metar metar;
+
+	private final Exception error;
+
+	MetarResult(String station, Metar metar, Exception error) {
+		this.station = station;
+		this.metar = metar;
+		this.error = error;
+	}
+
+	/**
+	 * @return the station id the report was asked for
+	 */
+	public String getStation() {
+		return station;
+	}
+
+	/**
+	 * @return the decoded report, or null if there is an error. It may come
+	 *         from a station other than the one asked for, see getSource()
+	 */
+	public Metar getMetar() {
+		return metar;
+	}
+
+	/**
+	 * @return why the report could not be fetched or decoded, e.g. an
+	 *         IOException or a MetarParseException, or null on success
+	 */
+	public Exception getError() {
+		return error;
+	}
+
+	/**
+	 * @return the id of the station the report came from, or null if there
+	 *         is no report
+	 */
+	public String getSource() {
+		return metar == null ? null : metar.getStationID();
+	}
+
+	/**
+	 * @return true if the report came from a station other than the one
+	 *         asked for, because that one's report was missing or too old
+	 */
+	public boolean isSubstitute() {
+		return metar != null && !station.equals(metar.getStationID());
+	}
+
+	/**
+	 * @return true if there is a report
+	 */
+	public boolean isSuccess() {
+		return error == null;
+	}
+
+	public String toString() {
+		if (error != null) {
+			return station + ": " + error;
+		}
+		return station + ": " + (isSubstitute() ? "from " + getSource() : "ok");
+	}
+}
@@ -22,6 +22,17 @@ package net.sf.jweather;
 
 import java.io.*;
 import java.net.*;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import net.sf.jweather.station.StationIndex;
+import net.sf.jweather.station.StationRegistry;
 import org.apache.log4j.Logger;
 import net.sf.jweather.metar.*;
 
@@ -36,6 +47,41 @@ import net.sf.jweather.metar.*;
  * </code>
  * </p>
  *
+ * <p>
+ * Many stations are best fetched together, which downloads them concurrently
+ * over a shared pool of connections:
+ * </p>
+ *
+ * <p>
+ * <code>
+ * Map results = Weather.getMetars(Arrays.asList("KLAX", "KSFO", "KSAN"));
+ * </code>
+ * </p>
+ *
+ * <p>
+ * Callers needing most of the world's stations can load the hourly cycle
+ * file, which holds every report of the hour, into the cache once instead:
+ * </p>
+ *
+ * <p>
+ * <code>
+ * Weather.loadCycle();
+ * </code>
+ * </p>
+ *
+ * <p>
+ * Stations sometimes stop reporting. With failover switched on, a report that
+ * is missing or older than a given age is replaced by the latest report of a
+ * nearby station:
+ * </p>
+ *
+ * <p>
+ * <code>
+ * Weather.setFailover(2 * 60 * 60 * 1000L, 5, 100);<br>
+ * Metar metar = Weather.getMetar("KLAX"); // may come from KSMO
+ * </code>
+ * </p>
+ *
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.8 $
  * @see <a href="MetarFetcher.html">Metar</a>
@@ -49,6 +95,31 @@ public class Weather {
 	//final static int    httpMetarPort     =  80;
 	//final static String httpMetarPath     = "/pub/data/observations/metar/stations/";
 
+	/** location of the hourly cycle files, 00Z.TXT to 23Z.TXT */
+	public final static String CYCLE_URL = "http://weather.noaa.gov/pub/data/observations/metar/cycles/";
+
+	/** default number of stations getMetars() downloads at once */
+	public static final int DEFAULT_PARALLELISM = 16;
+
+	/**
+	 * default time in milliseconds getFreshMetar() waits for reports when
+	 * called without a timeout
+	 */
+	public static final int DEFAULT_FAILOVER_TIMEOUT = 10000;
+
+	/** number of stations kept by the report cache */
+	public static final int CACHE_SIZE = 10000;
+
+	private static final MetarCache cache = new MetarCache(CACHE_SIZE);
+
+	// loads reports through the fetcher in use, created on first use
+	private static volatile MetarLoader loader;
+
+	private static volatile String cycleURL = CYCLE_URL;
+
+	// failover settings, failover is off while maxAge is 0
+	private static volatile Failover failover = new Failover(0, 0, 0, 0);
+
 	static {
     	log = Logger.getLogger("net.sf.jweather");
 		log.debug("Weather: instantiated");
@@ -58,19 +129,372 @@ public class Weather {
 		return getMetar(station, 0);
 	}
 
+	/**
+	 * Get the report of a station. Reports are cached until the station's
+	 * next routine report is due, see MetarCache; a cached report is shared
+	 * and must not be modified. Threads asking for a station that is being
+	 * downloaded wait for that download instead of starting their own.
+	 * If failover is switched on, the report may come from a nearby station,
+	 * see getFreshMetar().
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @return the report, or null if it could not be fetched or decoded
+	 */
 	public static Metar getMetar(String station, int timeout) {
-		String metarData = MetarFetcher.fetch(station, timeout);
-		Metar metar = null;
-
-		if (metarData != null) {
-			try {
-				metar = MetarParser.parse(metarData);
-			} catch (Exception e) {
-				System.err.println("Weather: "+e);
-				e.printStackTrace(System.err);
+		MetarResult result = failover.maxAge > 0 ? getFreshMetar(station,
+				timeout) : load(loader(), station, timeout);
+		if (!result.isSuccess()) {
+			log.error("Weather: unable to get report for station '"+station+"': "+result.getError());
+		}
+		return result.getMetar();
+	}
+
+	/**
+	 * Get the latest report for a station, falling back to nearby stations
+	 * if it has none or its report is older than the failover age. The
+	 * nearest stations within the failover radius are then loaded in
+	 * parallel and the most recent report of all is returned; the result
+	 * tells which station it came from. Without failover settings, or for
+	 * stations of unknown location, this is the station's own report.
+	 *
+	 * With failover switched on, the whole lookup takes no longer than the
+	 * timeout, or the failover timeout if there is none: reports that have
+	 * not arrived by then are left out.
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @see #setFailover(long, int, double, int)
+	 */
+	public static MetarResult getFreshMetar(String station, int timeout) {
+		Failover settings = failover;
+		MetarLoader current = loader();
+		if (settings.maxAge <= 0) {
+			return load(current, station, timeout);
+		}
+		long deadline = System.currentTimeMillis()
+				+ (timeout > 0 ? timeout : settings.timeout);
+		MetarResult own = load(current, station, timeout, deadline);
+		long now = System.currentTimeMillis();
+		if (settings.stations <= 0
+				|| (own.isSuccess() && age(own.getMetar(), now) <= settings.maxAge)) {
+			return own;
+		}
+
+		StationIndex index = StationIndex.getDefault();
+		StationRegistry registry = index.getRegistry();
+		int self = registry.indexOf(station);
+		if (self < 0 || !registry.hasLocation(self)) {
+			return own;
+		}
+		int[] nearby = index.within(registry.getLatitude(self),
+				registry.getLongitude(self), settings.radius);
+		List<String> neighbours = new ArrayList<String>();
+		for (int i = 0; i < nearby.length && neighbours.size() < settings.stations; i++) {
+			if (nearby[i] != self) {
+				neighbours.add(registry.getId(nearby[i]));
+			}
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Weather: report for station '"+station+"' is missing or old, trying "+neighbours);
+		}
+
+		List<CompletableFuture<Metar>> loads = new ArrayList<CompletableFuture<Metar>>();
+		for (String neighbour : neighbours) {
+			loads.add(current.load(neighbour, timeout));
+		}
+		try {
+			CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0]))
+					.get(remaining(deadline), TimeUnit.MILLISECONDS);
+		} catch (ExecutionException e) {
+			// all done, some of them failed
+		} catch (TimeoutException e) {
+			log.debug("Weather: timed out waiting for stations near '"+station+"'");
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		Metar freshest = own.getMetar();
+		for (CompletableFuture<Metar> load : loads) {
+			if (!load.isDone()) {
+				load.cancel(false);
+				continue;
+			}
+			if (load.isCompletedExceptionally()) {
+				continue;
+			}
+			Metar metar = load.join();
+			if (freshest == null
+					|| metar.getDateValue() > freshest.getDateValue()) {
+				freshest = metar;
 			}
 		}
+		if (freshest == null) {
+			return own;
+		}
+		return new MetarResult(station, freshest, null);
+	}
+
+	/**
+	 * Switch failover to nearby stations on or off for getMetar() and
+	 * getFreshMetar(), waiting up to DEFAULT_FAILOVER_TIMEOUT for reports
+	 * when called without a timeout.
+	 *
+	 * @param maxAge the age in milliseconds beyond which a report is too
+	 *        old, or 0 to switch failover off
+	 * @param stations the most nearby stations to try
+	 * @param radius the greatest distance of those stations in kilometers
+	 */
+	public static void setFailover(long maxAge, int stations, double radius) {
+		setFailover(maxAge, stations, radius, DEFAULT_FAILOVER_TIMEOUT);
+	}
+
+	/**
+	 * Switch failover to nearby stations on or off for getMetar() and
+	 * getFreshMetar().
+	 *
+	 * @param maxAge the age in milliseconds beyond which a report is too
+	 *        old, or 0 to switch failover off
+	 * @param stations the most nearby stations to try
+	 * @param radius the greatest distance of those stations in kilometers
+	 * @param timeout the longest time in milliseconds to wait for reports
+	 *        when called without a timeout
+	 */
+	public static void setFailover(long maxAge, int stations, double radius,
+			int timeout) {
+		if (timeout <= 0) {
+			throw new IllegalArgumentException("timeout = " + timeout);
+		}
+		failover = new Failover(maxAge, stations, radius, timeout);
+	}
+
+	private static MetarResult load(MetarLoader loader, String station,
+			int timeout) {
+		try {
+			return new MetarResult(station, loader.load(station, timeout)
+					.join(), null);
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			return new MetarResult(station, null,
+					cause instanceof Exception ? (Exception) cause : e);
+		}
+	}
+
+	/**
+	 * Same as load(MetarLoader, String, int), giving up at deadline.
+	 */
+	private static MetarResult load(MetarLoader loader, String station,
+			int timeout, long deadline) {
+		CompletableFuture<Metar> load = loader.load(station, timeout);
+		try {
+			return new MetarResult(station, load.get(remaining(deadline),
+					TimeUnit.MILLISECONDS), null);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			return new MetarResult(station, null,
+					cause instanceof Exception ? (Exception) cause : e);
+		} catch (TimeoutException e) {
+			load.cancel(false);
+			return new MetarResult(station, null, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			load.cancel(false);
+			return new MetarResult(station, null, e);
+		}
+	}
+
+	private static long remaining(long deadline) {
+		return Math.max(0, deadline - System.currentTimeMillis());
+	}
+
+	/**
+	 * @return the age of a report in milliseconds, or Long.MAX_VALUE if it
+	 *         has no time
+	 */
+	private static long age(Metar metar, long now) {
+		long date = metar.getDateValue();
+		return date == Metar.MISSING_DATE ? Long.MAX_VALUE : now - date;
+	}
+
+	/**
+	 * Get the reports of many stations at once, see
+	 * getMetars(Collection, int, int).
+	 */
+	public static Map<String, MetarResult> getMetars(
+			Collection<String> stations) {
+		return getMetars(stations, DEFAULT_PARALLELISM, 0);
+	}
+
+	/**
+	 * Get the reports of many stations at once. Up to parallelism stations
+	 * are downloaded concurrently and each one is decoded as soon as it
+	 * arrives, so the batch takes about as long as its slowest downloads
+	 * rather than all of them in turn. Downloads go through a fetcher shared
+	 * by all callers, which keeps its connections open between batches.
+	 * Stations in the report cache are not downloaded again, nor are those
+	 * getMetar() or another batch is downloading already.
+	 *
+	 * @param stations the station ids, e.g. 'KLAX'; duplicates are fetched
+	 *        once
+	 * @param parallelism the most downloads in flight at once
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @return the result of every station, in the order given; a station
+	 *         that could not be fetched or decoded has its error set
+	 */
+	public static Map<String, MetarResult> getMetars(
+			Collection<String> stations, int parallelism, int timeout) {
+		return new BatchFetch(loader(), stations, parallelism, timeout).run();
+	}
+
+	/**
+	 * Same as getMetars(Collection, int, int), downloading every station
+	 * with the given fetcher, e.g. one reading from a mirror, without going
+	 * through the report cache.
+	 */
+	public static Map<String, MetarResult> getMetars(MetarFetcher fetcher,
+			Collection<String> stations, int parallelism, int timeout) {
+		return new BatchFetch(new MetarLoader(fetcher, null), stations,
+				parallelism, timeout).run();
+	}
+
+	/**
+	 * Load the cycle file of the current hour (UTC) into the cache, see
+	 * loadCycle(int, int).
+	 */
+	public static int loadCycle() throws IOException {
+		int hour = (int) (System.currentTimeMillis() / (60 * 60 * 1000L) % 24);
+		return loadCycle(hour, 0);
+	}
+
+	/**
+	 * Download the cycle file of an hour and cache the report of every
+	 * station in it, unless a later one is cached already. The file is
+	 * decoded as it is read, in one pass, so that a single download stands
+	 * in for thousands of getMetar() calls. Records that cannot be decoded
+	 * are skipped.
+	 *
+	 * @param hour the hour of the cycle (UTC), 0 - 23
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @return the number of stations whose cached report was added or
+	 *         replaced
+	 * @throws IOException the cycle file could not be read
+	 */
+	public static int loadCycle(int hour, int timeout) throws IOException {
+		if (hour < 0 || hour > 23) {
+			throw new IllegalArgumentException("no such cycle: " + hour);
+		}
+		URL url = new URL(cycleURL + (hour < 10 ? "0" : "") + hour + "Z.TXT");
+		if (log.isDebugEnabled()) {
+			log.debug("Weather: loading cycle file '"+url+"'");
+		}
+		URLConnection connection = url.openConnection();
+		connection.setConnectTimeout(timeout);
+		connection.setReadTimeout(timeout);
+
+		CacheFiller filler = new CacheFiller();
+		CycleFileReader reader = new CycleFileReader(connection.getInputStream());
+		try {
+			reader.readAll(filler);
+		} finally {
+			reader.close();
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Weather: cached "+filler.updated+" reports from '"+url+"', "+filler.errors+" bad records");
+		}
+		return filler.updated;
+	}
+
+	/**
+	 * Read cycle files for loadCycle() from another location, such as a
+	 * local server or a directory given as a file: URL.
+	 *
+	 * @param url the URL HHZ.TXT is appended to, ending in '/', or null for
+	 *        the NOAA site
+	 */
+	public static void setCycleURL(String url) {
+		cycleURL = url == null ? CYCLE_URL : url;
+	}
+
+	/**
+	 * @return the cache of reports returned by getMetar() and getMetars(),
+	 *         e.g. to read its hit and miss counts
+	 */
+	public static MetarCache getCache() {
+		return cache;
+	}
+
+	/**
+	 * Download reports for getMetar() and getMetars() with the given
+	 * fetcher, e.g. one reading from a mirror, and empty the report cache.
+	 * The fetcher is not closed by this class.
+	 *
+	 * @param fetcher the fetcher, or null for the NOAA site
+	 */
+	public static synchronized void setFetcher(MetarFetcher fetcher) {
+		loader = fetcher == null ? null : new MetarLoader(fetcher, cache);
+		cache.clear();
+	}
+
+	private static MetarLoader loader() {
+		MetarLoader current = loader;
+		if (current == null) {
+			synchronized (Weather.class) {
+				if (loader == null) {
+					loader = new MetarLoader(DefaultFetcher.INSTANCE, cache);
+				}
+				current = loader;
+			}
+		}
+		return current;
+	}
+
+	/**
+	 * The failover settings, replaced as a whole when they change.
+	 */
+	private static class Failover {
+		final long maxAge;
+
+		final int stations;
+
+		final double radius;
+
+		// milliseconds to wait without a timeout of the caller's
+		final int timeout;
+
+		Failover(long maxAge, int stations, double radius, int timeout) {
+			this.maxAge = maxAge;
+			this.stations = stations;
+			this.radius = radius;
+			this.timeout = timeout;
+		}
+	}
+
+	/**
+	 * Caches the reports of a cycle file as it is read.
+	 */
+	private static class CacheFiller implements MetarHandler {
+		int updated;
+
+		int errors;
+
+		public void metar(Metar metar) {
+			if (cache.putIfNewer(metar.getStationID(), metar)) {
+				updated++;
+			}
+		}
+
+		public void error(MetarParseException e) {
+			errors++;
+			if (log.isDebugEnabled()) {
+				log.debug("Weather: skipping bad record: "+e.getMessage());
+			}
+		}
+	}
 
-		return metar;
+	/**
+	 * Holds the fetcher for the NOAA site, created on first use.
+	 */
+	private static class DefaultFetcher {
+		static final MetarFetcher INSTANCE = new MetarFetcher(httpMetarURL, 0,
+				MetarFetcher.DEFAULT_MAX_CONNECTIONS, DEFAULT_PARALLELISM);
 	}
 }
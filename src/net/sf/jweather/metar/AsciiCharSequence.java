@@ -0,0 +1,104 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A read-only CharSequence view of ASCII text held in a ByteBuffer.
+ *
+ * METAR data is plain ASCII, so every byte maps straight onto a char and no
+ * charset decoder is needed. Bytes outside the ASCII range are read as
+ * ISO-8859-1. The view reads the buffer with absolute gets, so the buffer's
+ * position and limit are never touched, and it works the same for heap,
+ * direct and memory-mapped buffers.
+ *
+ * @see MetarParser#parseReport(ByteBuffer)
+ */
+final class AsciiCharSequence implements CharSequence {
+    private final ByteBuffer buffer;
+
+    private final int start;
+
+    private final int end;
+
+    /**
+     * @param buffer
+     *            the bytes to view
+     * @param start
+     *            absolute index of the first byte
+     * @param end
+     *            absolute index just past the last byte
+     */
+    AsciiCharSequence(ByteBuffer buffer, int start, int end) {
+        if (start < 0 || start > end || end > buffer.limit()) {
+            throw new IndexOutOfBoundsException("range [" + start + ", " + end
+                    + ") of buffer with limit " + buffer.limit());
+        }
+        this.buffer = buffer;
+        this.start = start;
+        this.end = end;
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    public char charAt(int index) {
+        if (index < 0 || index >= end - start) {
+            throw new IndexOutOfBoundsException("index " + index
+                    + " of length " + (end - start));
+        }
+        return (char) (buffer.get(start + index) & 0xff);
+    }
+
+    public CharSequence subSequence(int from, int to) {
+        if (from < 0 || from > to || to > end - start) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to
+                    + ") of length " + (end - start));
+        }
+        return new AsciiCharSequence(buffer, start + from, start + to);
+    }
+
+    /**
+     * @return a copy of the viewed bytes
+     */
+    byte[] toByteArray() {
+        byte[] bytes = new byte[end - start];
+        if (buffer.hasArray()) {
+            System.arraycopy(buffer.array(), buffer.arrayOffset() + start,
+                    bytes, 0, bytes.length);
+        } else {
+            for (int i = 0; i < bytes.length; i++) {
+                bytes[i] = buffer.get(start + i);
+            }
+        }
+        return bytes;
+    }
+
+    public String toString() {
+        char[] chars = new char[end - start];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) (buffer.get(start + i) & 0xff);
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A table of shared condition instances addressed by (row, column).
+ *
+ * The possible weather, sky and obscuration groups form small finite sets, so
+ * each distinct group only needs one immutable instance. Rows are created on
+ * first use, which keeps sparse tables such as sky layers by height small.
+ * Lookups take no lock and allocate nothing; when two threads create the
+ * same instance at once the first one stored wins and both get it back.
+ *
+ * @see WeatherCondition
+ * @see SkyCondition
+ * @see Obscuration
+ */
+final class ConditionPool<T> {
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> rows;
+
+    private final int columns;
+
+    ConditionPool(int rows, int columns) {
+        this.rows = new AtomicReferenceArray<AtomicReferenceArray<T>>(rows);
+        this.columns = columns;
+    }
+
+    /**
+     * @return the instance stored at (row, column), or null
+     */
+    T get(int row, int column) {
+        AtomicReferenceArray<T> cells = rows.get(row);
+        return cells == null ? null : cells.get(column);
+    }
+
+    /**
+     * Store value at (row, column) unless another instance got there first.
+     *
+     * @return the instance now stored at (row, column)
+     */
+    T intern(int row, int column, T value) {
+        AtomicReferenceArray<T> cells = rows.get(row);
+        if (cells == null) {
+            rows.compareAndSet(row, null, new AtomicReferenceArray<T>(columns));
+            cells = rows.get(row);
+        }
+        if (cells.compareAndSet(column, null, value)) {
+            return value;
+        }
+        return cells.get(column);
+    }
+}
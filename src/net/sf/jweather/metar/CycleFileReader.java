@@ -0,0 +1,398 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Collection;
+
+/**
+ * Reads the records of a NOAA cycle file one at a time, e.g.
+ * cycles/00Z.TXT, which holds the reports of every station for one hour.
+ *
+ * A cycle file is a sequence of records separated by blank lines. Each record
+ * is a date line followed by the report, which long reports wrap over
+ * several indented lines:
+ *
+ * <pre>
+ * 2004/01/06 02:50
+ * KLAX 060250Z 34010KT 10SM CLR 14/M07 A3012 RMK AO2 SLP199 T01441072
+ *      55003
+ *
+ * 2004/01/06 02:50
+ * ...
+ * </pre>
+ *
+ * A stream is read through a single fixed-size buffer, so memory use is the
+ * same for a file of any size; a record that does not fit in the buffer is
+ * skipped and reported as a parse error. A file on local disk can instead be
+ * memory-mapped with FileChannel.map, in which case record boundaries are
+ * found in the mapped pages and nothing is copied onto the heap but the
+ * decoded values. Either way every record is decoded in place as by
+ * MetarParser.parseRecord(ByteBuffer).
+ *
+ * <p>
+ * <code>
+ * CycleFileReader reader = new CycleFileReader(in);<br>
+ * while (true) {<br>
+ * &nbsp;&nbsp;try {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;Metar metar = reader.read();<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;if (metar == null) break;<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;...<br>
+ * &nbsp;&nbsp;} catch (MetarParseException e) {<br>
+ * &nbsp;&nbsp;&nbsp;&nbsp;// this record is bad, carry on with the next<br>
+ * &nbsp;&nbsp;}<br>
+ * }<br>
+ * </code>
+ * </p>
+ *
+ * A reader is not thread-safe.
+ *
+ * @see MetarParser#parseRecord(ByteBuffer)
+ */
+public class CycleFileReader implements Closeable {
+    /** default size of the read buffer, and so of the longest record */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** default number of bytes of a file mapped at once */
+    public static final int DEFAULT_WINDOW_SIZE = 1 << 30;
+
+    /** the stream being read, or null for a mapped file */
+    private final ReadableByteChannel channel;
+
+    /** the mapped file, or null for a stream */
+    private final FileChannel file;
+
+    /** capacity of the buffer, or the size of the mapping window */
+    private final int bufferSize;
+
+    /** the data read so far, always read with absolute gets */
+    private ByteBuffer buffer;
+
+    /** offset in the file of the start of the buffer, for mapped files */
+    private long bufferOffset;
+
+    /** start of the unread data */
+    private int pos;
+
+    /** end of the data read so far */
+    private int limit;
+
+    private boolean eof;
+
+    private int recordNumber;
+
+    public CycleFileReader(InputStream in) {
+        this(Channels.newChannel(in), DEFAULT_BUFFER_SIZE);
+    }
+
+    public CycleFileReader(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel
+     *            a blocking channel holding the cycle file
+     * @param bufferSize
+     *            size of the read buffer; longer records are skipped
+     */
+    public CycleFileReader(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("buffer size " + bufferSize);
+        }
+        this.channel = channel;
+        this.file = null;
+        this.bufferSize = bufferSize;
+        buffer = ByteBuffer.allocate(bufferSize);
+    }
+
+    /**
+     * Read a cycle file by mapping it into memory.
+     */
+    public CycleFileReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * Read a cycle file by mapping it into memory, at most windowSize bytes
+     * at a time. Records longer than the window are skipped.
+     */
+    public CycleFileReader(File file, int windowSize) throws IOException {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("window size " + windowSize);
+        }
+        this.channel = null;
+        this.file = new RandomAccessFile(file, "r").getChannel();
+        this.bufferSize = windowSize;
+        buffer = ByteBuffer.allocate(0);
+    }
+
+    /**
+     * Read the records held in buffer[start, end), which must end at a
+     * record boundary or at the end of the data.
+     */
+    CycleFileReader(ByteBuffer buffer, int start, int end) {
+        this.channel = null;
+        this.file = null;
+        this.bufferSize = end - start;
+        this.buffer = buffer;
+        pos = start;
+        limit = end;
+        eof = true;
+    }
+
+    /**
+     * Read every record of the given cycle files, mapping one file at a
+     * time into memory, and hand the decoded reports and the records that
+     * could not be decoded to handler. Each exception passed to
+     * handler.error() holds the bad record, see
+     * MetarParseException.getRecord().
+     *
+     * @param files
+     *            the cycle files to read
+     * @return the number of reports decoded
+     * @throws IOException
+     *             reading one of the files failed; the files after it are
+     *             not read
+     */
+    public static int readAll(Collection<File> files, MetarHandler handler)
+            throws IOException {
+        int count = 0;
+        for (File file : files) {
+            CycleFileReader reader = new CycleFileReader(file);
+            try {
+                count += reader.readAll(handler);
+            } finally {
+                reader.close();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Read the remaining records and hand them to handler.
+     *
+     * @return the number of reports decoded
+     */
+    public int readAll(MetarHandler handler) throws IOException {
+        int count = 0;
+        while (true) {
+            Metar metar;
+            try {
+                metar = read();
+            } catch (MetarParseException exc) {
+                handler.error(exc);
+                continue;
+            }
+            if (metar == null) {
+                return count;
+            }
+            handler.metar(metar);
+            count++;
+        }
+    }
+
+    /**
+     * Read and decode the next record. If the record cannot be decoded a
+     * MetarParseException holding the record is thrown and the next call
+     * carries on with the record after it.
+     *
+     * @return the next report, or null at the end of the file
+     * @throws MetarParseException
+     *             the record could not be decoded
+     * @throws IOException
+     *             reading the file failed
+     */
+    public Metar read() throws MetarParseException, IOException {
+        // skip the blank lines in front of the record
+        while (true) {
+            while (pos < limit && isWhitespace(buffer.get(pos))) {
+                pos++;
+            }
+            if (pos < limit) {
+                break;
+            }
+            if (eof) {
+                return null;
+            }
+            fill();
+        }
+        recordNumber++;
+
+        int scan = pos;
+        int end;
+        while ((end = recordEnd(scan)) == -1) {
+            if (eof) {
+                end = limit;
+                break;
+            }
+            if (pos == 0 && limit == bufferSize) {
+                skipRecord();
+                throw new MetarParseException("record " + recordNumber
+                        + " is longer than " + bufferSize + " bytes");
+            }
+            // offsets move when the buffer is refilled
+            int resume = lastLineStart(scan) - pos;
+            fill();
+            scan = pos + resume;
+        }
+
+        int start = pos;
+        pos = end;
+        AsciiCharSequence record = new AsciiCharSequence(buffer, start, end);
+        try {
+            return MetarParser.parseWrappedRecord(record);
+        } catch (MetarParseException exc) {
+            exc.setRecord(record.toString());
+            throw exc;
+        }
+    }
+
+    /**
+     * @return the number of the record returned or rejected by the last
+     *         read(), counting from 1
+     */
+    public int getRecordNumber() {
+        return recordNumber;
+    }
+
+    public void close() throws IOException {
+        if (file != null) {
+            file.close();
+        } else if (channel != null) {
+            channel.close();
+        }
+    }
+
+    /**
+     * @return the offset of the line feed that ends the last line of the
+     *         record starting at pos, found by looking for a blank line from
+     *         the line at scan on, or -1 if more data is needed
+     */
+    private int recordEnd(int scan) {
+        int i = scan;
+        while (true) {
+            while (i < limit && buffer.get(i) != '\n') {
+                i++;
+            }
+            if (i == limit) {
+                return -1;
+            }
+            // is the next line blank?
+            int j = i + 1;
+            while (j < limit && buffer.get(j) != '\n'
+                    && isWhitespace(buffer.get(j))) {
+                j++;
+            }
+            if (j == limit) {
+                return eof ? i : -1;
+            }
+            if (buffer.get(j) == '\n') {
+                return i;
+            }
+            i = j;
+        }
+    }
+
+    /**
+     * @return the start of the last line read so far, where the search for
+     *         the end of the record has to pick up after more data is read
+     */
+    private int lastLineStart(int scan) {
+        for (int i = limit - 1; i >= scan; i--) {
+            if (buffer.get(i) == '\n') {
+                return i;
+            }
+        }
+        return scan;
+    }
+
+    /**
+     * Drop the rest of an over-long record, up to the next blank line.
+     */
+    private void skipRecord() throws IOException {
+        while (true) {
+            int end = recordEnd(pos);
+            if (end != -1) {
+                pos = end;
+                return;
+            }
+            if (eof) {
+                pos = limit;
+                return;
+            }
+            // keep the last line, it might be the start of the blank line,
+            // unless it fills the whole buffer
+            pos = lastLineStart(pos);
+            if (pos == 0 && limit == bufferSize) {
+                pos = limit;
+            }
+            fill();
+        }
+    }
+
+    /**
+     * Make the unread data start at the front of the buffer and read more
+     * behind it. A stream is compacted and read into the space freed up, a
+     * mapped file is mapped again from the start of the unread data.
+     */
+    private void fill() throws IOException {
+        if (file != null) {
+            bufferOffset += pos;
+            long size = file.size();
+            limit = (int) Math.min(size - bufferOffset, bufferSize);
+            buffer = file.map(FileChannel.MapMode.READ_ONLY, bufferOffset,
+                    limit);
+            pos = 0;
+            eof = bufferOffset + limit == size;
+            return;
+        }
+
+        byte[] bytes = buffer.array();
+        if (pos > 0) {
+            System.arraycopy(bytes, pos, bytes, 0, limit - pos);
+            limit -= pos;
+            pos = 0;
+        }
+        buffer.clear();
+        buffer.position(limit);
+        int read = 0;
+        while (read == 0 && buffer.hasRemaining()) {
+            read = channel.read(buffer);
+        }
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return MetarTokenizer.isWhitespace((char) b);
+    }
+}
@@ -20,6 +20,8 @@ For more information, please email arimus@users.sourceforge.net
 */
 package net.sf.jweather.metar;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.Date;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -37,39 +39,63 @@ import org.apache.log4j.Logger;
  * @see <a href="WeatherCondition.html">WeatherCondition</a>
  */
 public class Metar {
-	Logger log;
+	// shared: looking a logger up per instance locks log4j's hierarchy
+	private static Logger log = Logger.getLogger("net.sf.jweather");
+
+	/**
+	 * value returned by the int getters, such as getWindDirectionValue(), for
+	 * a measurement that was not reported. The float getters return NaN.
+	 */
+	public static final int MISSING = -1;
+
+	/**
+	 * value returned by getDateValue() for a report without a date
+	 */
+	public static final long MISSING_DATE = Long.MIN_VALUE;
+
+	private static final byte VISIBILITY_MISSING = 0;
+	private static final byte VISIBILITY_MILES = 1;
+	private static final byte VISIBILITY_KILOMETERS = 2;
+	private static final byte VISIBILITY_METERS = 3;
 
   String reportString = null;
+  // the report as ASCII bytes when parsed from a byte source, the String is
+  // only built if someone asks for it
+  byte[] reportBytes = null;
 	String dateString = "";
-	Date date = null;
+	long date = MISSING_DATE; // epoch milliseconds, UTC
 	String reportModifier = "";
 	String stationID = "";
-	Integer windDirection = null;
-	Integer windDirectionMin = null;
-	Integer windDirectionMax = null;
+	// measurements are kept as primitives, a missing value is NaN for the
+	// floats and MISSING for the wind directions; the boxed getters below
+	// are views created on demand
+	short windDirection = MISSING;
+	short windDirectionMin = MISSING;
+	short windDirectionMax = MISSING;
 	boolean windDirectionIsVariable = false;
-	Float windSpeed = null; // (in knots x 1.1508 = MPH)
-	Float windGusts = null; // (in knots x 1.1508 = MPH)
+	float windSpeed = Float.NaN; // (in knots x 1.1508 = MPH)
+	float windGusts = Float.NaN; // (in knots x 1.1508 = MPH)
 	boolean isCavok = false;
-	Float visibilityMiles = null; // in miles
-	Float visibilityKilometers = null; // in kilometers
-	Float visibilityMeters = null; // in meters
+	float visibility = Float.NaN; // in visibilityUnit
+	byte visibilityUnit = VISIBILITY_MISSING;
 	boolean visibilityLessThan = false;
-	Float pressure = null;
-	Float temperature = null;
-	Float temperaturePrecise = null;
-	Float dewPoint = null;
-	Float dewPointPrecise = null;
-	ArrayList weatherConditions = new ArrayList();
-	ArrayList skyConditions = new ArrayList();
-	ArrayList runwayVisualRanges = new ArrayList();
-	ArrayList obscurations = new ArrayList();
+	float pressure = Float.NaN;
+	float temperature = Float.NaN;
+	float temperaturePrecise = Float.NaN;
+	float dewPoint = Float.NaN;
+	float dewPointPrecise = Float.NaN;
+	// created on the first add, most reports leave some of these empty
+	ArrayList weatherConditions = null;
+	ArrayList skyConditions = null;
+	ArrayList runwayVisualRanges = null;
+	ArrayList obscurations = null;
 	private boolean isNoSignificantChange = false;
   private String becoming = null;
 
 	public Metar() {
-    	log = Logger.getLogger("net.sf.jweather");
-		log.debug("Metar: instantiated");
+		if (log.isDebugEnabled()) {
+			log.debug("Metar: instantiated");
+		}
 	}
 
     /**
@@ -94,17 +120,44 @@ public class Metar {
 	 * @param value the date this METAR report was generated
      */
 	protected void setDate(Date value) {
+		this.date = value == null ? MISSING_DATE : value.getTime();
+	}
+
+    /**
+     *
+	 * @param value the date this METAR report was generated, in milliseconds
+	 * since the epoch
+     */
+	protected void setDateValue(long value) {
 		this.date = value;
 	}
 
     /**
      *
-     * @return the date this METAR report was generated
+     * @return the date this METAR report was generated, a new Date on every
+     * call, or null if not known
      */
 	public Date getDate() {
+		return date == MISSING_DATE ? null : new Date(date);
+	}
+
+    /**
+     *
+     * @return the date this METAR report was generated in milliseconds since
+     * the epoch, or MISSING_DATE
+     */
+	public long getDateValue() {
 		return date;
 	}
 
+    /**
+     *
+     * @return the date this METAR report was generated, or null if not known
+     */
+	public Instant getInstant() {
+		return date == MISSING_DATE ? null : Instant.ofEpochMilli(date);
+	}
+
     /**
      *
 	 * @param value the modifier of the report, which specifies whether this
@@ -145,7 +198,11 @@ public class Metar {
      * @param value the direction the wind is blowing in (in degrees)
      */
 	protected void setWindDirection(Integer value) {
-		this.windDirection = value;
+		this.windDirection = value == null ? MISSING : value.shortValue();
+	}
+
+	void setWindDirectionValue(int value) {
+		this.windDirection = (short)value;
 	}
 
     /**
@@ -153,6 +210,14 @@ public class Metar {
      * @return the direction the wind is blowing in (in degrees)
      */
 	public Integer getWindDirection() {
+		return windDirection == MISSING ? null : new Integer(windDirection);
+	}
+
+    /**
+     *
+     * @return the direction the wind is blowing in (in degrees), or MISSING
+     */
+	public int getWindDirectionValue() {
 		return windDirection;
 	}
 
@@ -162,7 +227,11 @@ public class Metar {
 	 * directions
      */
 	protected void setWindDirectionMin(Integer value) {
-		this.windDirectionMin = value;
+		this.windDirectionMin = value == null ? MISSING : value.shortValue();
+	}
+
+	void setWindDirectionMinValue(int value) {
+		this.windDirectionMin = (short)value;
 	}
 
     /**
@@ -171,6 +240,15 @@ public class Metar {
 	 * directions
      */
 	public Integer getWindDirectionMin() {
+		return windDirectionMin == MISSING ? null : new Integer(windDirectionMin);
+	}
+
+    /**
+     *
+	 * @return the minimum wind direction (in degrees) for variable wind
+	 * directions, or MISSING
+     */
+	public int getWindDirectionMinValue() {
 		return windDirectionMin;
 	}
 
@@ -180,7 +258,11 @@ public class Metar {
 	 * directions
      */
 	protected void setWindDirectionMax(Integer value) {
-		this.windDirectionMax = value;
+		this.windDirectionMax = value == null ? MISSING : value.shortValue();
+	}
+
+	void setWindDirectionMaxValue(int value) {
+		this.windDirectionMax = (short)value;
 	}
 
     /**
@@ -189,6 +271,15 @@ public class Metar {
 	 * directions
      */
 	public Integer getWindDirectionMax() {
+		return windDirectionMax == MISSING ? null : new Integer(windDirectionMax);
+	}
+
+    /**
+     *
+	 * @return the maximum wind direction (in degrees) for variable wind
+	 * directions, or MISSING
+     */
+	public int getWindDirectionMaxValue() {
 		return windDirectionMax;
 	}
 
@@ -213,6 +304,10 @@ public class Metar {
      * @param value wind speed in knots
      */
 	protected void setWindSpeed(Float value) {
+		this.windSpeed = unbox(value);
+	}
+
+	void setWindSpeedValue(float value) {
 		this.windSpeed = value;
 	}
 
@@ -221,7 +316,11 @@ public class Metar {
      * @param value wind speed in meters per second
      */
 	protected void setWindSpeedInMPS(Float value) {
-		this.windSpeed = new Float(value.floatValue() / 0.5148);
+		setWindSpeedInMPSValue(value.floatValue());
+	}
+
+	void setWindSpeedInMPSValue(float value) {
+		this.windSpeed = (float)(value / 0.5148);
 	}
 
     /**
@@ -229,7 +328,15 @@ public class Metar {
      * @return wind speed in meters per second
      */
 	public Float getWindSpeedInMPS() {
-		return new Float(this.windSpeed.floatValue() * 0.5148);
+		return box(getWindSpeedInMPSValue());
+	}
+
+    /**
+     *
+     * @return wind speed in meters per second, or NaN
+     */
+	public float getWindSpeedInMPSValue() {
+		return (float)(this.windSpeed * 0.5148);
 	}
 
     /**
@@ -237,6 +344,14 @@ public class Metar {
      * @return wind speed in knots
      */
 	public Float getWindSpeedInKnots() {
+		return box(this.windSpeed);
+	}
+
+    /**
+     *
+     * @return wind speed in knots, or NaN
+     */
+	public float getWindSpeedInKnotsValue() {
 		return this.windSpeed;
 	}
 
@@ -245,16 +360,16 @@ public class Metar {
      * @return wind speed in MPH
      */
 	public Float getWindSpeedInMPH() {
-		if (this.windSpeed == null) {
-			return null;
-		}
-
-		double f = this.windSpeed.floatValue() * 1.1508;
+		return box(getWindSpeedInMPHValue());
+	}
 
+    /**
+     *
+     * @return wind speed in MPH, or NaN
+     */
+	public float getWindSpeedInMPHValue() {
 		// round to the nearest MPH
-		f = Math.round(f);
-
-		return new Float(f);
+		return roundToWhole(this.windSpeed * 1.1508);
 	}
 
     /**
@@ -262,6 +377,10 @@ public class Metar {
      * @param value wind gust speed in knots
      */
 	protected void setWindGusts(Float value) {
+		this.windGusts = unbox(value);
+	}
+
+	void setWindGustsValue(float value) {
 		this.windGusts = value;
 	}
 
@@ -270,7 +389,11 @@ public class Metar {
      * @param value wind gust speed in meters per second
      */
 	protected void setWindGustsInMPS(Float value) {
-		this.windGusts = new Float(value.floatValue() / 0.5148);
+		setWindGustsInMPSValue(value.floatValue());
+	}
+
+	void setWindGustsInMPSValue(float value) {
+		this.windGusts = (float)(value / 0.5148);
 	}
 
     /**
@@ -278,7 +401,15 @@ public class Metar {
      * @return wind gust speed in meters per second
      */
 	public Float getWindGustsInMPS() {
-		return new Float(this.windGusts.floatValue() * 0.5148);
+		return box(getWindGustsInMPSValue());
+	}
+
+    /**
+     *
+     * @return wind gust speed in meters per second, or NaN
+     */
+	public float getWindGustsInMPSValue() {
+		return (float)(this.windGusts * 0.5148);
 	}
 
     /**
@@ -286,6 +417,14 @@ public class Metar {
      * @return wind gust speed in knots
      */
 	public Float getWindGustsInKnots() {
+		return box(this.windGusts);
+	}
+
+    /**
+     *
+     * @return wind gust speed in knots, or NaN
+     */
+	public float getWindGustsInKnotsValue() {
 		return this.windGusts;
 	}
 
@@ -294,16 +433,16 @@ public class Metar {
      * @return wind gust speed in MPH
      */
 	public Float getWindGustsInMPH() {
-		if (this.windGusts == null) {
-			return null;
-		}
-
-		double f = this.windGusts.floatValue() * 1.1508;
+		return box(getWindGustsInMPHValue());
+	}
 
+    /**
+     *
+     * @return wind gust speed in MPH, or NaN
+     */
+	public float getWindGustsInMPHValue() {
 		// round to the nearest MPH
-		f = Math.round(f);
-
-		return new Float(f);
+		return roundToWhole(this.windGusts * 1.1508);
 	}
 
     /**
@@ -315,7 +454,7 @@ public class Metar {
 	protected void setIsCavok(boolean value) {
 		this.isCavok = value;
 		// set visibility to 10
-		setVisibilityInKilometers(new Float(10));
+		setVisibilityInKilometersValue(10);
 	}
 
     /**
@@ -330,9 +469,11 @@ public class Metar {
      * @param value visibility in miles
      */
 	protected void setVisibility(Float value) {
-		this.visibilityMiles = value;
-		this.visibilityKilometers = null;
-		this.visibilityMeters = null;
+		setVisibility(unbox(value), VISIBILITY_MILES);
+	}
+
+	void setVisibilityValue(float value) {
+		setVisibility(value, VISIBILITY_MILES);
 	}
 
     /**
@@ -340,9 +481,11 @@ public class Metar {
      * @param value visibility in kilometers
      */
 	protected void setVisibilityInKilometers(Float value) {
-		this.visibilityKilometers = value;
-		this.visibilityMiles = null;
-		this.visibilityMeters = null;
+		setVisibility(unbox(value), VISIBILITY_KILOMETERS);
+	}
+
+	void setVisibilityInKilometersValue(float value) {
+		setVisibility(value, VISIBILITY_KILOMETERS);
 	}
 
     /**
@@ -350,9 +493,16 @@ public class Metar {
      * @param value visibility in meters
      */
 	protected void setVisibilityInMeters(Float value) {
-		this.visibilityMeters = value;
-		this.visibilityMiles = null;
-		this.visibilityKilometers = null;
+		setVisibility(unbox(value), VISIBILITY_METERS);
+	}
+
+	void setVisibilityInMetersValue(float value) {
+		setVisibility(value, VISIBILITY_METERS);
+	}
+
+	private void setVisibility(float value, byte unit) {
+		this.visibility = value;
+		this.visibilityUnit = Float.isNaN(value) ? VISIBILITY_MISSING : unit;
 	}
 
     /**
@@ -360,14 +510,23 @@ public class Metar {
      * @return visibility in miles
      */
 	public Float getVisibility() {
-		if (visibilityMiles != null) {
-			return visibilityMiles;
-		} else if (visibilityKilometers != null) {
-			return new Float(visibilityKilometers.floatValue() / 1.609344);
-		} else if (visibilityMeters != null) {
-			return new Float(visibilityMeters.floatValue() / 1609.344);
+		return box(getVisibilityValue());
+	}
+
+    /**
+     *
+     * @return visibility in miles, or NaN
+     */
+	public float getVisibilityValue() {
+		switch (visibilityUnit) {
+		case VISIBILITY_MILES:
+			return visibility;
+		case VISIBILITY_KILOMETERS:
+			return (float)(visibility / 1.609344);
+		case VISIBILITY_METERS:
+			return (float)(visibility / 1609.344);
 		}
-		return null;
+		return Float.NaN;
 	}
 
     /**
@@ -375,14 +534,23 @@ public class Metar {
      * @return visibility in kilometers
      */
 	public Float getVisibilityInKilometers() {
-		if (visibilityKilometers != null) {
-			return visibilityKilometers;
-		} else if (visibilityMeters != null) {
-			return new Float(visibilityMeters.floatValue() / 1000);
-		} else if (visibilityMiles != null) {
-			return new Float(visibilityMiles.floatValue() * 1.609344);
+		return box(getVisibilityInKilometersValue());
+	}
+
+    /**
+     *
+     * @return visibility in kilometers, or NaN
+     */
+	public float getVisibilityInKilometersValue() {
+		switch (visibilityUnit) {
+		case VISIBILITY_KILOMETERS:
+			return visibility;
+		case VISIBILITY_METERS:
+			return visibility / 1000;
+		case VISIBILITY_MILES:
+			return (float)(visibility * 1.609344);
 		}
-		return null;
+		return Float.NaN;
 	}
 
     /**
@@ -390,14 +558,23 @@ public class Metar {
      * @return visibility in meters
      */
 	public Float getVisibilityInMeters() {
-		if (visibilityMeters != null) {
-			return visibilityMeters;
-		} else if (visibilityKilometers != null) {
-			return new Float(visibilityKilometers.floatValue() * 1000);
-		} else if (visibilityKilometers != null) {
-			return new Float(visibilityKilometers.floatValue() * 1609.344);
+		return box(getVisibilityInMetersValue());
+	}
+
+    /**
+     *
+     * @return visibility in meters, or NaN
+     */
+	public float getVisibilityInMetersValue() {
+		switch (visibilityUnit) {
+		case VISIBILITY_METERS:
+			return visibility;
+		case VISIBILITY_KILOMETERS:
+			return visibility * 1000;
+		case VISIBILITY_MILES:
+			return (float)(visibility * 1609.344);
 		}
-		return null;
+		return Float.NaN;
 	}
 
     /**
@@ -421,16 +598,12 @@ public class Metar {
      * @param value pressure in inches Hg
      */
 	protected void setPressure(Float value) {
-	  // Round so we're consistent
-          if( value != null )
-	  {
-            float val = value.floatValue();
-            val = (float)Math.round(val*100)/100;
-            this.pressure = new Float(val);
-	  }
-	  else {
-	    this.pressure = value;
-	  }
+		setPressureValue(unbox(value));
+	}
+
+	void setPressureValue(float value) {
+		// Round so we're consistent
+		this.pressure = Float.isNaN(value) ? value : (float)Math.round(value*100)/100;
 	}
 
     /**
@@ -438,6 +611,14 @@ public class Metar {
      * @return pressure in inches Hg
      */
 	public Float getPressure() {
+		return box(pressure);
+	}
+
+    /**
+     *
+     * @return pressure in inches Hg, or NaN
+     */
+	public float getPressureValue() {
 		return pressure;
 	}
 
@@ -446,12 +627,20 @@ public class Metar {
      * @return pressure in hPa
      */
     public Integer getPressureInHectoPascals() {
-	    if( pressure == null ) return null;
+	    if (Float.isNaN(pressure)) return null;
 
-      // convert to hPa
-      float val = pressure.floatValue()*33.8639F;  
-      // round
-      return new Integer(Math.round(val)); 
+	    return new Integer(getPressureInHectoPascalsValue());
+    }
+
+    /**
+     *
+     * @return pressure in hPa, or MISSING
+     */
+    public int getPressureInHectoPascalsValue() {
+	    if (Float.isNaN(pressure)) return MISSING;
+
+      // convert to hPa and round
+      return Math.round(pressure*33.8639F);
     }
 
     /**
@@ -459,6 +648,10 @@ public class Metar {
      * @param value temperature in celsius
      */
 	protected void setTemperature(Float value) {
+		this.temperature = unbox(value);
+	}
+
+	void setTemperatureValue(float value) {
 		this.temperature = value;
 	}
 
@@ -467,6 +660,14 @@ public class Metar {
      * @return temperature in celsius
      */
 	public Float getTemperatureInCelsius() {
+		return box(this.temperature);
+	}
+
+    /**
+     *
+     * @return temperature in celsius, or NaN
+     */
+	public float getTemperatureInCelsiusValue() {
 		return this.temperature;
 	}
 
@@ -475,14 +676,15 @@ public class Metar {
      * @return temperature in fahrenheit
      */
 	public Float getTemperatureInFahrenheit() {
-		if (this.temperature == null) {
-			return null;
-		}
-
-		// round to the nearest 1/10th
-		float f = (float)Math.round((this.temperature.floatValue()*9/5+32)*10)/10;
+		return box(getTemperatureInFahrenheitValue());
+	}
 
-		return new Float(f);
+    /**
+     *
+     * @return temperature in fahrenheit, or NaN
+     */
+	public float getTemperatureInFahrenheitValue() {
+		return toFahrenheit(this.temperature);
 	}
 
     /**
@@ -490,6 +692,10 @@ public class Metar {
      * @param value precise temperature in celsius
      */
 	protected void setTemperaturePrecise(Float value) {
+		this.temperaturePrecise = unbox(value);
+	}
+
+	void setTemperaturePreciseValue(float value) {
 		this.temperaturePrecise = value;
 	}
 
@@ -498,6 +704,14 @@ public class Metar {
      * @return precise temperature in celsius (nearest 1/10th degree)
      */
 	public Float getTemperaturePreciseInCelsius() {
+		return box(this.temperaturePrecise);
+	}
+
+    /**
+     *
+     * @return precise temperature in celsius (nearest 1/10th degree), or NaN
+     */
+	public float getTemperaturePreciseInCelsiusValue() {
 		return this.temperaturePrecise;
 	}
 
@@ -506,13 +720,16 @@ public class Metar {
      * @return precise temperature in fahrenheit (nearest 1/10th degree)
      */
 	public Float getTemperaturePreciseInFahrenheit() {
-		if (this.temperaturePrecise == null) {
-			return null;
-		}
+		return box(getTemperaturePreciseInFahrenheitValue());
+	}
 
-		// round to the nearest 1/10th
-		float f = (float)Math.round((this.temperaturePrecise.floatValue()*9/5+32)*10)/10;
-		return new Float(f);
+    /**
+     *
+     * @return precise temperature in fahrenheit (nearest 1/10th degree), or
+     * NaN
+     */
+	public float getTemperaturePreciseInFahrenheitValue() {
+		return toFahrenheit(this.temperaturePrecise);
 	}
 
     /**
@@ -520,7 +737,16 @@ public class Metar {
      * @return most precise temperature in celsius (nearest 1/10th degree)
      */
 	public Float getTemperatureMostPreciseInCelsius() {
-		if (this.temperaturePrecise != null) {
+		return box(getTemperatureMostPreciseInCelsiusValue());
+	}
+
+    /**
+     *
+     * @return most precise temperature in celsius (nearest 1/10th degree), or
+     * NaN
+     */
+	public float getTemperatureMostPreciseInCelsiusValue() {
+		if (!Float.isNaN(this.temperaturePrecise)) {
 			return this.temperaturePrecise;
 		} else {
 			return this.temperature;
@@ -532,19 +758,16 @@ public class Metar {
      * @return most precise temperature in fahrenheit (nearest 1/10th degree)
      */
 	public Float getTemperatureMostPreciseInFahrenheit() {
-		if (this.temperaturePrecise != null) {
-			// round to the nearest 1/10th
-			float f = (float)Math.round((this.temperaturePrecise.floatValue()*9/5+32)*10)/10;
-
-			return new Float(f);
-		} else if (this.temperature != null) {
-			// round to the nearest 1/10th
-			float f = (float)Math.round((this.temperature.floatValue()*9/5+32)*10)/10;
+		return box(getTemperatureMostPreciseInFahrenheitValue());
+	}
 
-			return new Float(f);
-		} else {
-			return null;
-		}
+    /**
+     *
+     * @return most precise temperature in fahrenheit (nearest 1/10th degree),
+     * or NaN
+     */
+	public float getTemperatureMostPreciseInFahrenheitValue() {
+		return toFahrenheit(getTemperatureMostPreciseInCelsiusValue());
 	}
 
     /**
@@ -552,6 +775,10 @@ public class Metar {
      * @param value dew point in celsius
      */
 	protected void setDewPoint(Float value) {
+		this.dewPoint = unbox(value);
+	}
+
+	void setDewPointValue(float value) {
 		this.dewPoint = value;
 	}
 
@@ -560,6 +787,14 @@ public class Metar {
      * @return dew point in celsius
      */
 	public Float getDewPointInCelsius() {
+		return box(this.dewPoint);
+	}
+
+    /**
+     *
+     * @return dew point in celsius, or NaN
+     */
+	public float getDewPointInCelsiusValue() {
 		return this.dewPoint;
 	}
 
@@ -568,14 +803,15 @@ public class Metar {
      * @return dew point in fahrenheit
      */
 	public Float getDewPointInFahrenheit() {
-		if (this.dewPoint == null) {
-			return null;
-		}
-
-		// round to the nearest 1/10th
-		float f = (float)Math.round((this.dewPoint.floatValue()*9/5+32)*10)/10;
+		return box(getDewPointInFahrenheitValue());
+	}
 
-		return new Float(f);
+    /**
+     *
+     * @return dew point in fahrenheit, or NaN
+     */
+	public float getDewPointInFahrenheitValue() {
+		return toFahrenheit(this.dewPoint);
 	}
 
     /**
@@ -583,6 +819,10 @@ public class Metar {
      * @param value precise dew point in celsius
      */
 	protected void setDewPointPrecise(Float value) {
+		this.dewPointPrecise = unbox(value);
+	}
+
+	void setDewPointPreciseValue(float value) {
 		this.dewPointPrecise = value;
 	}
 
@@ -591,6 +831,14 @@ public class Metar {
      * @return dew point in celsius (nearest 1/10th degree)
      */
 	public Float getDewPointPreciseInCelsius() {
+		return box(this.dewPointPrecise);
+	}
+
+    /**
+     *
+     * @return dew point in celsius (nearest 1/10th degree), or NaN
+     */
+	public float getDewPointPreciseInCelsiusValue() {
 		return this.dewPointPrecise;
 	}
 
@@ -599,14 +847,15 @@ public class Metar {
      * @return dew point in fahrenheit (nearest 1/10th degree)
      */
 	public Float getDewPointPreciseInFahrenheit() {
-		if (this.dewPointPrecise == null) {
-			return null;
-		}
-
-		// round to the nearest 1/10th
-		float f = (float)Math.round((this.dewPointPrecise.floatValue()*9/5+32)*10)/10;
+		return box(getDewPointPreciseInFahrenheitValue());
+	}
 
-		return new Float(f);
+    /**
+     *
+     * @return dew point in fahrenheit (nearest 1/10th degree), or NaN
+     */
+	public float getDewPointPreciseInFahrenheitValue() {
+		return toFahrenheit(this.dewPointPrecise);
 	}
 
     /**
@@ -614,7 +863,16 @@ public class Metar {
      * @return most precise dew point in celsius (nearest 1/10th degree)
      */
 	public Float getDewPointMostPreciseInCelsius() {
-		if (this.dewPointPrecise != null) {
+		return box(getDewPointMostPreciseInCelsiusValue());
+	}
+
+    /**
+     *
+     * @return most precise dew point in celsius (nearest 1/10th degree), or
+     * NaN
+     */
+	public float getDewPointMostPreciseInCelsiusValue() {
+		if (!Float.isNaN(this.dewPointPrecise)) {
 			return this.dewPointPrecise;
 		} else {
 			return this.dewPoint;
@@ -626,19 +884,41 @@ public class Metar {
      * @return most precise dew point in fahrenheit (nearest 1/10th degree)
      */
 	public Float getDewPointMostPreciseInFahrenheit() {
-		if (this.dewPointPrecise != null) {
-			// round to the nearest 1/10th
-			float f = (float)Math.round((this.dewPointPrecise.floatValue()*9/5+32)*10)/10;
+		return box(getDewPointMostPreciseInFahrenheitValue());
+	}
 
-			return new Float(f);
-		} else if (this.dewPoint != null) {
-			// round to the nearest 1/10th
-			float f = (float)Math.round((this.dewPoint.floatValue()*9/5+32)*10)/10;
+    /**
+     *
+     * @return most precise dew point in fahrenheit (nearest 1/10th degree), or
+     * NaN
+     */
+	public float getDewPointMostPreciseInFahrenheitValue() {
+		return toFahrenheit(getDewPointMostPreciseInCelsiusValue());
+	}
 
-			return new Float(f);
-		} else {
-			return null;
+	/**
+	 * @return celsius converted to fahrenheit, rounded to the nearest 1/10th
+	 */
+	private static float toFahrenheit(float celsius) {
+		if (Float.isNaN(celsius)) {
+			return Float.NaN;
 		}
+		return (float)Math.round((celsius*9/5+32)*10)/10;
+	}
+
+	private static float roundToWhole(double value) {
+		if (Double.isNaN(value)) {
+			return Float.NaN;
+		}
+		return (float)Math.round(value);
+	}
+
+	private static float unbox(Float value) {
+		return value == null ? Float.NaN : value.floatValue();
+	}
+
+	private static Float box(float value) {
+		return Float.isNaN(value) ? null : new Float(value);
 	}
 
     /**
@@ -680,6 +960,9 @@ public class Metar {
      * @see WeatherCondition
 	 */
 	public void addWeatherCondition(WeatherCondition wc) {
+		if (weatherConditions == null) {
+			weatherConditions = new ArrayList(4);
+		}
 		weatherConditions.add(wc);
 	}
 
@@ -689,7 +972,7 @@ public class Metar {
      * @see WeatherCondition
 	 */
 	public WeatherCondition getWeatherCondition(int i) {
-		if (weatherConditions.size() >= i) {
+		if (weatherConditions != null && weatherConditions.size() >= i) {
 			return (WeatherCondition)weatherConditions.get(i);
 		} else {
 			return null;
@@ -698,10 +981,14 @@ public class Metar {
 
     /**
      *
-     * @return an ArrayList of WeatherCondition objects
+     * @return an ArrayList of WeatherCondition objects, a new empty one if
+     *         there are none
      * @see WeatherCondition
      */
 	public ArrayList getWeatherConditions() {
+		if (weatherConditions == null) {
+			return new ArrayList(0);
+		}
 		return weatherConditions;
 	}
 
@@ -711,6 +998,9 @@ public class Metar {
      * @see SkyCondition
 	 */
 	public void addSkyCondition(SkyCondition sc) {
+		if (skyConditions == null) {
+			skyConditions = new ArrayList(4);
+		}
 		skyConditions.add(sc);
 	}
 
@@ -720,7 +1010,7 @@ public class Metar {
      * @see SkyCondition
 	 */
 	public SkyCondition getSkyCondition(int i) {
-		if (skyConditions.size() >= i) {
+		if (skyConditions != null && skyConditions.size() >= i) {
 			return (SkyCondition)skyConditions.get(i);
 		} else {
 			return null;
@@ -729,10 +1019,14 @@ public class Metar {
 
     /**
      *
-     * @return an ArrayList of SkyCondition objects
+     * @return an ArrayList of SkyCondition objects, a new empty one if
+     *         there are none
      * @see SkyCondition
      */
 	public ArrayList getSkyConditions() {
+		if (skyConditions == null) {
+			return new ArrayList(0);
+		}
 		return skyConditions;
 	}
 
@@ -742,6 +1036,9 @@ public class Metar {
      * @see RunwayVisualRange
 	 */
 	public void addRunwayVisualRange(RunwayVisualRange rvr) {
+		if (runwayVisualRanges == null) {
+			runwayVisualRanges = new ArrayList(4);
+		}
 		runwayVisualRanges.add(rvr);
 	}
 
@@ -751,7 +1048,7 @@ public class Metar {
      * @see RunwayVisualRange
 	 */
 	public RunwayVisualRange getRunwayVisualRange(int i) {
-		if (runwayVisualRanges.size() >= i) {
+		if (runwayVisualRanges != null && runwayVisualRanges.size() >= i) {
 			return (RunwayVisualRange) runwayVisualRanges.get(i);
 		} else {
 			return null;
@@ -760,10 +1057,14 @@ public class Metar {
 
     /**
      *
-     * @return an ArrayList of RunwayVisualRange objects
+     * @return an ArrayList of RunwayVisualRange objects, a new empty one if
+     *         there are none
      * @see RunwayVisualRange
      */
 	public ArrayList getRunwayVisualRanges() {
+		if (runwayVisualRanges == null) {
+			return new ArrayList(0);
+		}
 		return runwayVisualRanges;
 	}
 
@@ -773,6 +1074,9 @@ public class Metar {
      * @see Obscuration
 	 */
 	public void addObscuration(Obscuration o) {
+		if (obscurations == null) {
+			obscurations = new ArrayList(4);
+		}
 		obscurations.add(o);
 	}
 
@@ -782,7 +1086,7 @@ public class Metar {
      * @see Obscuration
 	 */
 	public Obscuration getObscuration(int i) {
-		if (obscurations.size() >= i) {
+		if (obscurations != null && obscurations.size() >= i) {
 			return (Obscuration)obscurations.get(i);
 		} else {
 			return null;
@@ -791,10 +1095,14 @@ public class Metar {
 
     /**
      *
-     * @return an ArrayList of Obscuration objects
+     * @return an ArrayList of Obscuration objects, a new empty one if
+     *         there are none
      * @see Obscuration
      */
 	public ArrayList getObscurations() {
+		if (obscurations == null) {
+			return new ArrayList(0);
+		}
 		return obscurations;
 	}
 	
@@ -858,6 +1166,10 @@ public class Metar {
    * @return The original report string.
    */
   public String getReportString() {
+    if (reportString == null && reportBytes != null) {
+      // METAR text is ASCII, so this needs no charset lookup
+      reportString = new String(reportBytes, StandardCharsets.ISO_8859_1);
+    }
     return reportString;
   }
 
@@ -869,6 +1181,18 @@ public class Metar {
    */
   public void setReportString(String string) {
     reportString = string;
+    reportBytes = null;
+  }
+
+  /**
+   * Set the full report as the ASCII bytes it was parsed from. The report
+   * string is created from them on the first call to getReportString().
+   * 
+   * @param bytes  The original report, not shared with the caller.
+   */
+  void setReportBytes(byte[] bytes) {
+    reportString = null;
+    reportBytes = bytes;
   }
 
 }
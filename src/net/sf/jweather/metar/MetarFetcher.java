@@ -22,12 +22,33 @@ package net.sf.jweather.metar;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import org.apache.log4j.Logger;
 import org.apache.commons.httpclient.HttpClient;
 import org.apache.commons.httpclient.HttpMethod;
 import org.apache.commons.httpclient.HttpStatus;
 import org.apache.commons.httpclient.HttpRecoverableException;
 import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.http.Header;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClients;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
 /**
  * Responsible for downloading the METAR reports 
@@ -38,22 +59,337 @@ import org.apache.commons.httpclient.methods.GetMethod;
  * </code>
  * </p>
  *
+ * The static methods block the calling thread until the download is done.
+ * A MetarFetcher instance downloads without blocking: fetchAsync() returns
+ * at once and the future completes on one of the client's I/O threads, so a
+ * few threads serve any number of downloads in flight. An instance is
+ * thread-safe, should be kept for as long as reports are needed and closed
+ * afterwards.
+ *
+ * Each instance keeps a bounded pool of keep-alive connections, so after
+ * the first few downloads no time is spent setting up TCP connections.
+ * Downloads beyond the per-host limit wait for a pooled connection to come
+ * free rather than opening more.
+ *
+ * <p>
+ * <code>
+ * MetarFetcher fetcher = new MetarFetcher(5000);<br>
+ * fetcher.fetchAsync("KLAX").thenAccept(...);<br>
+ * ...<br>
+ * fetcher.close();<br>
+ * </code>
+ * </p>
+ *
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.4 $
  * @see <a href="Metar.html">Metar</a>
  */
-public class MetarFetcher {
-	private static Logger log = null;
-	private static String metarData = null;
+public class MetarFetcher implements Closeable {
+	private static final Logger log = Logger.getLogger("net.sf.jweather");
 
 	final static String httpMetarURL = "http://weather.noaa.gov/pub/data/observations/metar/stations/";
 	//final static String httpMetarHostname =  "weather.noaa.gov";
 	//final static int    httpMetarPort     =  80;
 	//final static String httpMetarPath     = "/pub/data/observations/metar/stations/";
 
-	static {
-    	log = Logger.getLogger("net.sf.jweather");
-		log.debug("MetarFetcher: instantiated");
+	/** default number of pooled connections of a fetcher instance */
+	public static final int DEFAULT_MAX_CONNECTIONS = 32;
+
+	/** default number of pooled connections to a single host */
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+
+	/**
+	 * longest time in milliseconds an idle connection is kept, unless the
+	 * server asks for less
+	 */
+	public static final long KEEP_ALIVE = 30000;
+
+	// base URL of the station files, the station id and '.TXT' are appended
+	private final String baseURL;
+
+	private final RequestConfig config;
+
+	private final PoolingNHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpAsyncClient client;
+
+	/**
+	 * Create a non-blocking fetcher for the NOAA station files, without
+	 * timeouts.
+	 */
+	public MetarFetcher() {
+		this(0);
+	}
+
+	/**
+	 * Create a non-blocking fetcher for the NOAA station files.
+	 *
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 */
+	public MetarFetcher(int timeout) {
+		this(httpMetarURL, timeout);
+	}
+
+	/**
+	 * Create a non-blocking fetcher for station files served from another
+	 * location, e.g. a mirror.
+	 *
+	 * @param baseURL URL the station id and '.TXT' are appended to
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 */
+	public MetarFetcher(String baseURL, int timeout) {
+		this(baseURL, timeout, DEFAULT_MAX_CONNECTIONS,
+				DEFAULT_MAX_CONNECTIONS_PER_HOST);
+	}
+
+	/**
+	 * Create a non-blocking fetcher with its own connection limits.
+	 *
+	 * @param baseURL URL the station id and '.TXT' are appended to
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none;
+	 *        also the longest time a download waits for a pooled connection
+	 * @param maxConnections connections kept open to all hosts together
+	 * @param maxConnectionsPerHost connections kept open to any one host,
+	 *        see setMaxConnectionsPerHost() to change it for a single host
+	 */
+	public MetarFetcher(String baseURL, int timeout, int maxConnections,
+			int maxConnectionsPerHost) {
+		if (maxConnections <= 0 || maxConnectionsPerHost <= 0) {
+			throw new IllegalArgumentException("connection limits "
+					+ maxConnections + ", " + maxConnectionsPerHost);
+		}
+		this.baseURL = baseURL;
+		IOReactorConfig reactorConfig = IOReactorConfig.custom()
+				.setConnectTimeout(timeout)
+				.setSoTimeout(timeout)
+				.setTcpNoDelay(true)
+				.build();
+		// daemon threads, so a fetcher nobody closed does not keep the VM up
+		ThreadFactory threads = runnable -> {
+			Thread thread = new Thread(runnable, "MetarFetcher I/O");
+			thread.setDaemon(true);
+			return thread;
+		};
+		try {
+			connectionManager = new PoolingNHttpClientConnectionManager(
+					new DefaultConnectingIOReactor(reactorConfig, threads));
+		} catch (IOReactorException e) {
+			throw new IllegalStateException("unable to start I/O reactor", e);
+		}
+		connectionManager.setMaxTotal(maxConnections);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+
+		config = RequestConfig.custom()
+				.setConnectTimeout(timeout)
+				.setSocketTimeout(timeout)
+				.setConnectionRequestTimeout(timeout)
+				.build();
+		client = HttpAsyncClients.custom()
+				.setConnectionManager(connectionManager)
+				.setKeepAliveStrategy(new KeepAliveStrategy())
+				.setDefaultRequestConfig(config)
+				.setThreadFactory(threads)
+				.build();
+		client.start();
+	}
+
+	/**
+	 * Change the number of connections kept open to one host.
+	 *
+	 * @param host the host, e.g. 'weather.noaa.gov' or
+	 *        'http://localhost:8080'
+	 * @param max the number of connections
+	 */
+	public void setMaxConnectionsPerHost(String host, int max) {
+		if (max <= 0) {
+			throw new IllegalArgumentException("connection limit " + max);
+		}
+		HttpHost target = HttpHost.create(host);
+		if (target.getPort() < 0) {
+			// requests are routed to the scheme's default port
+			target = new HttpHost(target.getHostName(),
+					"https".equals(target.getSchemeName()) ? 443 : 80,
+					target.getSchemeName());
+		}
+		connectionManager.setMaxPerRoute(new HttpRoute(target), max);
+	}
+
+	/**
+	 * @return the number of pooled connections that are open but idle,
+	 *         waiting to be reused
+	 */
+	public int getIdleConnections() {
+		return connectionManager.getTotalStats().getAvailable();
+	}
+
+	/**
+	 * Download the station file, a date line followed by the report line,
+	 * without blocking.
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @return a future for the station file, as returned by fetch(String),
+	 *         which completes exceptionally with an IOException if the
+	 *         download fails
+	 */
+	public CompletableFuture<String> fetchAsync(String station) {
+		return fetchBytesAsync(station).thenApply(
+				body -> new String(body, StandardCharsets.ISO_8859_1) + "\n");
+	}
+
+	/**
+	 * Download the raw station file without blocking, see
+	 * fetchBytes(String, int). The future completes on an I/O thread of this
+	 * fetcher, so slow work depending on it should use the ...Async methods
+	 * of CompletableFuture. Cancelling the future aborts the download.
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @return a future for the response body, which completes exceptionally
+	 *         with an IOException if the download fails
+	 */
+	public CompletableFuture<byte[]> fetchBytesAsync(String station) {
+		return data(execute(new HttpGet(baseURL + station + ".TXT"), station,
+				null));
+	}
+
+	/**
+	 * Same as fetchBytesAsync(String) with its own timeout in place of the
+	 * one this fetcher was created with.
+	 *
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 */
+	public CompletableFuture<byte[]> fetchBytesAsync(String station,
+			int timeout) {
+		return data(execute(get(station, timeout), station, null));
+	}
+
+	/**
+	 * Download a station file without blocking unless it is unchanged since
+	 * a previous download. The request carries the Last-Modified and ETag
+	 * values of the previous file, and a server finding the file unchanged
+	 * answers without sending it again.
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @param timeout connect and read timeout in milliseconds, or 0 for none
+	 * @param previous the file downloaded before, or null
+	 * @return a future for the new file, or for previous itself if the
+	 *         server reported it unchanged. It completes exceptionally with
+	 *         an IOException if the download fails
+	 */
+	public CompletableFuture<StationFile> fetchFileAsync(String station,
+			int timeout, StationFile previous) {
+		HttpGet get = get(station, timeout);
+		if (previous != null) {
+			if (previous.getLastModified() != null) {
+				get.setHeader("If-Modified-Since", previous.getLastModified());
+			}
+			if (previous.getETag() != null) {
+				get.setHeader("If-None-Match", previous.getETag());
+			}
+		}
+		return execute(get, station, previous);
+	}
+
+	private HttpGet get(String station, int timeout) {
+		HttpGet get = new HttpGet(baseURL + station + ".TXT");
+		get.setConfig(RequestConfig.copy(config)
+				.setConnectTimeout(timeout)
+				.setSocketTimeout(timeout)
+				.setConnectionRequestTimeout(timeout)
+				.build());
+		return get;
+	}
+
+	/**
+	 * @return the data of the file, cancelling the download if the returned
+	 *         future is cancelled
+	 */
+	private static CompletableFuture<byte[]> data(
+			final CompletableFuture<StationFile> file) {
+		final CompletableFuture<byte[]> result = file.thenApply(
+				StationFile::getData);
+		result.whenComplete((body, e) -> {
+			if (result.isCancelled()) {
+				file.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	private CompletableFuture<StationFile> execute(HttpGet get,
+			final String station, final StationFile previous) {
+		final CompletableFuture<StationFile> result = new CompletableFuture<StationFile>();
+		if (log.isDebugEnabled()) {
+			log.debug("MetarFetcher: downloading data for station '"+station+"'");
+		}
+		final Future<HttpResponse> request = client.execute(get,
+				new FutureCallback<HttpResponse>() {
+			public void completed(HttpResponse response) {
+				int statusCode = response.getStatusLine().getStatusCode();
+				try {
+					if (statusCode == HttpStatus.SC_NOT_MODIFIED
+							&& previous != null) {
+						EntityUtils.consumeQuietly(response.getEntity());
+						if (log.isDebugEnabled()) {
+							log.debug("MetarFetcher: station '"+station+"' not modified");
+						}
+						result.complete(previous);
+					} else if (statusCode != HttpStatus.SC_OK) {
+						EntityUtils.consumeQuietly(response.getEntity());
+						result.completeExceptionally(new IOException(
+								"failed to download station data for '"
+								+ station + "': HTTP " + statusCode));
+					} else {
+						result.complete(new StationFile(station,
+								EntityUtils.toByteArray(response.getEntity()),
+								header(response, "Last-Modified"),
+								header(response, "ETag")));
+					}
+				} catch (IOException e) {
+					result.completeExceptionally(e);
+				}
+			}
+
+			public void failed(Exception e) {
+				result.completeExceptionally(e);
+			}
+
+			public void cancelled() {
+				result.cancel(false);
+			}
+		});
+		result.whenComplete((body, e) -> {
+			if (result.isCancelled()) {
+				request.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	private static String header(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header == null ? null : header.getValue();
+	}
+
+	/**
+	 * Shut the client of this fetcher down, failing the downloads still in
+	 * flight and closing the pooled connections.
+	 */
+	public void close() throws IOException {
+		client.close();
+	}
+
+	/**
+	 * Keeps a connection for as long as the server allows, up to KEEP_ALIVE.
+	 */
+	private static class KeepAliveStrategy implements
+			ConnectionKeepAliveStrategy {
+		public long getKeepAliveDuration(HttpResponse response,
+				HttpContext context) {
+			long duration = DefaultConnectionKeepAliveStrategy.INSTANCE
+					.getKeepAliveDuration(response, context);
+			return duration > 0 && duration < KEEP_ALIVE ? duration
+					: KEEP_ALIVE;
+		}
 	}
 
 	public static String fetch(String station) {
@@ -61,14 +397,40 @@ public class MetarFetcher {
 	}
 
 	public static String fetch(String station, int timeout) {
-		metarData = null;
+		String metarData = null;
+
+		byte[] responseBody = fetchBytes(station, timeout);
+		if (responseBody != null) {
+			// deal with the response.
+			// FIXME - ensure we use the correct character encoding here
+			metarData = new String(responseBody) + "\n";
+			if (log.isDebugEnabled()) {
+				log.debug("MetarFetcher: metar data: " + metarData);
+			}
+		}
 
+		return metarData;
+	}
+
+	/**
+	 * Download the raw station file, a date line followed by the report line,
+	 * as sent by the server. The bytes can be handed straight to
+	 * MetarParser.parseRecord(byte[], int, int) without decoding them into a
+	 * String first.
+	 *
+	 * @param station the station id, e.g. 'KLAX'
+	 * @param timeout connection timeout in milliseconds, or 0 for none
+	 * @return the response body, or null if the download failed
+	 */
+	public static byte[] fetchBytes(String station, int timeout) {
 		// create the http client
 		HttpClient client = new HttpClient();
 
 		// set the timeout is specified
 		if (timeout != 0) {
-			log.debug("MetarFetch: setting timeout to '"+timeout+"' milliseconds");
+			if (log.isDebugEnabled()) {
+				log.debug("MetarFetch: setting timeout to '"+timeout+"' milliseconds");
+			}
 			long start = System.currentTimeMillis();
 			client.setConnectionTimeout(timeout);
 			long end = System.currentTimeMillis();
@@ -87,7 +449,9 @@ public class MetarFetcher {
 		//for (int attempt = 0; statusCode == -1 && attempt < 3; attempt++) {
 			try {
 				// execute the get method
-				log.debug("MetarFetcher: downloading data for station '"+station+"'");
+				if (log.isDebugEnabled()) {
+					log.debug("MetarFetcher: downloading data for station '"+station+"'");
+				}
 				statusCode = client.executeMethod(method);
 			} catch (HttpRecoverableException e) {
 				log.error("a recoverable exception occurred, " +
@@ -101,19 +465,14 @@ public class MetarFetcher {
 		if (statusCode != HttpStatus.SC_OK) {
 			log.error("failed to download station data for '"+station+"'");
 			return null;
-		} else {
-			// read the response body
-			byte[] responseBody = method.getResponseBody();
+		}
 
-			// release the connection
-			method.releaseConnection();
+		// read the response body
+		byte[] responseBody = method.getResponseBody();
 
-			// deal with the response.
-			// FIXME - ensure we use the correct character encoding here
-			metarData = new String(responseBody) + "\n";
-			log.debug("MetarFetcher: metar data: " + metarData);
-		}
+		// release the connection
+		method.releaseConnection();
 
-		return metarData;
+		return responseBody;
 	}
 }
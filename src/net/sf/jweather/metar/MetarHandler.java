@@ -0,0 +1,41 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * Receives the reports decoded from a batch of records, e.g. by
+ * CycleFileReader.readAll(). Records are handed over in the order they were
+ * read.
+ *
+ * @see CycleFileReader#readAll(java.util.Collection, MetarHandler)
+ */
+public interface MetarHandler {
+    /**
+     * Called for every record that was decoded.
+     */
+    void metar(Metar metar);
+
+    /**
+     * Called for every record that could not be decoded; the record itself
+     * is available from exception.getRecord().
+     */
+    void error(MetarParseException exception);
+}
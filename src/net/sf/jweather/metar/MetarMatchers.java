@@ -0,0 +1,129 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * Hand-written matchers for the fixed-shape METAR groups.
+ *
+ * These replace regular expressions that used to be compiled for every
+ * report (and sometimes for every token). Each matcher checks the characters
+ * of token[start, end) in place, so no pattern compilation, matcher state or
+ * substring is involved. All methods are stateless and thread-safe.
+ *
+ * @see MetarParser
+ */
+final class MetarMatchers {
+    private MetarMatchers() {
+    }
+
+    /**
+     * @return true if index lies within token[start, end) and holds an ASCII
+     *         digit
+     */
+    static boolean isDigitAt(CharSequence token, int index, int end) {
+        if (index < 0 || index >= end) {
+            return false;
+        }
+        char c = token.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return true if token[start, end) is non-empty and consists of ASCII
+     *         digits only
+     */
+    static boolean isDigits(CharSequence token, int start, int end) {
+        if (start >= end) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            char c = token.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Variable wind direction group, regex <code>.*\d\d\dV\d\d\d</code>,
+     * e.g. '180V210'. The group itself is always the last seven characters.
+     */
+    static boolean isVariableWindDirection(CharSequence token, int start,
+            int end) {
+        if (end - start < 7) {
+            return false;
+        }
+        int v = end - 4;
+        return token.charAt(v) == 'V' && isDigits(token, v - 3, v)
+                && isDigits(token, v + 1, end);
+    }
+
+    /**
+     * Hourly temperature and dew point remark, regex <code>T\d{8}</code>,
+     * e.g. 'T01441072'.
+     */
+    static boolean isPreciseTemperature(CharSequence token, int start, int end) {
+        return end - start == 9 && token.charAt(start) == 'T'
+                && isDigits(token, start + 1, end);
+    }
+
+    /**
+     * Visibility in meters with an optional less-than prefix and compass
+     * direction suffix, regex <code>^M?\d+(N|NE|E|SE|S|SW|W|NW)?$</code>,
+     * e.g. '4000', 'M0400' or '4000NE'.
+     */
+    static boolean isMeterVisibility(CharSequence token, int start, int end) {
+        int pos = start;
+        if (pos < end && token.charAt(pos) == 'M') {
+            pos++;
+        }
+        int digitsStart = pos;
+        while (isDigitAt(token, pos, end)) {
+            pos++;
+        }
+        if (pos == digitsStart) {
+            return false;
+        }
+        return isCompassDirection(token, pos, end);
+    }
+
+    /**
+     * @return true if token[start, end) is empty or one of the eight compass
+     *         points N, NE, E, SE, S, SW, W, NW
+     */
+    static boolean isCompassDirection(CharSequence token, int start, int end) {
+        switch (end - start) {
+        case 0:
+            return true;
+        case 1:
+            char c = token.charAt(start);
+            return c == 'N' || c == 'E' || c == 'S' || c == 'W';
+        case 2:
+            char first = token.charAt(start);
+            char second = token.charAt(start + 1);
+            return (first == 'N' || first == 'S')
+                    && (second == 'E' || second == 'W');
+        default:
+            return false;
+        }
+    }
+}
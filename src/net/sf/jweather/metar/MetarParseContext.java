@@ -0,0 +1,57 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * Scratch state used by MetarParser while decoding a report.
+ *
+ * The tokenizer is not safe to share between threads, so rather than guarding
+ * a static instance with a lock every thread gets a context of its own.
+ * Reusing it also means that, once warmed up, parsing a report allocates
+ * little beyond the resulting Metar. A context is only ever touched by the
+ * thread that owns it, so the parser needs no synchronization at all.
+ *
+ * @see MetarParser
+ */
+final class MetarParseContext {
+    private static final ThreadLocal<MetarParseContext> contexts =
+            new ThreadLocal<MetarParseContext>() {
+                protected MetarParseContext initialValue() {
+                    return new MetarParseContext();
+                }
+            };
+
+    /** splits reports into groups, reused for every report */
+    final MetarTokenizer tokenizer = new MetarTokenizer();
+
+    /** structured trace of the last report, null unless tracing is on */
+    MetarTrace trace;
+
+    private MetarParseContext() {
+    }
+
+    /**
+     * @return the parse context owned by the calling thread
+     */
+    static MetarParseContext get() {
+        return contexts.get();
+    }
+}
@@ -20,17 +20,11 @@
  */
 package net.sf.jweather.metar;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.time.Instant;
 import java.util.Date;
-import java.util.TimeZone;
 import java.util.ArrayList;
-import org.apache.oro.text.regex.Perl5Matcher;
-import org.apache.oro.text.regex.Perl5Compiler;
-import org.apache.oro.text.regex.MalformedPatternException;
-import org.apache.oro.text.perl.MalformedPerl5PatternException;
-import org.apache.oro.text.perl.Perl5Util;
 import org.apache.log4j.Logger;
 
 /*
@@ -91,6 +85,10 @@ import org.apache.log4j.Logger;
  * Responsible for parsing raw METAR data and providing methods for accessing
  * the data
  * 
+ * The parser keeps no shared mutable state; all scratch objects live in a
+ * per-thread context, so any number of threads may parse reports at once
+ * without external locking.
+ * 
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.18 $
  * @see <a href="Weather.html">Weather </a>
@@ -102,19 +100,6 @@ import org.apache.log4j.Logger;
 public class MetarParser {
     private static Logger log = Logger.getLogger("net.sf.jweather.MetarParser");
 
-    private static Perl5Util utility = new Perl5Util();
-
-    private static Perl5Matcher matcher = new Perl5Matcher();
-
-    private static SimpleDateFormat sdf = new SimpleDateFormat(
-            "yyyy/MM/dd HH:mm");
-
-    private static TimeZone gmtZone = TimeZone.getTimeZone("GMT");
-
-    static {
-        sdf.setTimeZone(gmtZone);
-    }
-
     /**
      * Kept for backwards compatibility.
      * 
@@ -142,16 +127,10 @@ public class MetarParser {
      * 2003/10/29 02:45 <-- Date String KUVA 290245Z AUTO 14003KT 7SM CLR 14/06
      * A2984 RMK AO2 <-- Metar report
      * 
-     * NOTE: The report date/time provided in the resulting object will be
-     * created using the following: 1) The day and time will be retrieved from
-     * the DDHHMMZ string. 2) If the dayOfMonth is greater than the current
-     * dayOfMonth - We'll assume the report was from last month and roll back to
-     * last month. If this involves rolling the year, we'll also do that. 3)
-     * Otherwise Year and Month will be current.
-     * 
-     * passed in the 'dateString' arg will be used to determine the year and
-     * month of this report. The day and time will be retreived from the the
-     * actual report string. Ex: 290245Z above will be 0245GMT on 29 Oct 2003
+     * NOTE: The date line is used as the date of the resulting object. It is
+     * also the reference the DDHHMMZ group of the report is read against, so
+     * the result does not depend on when the record is parsed. Ex: 290245Z
+     * above will be 0245GMT on 29 Oct 2003
      * 
      * @param metarData
      *            The string containing both the date and the report.
@@ -159,16 +138,133 @@ public class MetarParser {
      */
     public static Metar parseRecord(String metarData)
             throws MetarParseException {
-        String dateString = null;
-        String metarString = null;
-        ArrayList splitData = new ArrayList();
-        Perl5Util utility = new Perl5Util();
+        if (metarData == null) {
+            throw new MetarParseException("empty metar data");
+        }
+
+        // split the two lines of raw metar data apart
+        int newline = metarData.indexOf('\n');
+        if (newline == -1) {
+            throw new MetarParseException("no report line in metar data: "
+                    + metarData);
+        }
+        int reportEnd = metarData.indexOf('\n', newline + 1);
+        if (reportEnd == -1) {
+            reportEnd = metarData.length();
+        }
+
+        return parseReport(metarData.substring(0, newline), metarData
+                .substring(newline + 1, reportEnd));
+    }
+
+    /**
+     * Parse both the date string and metar report of a record held as ASCII
+     * bytes, e.g. a station file downloaded by MetarFetcher. Only the short
+     * date line is turned into a String; the report itself is decoded in
+     * place as by parseReport(byte[], int, int).
+     * 
+     * @param metarData
+     *            the bytes holding the date line and the report line
+     * @param offset
+     *            index of the first byte of the record
+     * @param length
+     *            number of bytes in the record
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse the record
+     * @see #parseRecord(String)
+     */
+    public static Metar parseRecord(byte[] metarData, int offset, int length)
+            throws MetarParseException {
+        if (metarData == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        return parseRecord(new AsciiCharSequence(ByteBuffer.wrap(metarData),
+                offset, offset + length));
+    }
 
+    /**
+     * Parse both the date string and metar report of a record held as ASCII
+     * bytes between the position and the limit of a buffer. The buffer's
+     * position and limit are left unchanged.
+     * 
+     * @param metarData
+     *            the buffer holding the date line and the report line
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse the record
+     * @see #parseRecord(byte[], int, int)
+     */
+    public static Metar parseRecord(ByteBuffer metarData)
+            throws MetarParseException {
+        if (metarData == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        return parseRecord(new AsciiCharSequence(metarData, metarData
+                .position(), metarData.limit()));
+    }
+
+    private static Metar parseRecord(AsciiCharSequence record)
+            throws MetarParseException {
         // split the two lines of raw metar data apart
-        utility.split(splitData, "/\\n/", metarData);
+        int newline = indexOf(record, '\n', 0);
+        if (newline == -1) {
+            throw new MetarParseException("no report line in metar data: "
+                    + record);
+        }
+        int reportEnd = indexOf(record, '\n', newline + 1);
+        if (reportEnd == -1) {
+            reportEnd = record.length();
+        }
+        return parseRecord(record, newline, reportEnd);
+    }
+
+    /**
+     * Parse a record of a cycle file: a date line followed by a report that
+     * may be wrapped over several lines. The lines of the report are joined
+     * with single spaces.
+     *
+     * @see CycleFileReader
+     */
+    static Metar parseWrappedRecord(AsciiCharSequence record)
+            throws MetarParseException {
+        int newline = indexOf(record, '\n', 0);
+        if (newline == -1) {
+            throw new MetarParseException("no report line in metar data: "
+                    + record);
+        }
+        int end = record.length();
+        while (end > newline + 1
+                && MetarTokenizer.isWhitespace(record.charAt(end - 1))) {
+            end--;
+        }
+        return parseRecord(record, newline, end);
+    }
+
+    private static Metar parseRecord(AsciiCharSequence record, int newline,
+            int reportEnd) throws MetarParseException {
+        // drop the '\r' of CRLF line ends
+        int dateEnd = newline;
+        while (dateEnd > 0
+                && MetarTokenizer.isWhitespace(record.charAt(dateEnd - 1))) {
+            dateEnd--;
+        }
+        String dateString = record.subSequence(0, dateEnd).toString();
+        long recordDate = parseRecordDate(dateString);
+        Metar metar = parseReport((AsciiCharSequence) record.subSequence(
+                newline + 1, reportEnd), recordDate);
+        metar.setDateValue(recordDate);
+        metar.setDateString(dateString);
+        return metar;
+    }
 
-        dateString = (String) splitData.get(0);
-        return parseReport((String) splitData.get(0), (String) splitData.get(1));
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     /**
@@ -179,21 +275,30 @@ public class MetarParser {
      * @param dateString
      *            The record date string
      * @return The Date object representing the source date string
-     * @throws ParseException
-     *             Error parsing the date
      * @throws MetarParseException
      *             A necessary component of the metar record was not parsed
      *             correctly
      */
     public static Date parseRecordDateString(String dateString)
             throws MetarParseException {
-        Date result = null;
+        return new Date(parseRecordDate(dateString));
+    }
+
+    /**
+     * @return the record date, e.g. '2003/10/29 02:45', in milliseconds since
+     *         the epoch
+     */
+    private static long parseRecordDate(String dateString)
+            throws MetarParseException {
+        if (dateString == null) {
+            throw new MetarParseException("empty record date");
+        }
         try {
-            result = sdf.parse(dateString.trim());
-        } catch (ParseException pExc) {
-            throw new MetarParseException(pExc);
+            return MetarTime.parseRecordDate(dateString, 0, dateString
+                    .length());
+        } catch (IllegalArgumentException exc) {
+            throw new MetarParseException(exc);
         }
-        return result;
     }
 
     /**
@@ -219,9 +324,9 @@ public class MetarParser {
      */
     public static Metar parseReport(String dateString, String metarString)
             throws MetarParseException {
-        Date recordDate = parseRecordDateString(dateString);
-        Metar metar = parseReport(metarString);
-        metar.setDate(recordDate);
+        long recordDate = parseRecordDate(dateString);
+        Metar metar = parseReport(metarString, recordDate);
+        metar.setDateValue(recordDate);
         metar.setDateString(dateString);
         return metar;
     }
@@ -234,10 +339,10 @@ public class MetarParser {
      * 
      * NOTE: The report date/time provided in the resulting object will be
      * created using the following: 1) The day and time will be retrieved from
-     * the DDHHMMZ string. 2) If the dayOfMonth is greater than the current
-     * dayOfMonth - We'll assume the report was from last month and roll back to
-     * last month. If this involves rolling the year, we'll also do that. 3)
-     * Otherwise Year and Month will be current.
+     * the DDHHMMZ string. 2) Year and month are those of the latest such time
+     * that is no more than a day ahead of the current time, which rolls back
+     * to last month (and year) when the day has not come yet this month. Use
+     * parseReport(String, Instant) to read reports against a fixed time.
      * 
      * NOTE: If you later provide a date string to the Metar using setDate(),
      * then that value will overwrite the value parsed here.
@@ -252,53 +357,221 @@ public class MetarParser {
      */
     public static Metar parseReport(String metarString)
             throws MetarParseException {
+        return parseReport(metarString, System.currentTimeMillis());
+    }
+
+    /**
+     * Parse a metar report whose year and month are taken from a reference
+     * instant rather than the current time, e.g. when re-parsing an archive.
+     * The report date is the latest time with the report's day, hour and
+     * minute that lies no more than a day after the reference, see MetarTime.
+     * Parsing the same report against the same reference always gives the
+     * same date.
+     * 
+     * @param metarString
+     *            A standard NOAA Metar report
+     * @param reference
+     *            the instant the report was received or filed
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse report
+     * @see MetarTime#reportTime(int, int, int, Instant)
+     */
+    public static Metar parseReport(String metarString, Instant reference)
+            throws MetarParseException {
+        if (reference == null) {
+            throw new MetarParseException("no reference time");
+        }
+        return parseReport(metarString, reference.toEpochMilli());
+    }
+
+    private static Metar parseReport(String metarString, long reference)
+            throws MetarParseException {
+        if (metarString == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        Metar metar = parseReport(metarString, 0, metarString.length(),
+                reference);
+        metar.setReportString(metarString);
+        return metar;
+    }
+
+    /**
+     * Parse a metar report held in a slice of a character array, such as a
+     * buffer filled by a Reader. The array is only read while parsing; the
+     * resulting Metar keeps no reference to it, so the caller is free to reuse
+     * the buffer for the next report.
+     * 
+     * @param report
+     *            the characters holding the report
+     * @param offset
+     *            index of the first character of the report
+     * @param length
+     *            number of characters in the report
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse report
+     * @see #parseReport(String)
+     */
+    public static Metar parseReport(char[] report, int offset, int length)
+            throws MetarParseException {
+        if (report == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        Metar metar = parseReport(CharBuffer.wrap(report, offset, length), 0,
+                length, System.currentTimeMillis());
+        metar.setReportString(new String(report, offset, length));
+        return metar;
+    }
+
+    /**
+     * Parse a metar report held as ASCII bytes in a slice of a byte array.
+     * The bytes are decoded in place, with no charset decoding and without
+     * building a String for the report; the Metar keeps its own copy of the
+     * bytes and only turns them into a String if getReportString() is called.
+     * 
+     * @param report
+     *            the bytes holding the report
+     * @param offset
+     *            index of the first byte of the report
+     * @param length
+     *            number of bytes in the report
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse report
+     * @see #parseReport(String)
+     */
+    public static Metar parseReport(byte[] report, int offset, int length)
+            throws MetarParseException {
+        if (report == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        return parseReport(new AsciiCharSequence(ByteBuffer.wrap(report),
+                offset, offset + length), System.currentTimeMillis());
+    }
+
+    /**
+     * Parse a metar report held as ASCII bytes between the position and the
+     * limit of a buffer. Heap, direct and memory-mapped buffers are all read
+     * in place; the buffer's position and limit are left unchanged.
+     * 
+     * @param report
+     *            the buffer holding the report
+     * @return The Metar object describing the report
+     * @throws MetarParseException
+     *             Unable to parse report
+     * @see #parseReport(byte[], int, int)
+     */
+    public static Metar parseReport(ByteBuffer report)
+            throws MetarParseException {
+        if (report == null) {
+            throw new MetarParseException("empty metar data");
+        }
+        return parseReport(new AsciiCharSequence(report, report.position(),
+                report.limit()), System.currentTimeMillis());
+    }
+
+    private static Metar parseReport(AsciiCharSequence report,
+            long reference) throws MetarParseException {
+        Metar metar = parseReport(report, 0, report.length(), reference);
+        metar.setReportBytes(reportBytes(report));
+        return metar;
+    }
+
+    /**
+     * @return the bytes of the report, with the lines of a wrapped report
+     *         joined by single spaces
+     */
+    private static byte[] reportBytes(AsciiCharSequence report) {
+        if (indexOf(report, '\n', 0) == -1) {
+            return report.toByteArray();
+        }
+        byte[] bytes = new byte[report.length()];
+        int count = 0;
+        boolean lineBreak = false;
+        for (int i = 0; i < report.length(); i++) {
+            char c = report.charAt(i);
+            if (c == '\n' || c == '\r') {
+                lineBreak = true;
+                while (count > 0
+                        && MetarTokenizer.isWhitespace((char) bytes[count - 1])) {
+                    count--;
+                }
+            } else if (!lineBreak) {
+                bytes[count++] = (byte) c;
+            } else if (!MetarTokenizer.isWhitespace(c)) {
+                if (count > 0) {
+                    bytes[count++] = ' ';
+                }
+                bytes[count++] = (byte) c;
+                lineBreak = false;
+            }
+        }
+        byte[] joined = new byte[count];
+        System.arraycopy(bytes, 0, joined, 0, count);
+        return joined;
+    }
+
+    /**
+     * Parse the report held in text[start, end). The report is split into
+     * groups by the calling thread's MetarTokenizer and every group is decoded
+     * in place, so the only objects created are the ones kept by the
+     * resulting Metar. The report string is left for the caller to set. The
+     * year and month of the report date are taken from reference, in epoch
+     * milliseconds.
+     */
+    static Metar parseReport(CharSequence text, int start, int end,
+            long reference) throws MetarParseException {
+        // per-thread scratch state, nothing here is shared between threads
+        MetarParseContext context = MetarParseContext.get();
+        MetarTokenizer tokens = context.tokenizer;
+
+        // checked once per report so that nothing is built for discarded
+        // debug lines
+        boolean debug = log.isDebugEnabled();
+
+        // opt-in record of every decoded group, see MetarTrace
+        MetarTrace trace = context.trace;
+        if (trace != null) {
+            trace.reset(text, start, end);
+        }
+
         try {
-            ArrayList metarParts = new ArrayList();
-            ArrayList tokens = new ArrayList();
             int index = 0;
             int numTokens = 0;
-            String temp = null;
-
-            log.debug("MetarParser: instantiated");
 
-            if (metarString == null) {
-                throw new MetarParseException("empty metar data");
+            if (debug) {
+                log.debug("MetarParser: raw: " + text.subSequence(start, end));
             }
 
-            log.debug("MetarParser: raw: " + metarString);
-
             Metar metar = new Metar();
 
-            // First action is to save the report string
-            metar.setReportString(metarString);
-
             // split the second line, the METAR data, on whitespace into tokens
-            // for
-            // processing
-            try {
-                utility.split(tokens, metarString);
-            } catch (MalformedPerl5PatternException e) {
-                log
-                        .error("MetarParser: error spliting metar data on whitespace: "
-                                + e);
-                throw new MetarParseException(
-                        "error spliting metar data on whitespace:", e);
-            }
+            // for processing
+            tokens.reset(text, start, end);
 
             // the number of tokens we have
-            numTokens = tokens.size();
-            log.debug("MetarParser: have '" + numTokens + "' tokens");
+            numTokens = tokens.count();
+            if (debug) {
+                log.debug("MetarParser: have '" + numTokens + "' tokens");
+            }
 
             // type of report should be present (METAR/SPECI)???
 
             // station id will always be present in
             // format: CCCC
             //     CCCC - alphabetic characters only [a-zA-Z]
-            metar.setStationID((String) tokens.get(index++));
-            log.debug("MetarParser: stationID: " + metar.getStationID());
+            if (trace != null) {
+                trace.group("station", tokens, index);
+            }
+            metar.setStationID(tokens.toString(index++));
+            if (debug) {
+                log.debug("MetarParser: stationID: " + metar.getStationID());
+            }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // date and time of the report
             // format: YYGGggZ
@@ -306,22 +579,19 @@ public class MetarParser {
             //     GG - hours
             //     gg - minutes
             //     Z - Zulu (UTC)
-            if (((String) tokens.get(index)).endsWith("Z")) {
-                // Parse report date (Mandatory in Metar report)
-                Calendar calendar = Calendar.getInstance();
-                calendar.setTimeZone(gmtZone);
-
-                String day = ((String) tokens.get(index)).substring(0, 2);
-                String hour = ((String) tokens.get(index)).substring(2, 4);
-                String minute = ((String) tokens.get(index)).substring(4, 6);
+            if (tokens.endsWith(index, "Z")) {
+                if (trace != null) {
+                    trace.group("time", tokens, index);
+                }
 
+                // Parse report date (Mandatory in Metar report)
                 int dayInt = -1;
                 int hourInt = -1;
                 int minuteInt = -1;
                 try {
-                    dayInt = Integer.parseInt(day);
-                    hourInt = Integer.parseInt(hour);
-                    minuteInt = Integer.parseInt(minute);
+                    dayInt = tokens.parseInt(index, 0, 2);
+                    hourInt = tokens.parseInt(index, 2, 4);
+                    minuteInt = tokens.parseInt(index, 4, 6);
                 } catch (NumberFormatException nfExc) {
                     String errMsg = "Unable to parse Metar date value: "
                             + nfExc;
@@ -329,55 +599,68 @@ public class MetarParser {
                     throw new MetarParseException(errMsg, nfExc);
                 }
 
-                // Case where the month may have rolled. In this case, the
-                // calendar should be
-                // rolled back one day
-                if (dayInt > calendar.get(Calendar.DAY_OF_MONTH)) {
-                    calendar.roll(Calendar.DAY_OF_MONTH, false);
+                // year and month come from the reference, which also
+                // settles reports from the end of the previous month
+                try {
+                    metar.setDateValue(MetarTime.reportTimeMillis(dayInt,
+                            hourInt, minuteInt, reference));
+                } catch (IllegalArgumentException iaExc) {
+                    String errMsg = "Unable to parse Metar date value: "
+                            + iaExc.getMessage();
+                    log.error(errMsg);
+                    throw new MetarParseException(errMsg, iaExc);
+                }
+                if (trace != null) {
+                    trace.value("day", dayInt).value("hour", hourInt).value(
+                            "minute", minuteInt);
                 }
-
-                calendar.set(Calendar.DAY_OF_MONTH, dayInt);
-                calendar.set(Calendar.HOUR_OF_DAY, hourInt);
-                calendar.set(Calendar.MINUTE, minuteInt);
-                calendar.set(Calendar.SECOND, 0);
-                calendar.set(Calendar.MILLISECOND, 0);
-
-                metar.setDate(calendar.getTime());
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-                log.debug("MetarParser: date: " + metar.getDate());
+                if (debug) {
+                    log.debug("MetarParser: date: " + metar.getDate());
+                }
             } else {
-                log.debug("MetarParser: date: no date found");
+                if (debug) {
+                    log.debug("MetarParser: date: no date found");
+                }
                 // unexpected token...should have been data in Zulu (UTC)
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // report modifier
             // format: (AUTO or COR)
             //     AUTO - fully automated with no human intervention or oversight
             //     COR - corrected report
-            if (((String) tokens.get(index))
-                    .equals(MetarConstants.METAR_AUTOMATED)
-                    || ((String) tokens.get(index))
-                            .equals(MetarConstants.METAR_CORRECTED)) {
-                metar.setReportModifier((String) tokens.get(index));
+            if (tokens.equals(index, MetarConstants.METAR_AUTOMATED)
+                    || tokens.equals(index, MetarConstants.METAR_CORRECTED)) {
+                metar.setReportModifier(tokens.equals(index,
+                        MetarConstants.METAR_AUTOMATED)
+                        ? MetarConstants.METAR_AUTOMATED
+                        : MetarConstants.METAR_CORRECTED);
+                if (trace != null) {
+                    trace.group("modifier", tokens, index);
+                }
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-                log.debug("MetarParser: report modifier: "
-                        + metar.getReportModifier());
-            } else {
+                if (debug) {
+                    log.debug("MetarParser: report modifier: "
+                            + metar.getReportModifier());
+                }
+            } else if (debug) {
                 log.debug("MetarParser: no report modifier");
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // wind group (speed and direction)
             // format: dddff(f)Gf f (f )KT_d d d Vd d d
@@ -389,164 +672,165 @@ public class MetarParser {
             //     KT/KTS (or) MPS - knots (or) meters per second
             //     d d d Vd d d - variable wind direction > 6 knots, degree=>degree
             //      n n n x x x e.g. 180V210 => variable from 180deg to 210deg
-
-            temp = (String) tokens.get(index);
-            if (temp.endsWith("KT") || temp.endsWith("KTS") ||
-                temp.endsWith("MPS") || temp.startsWith("VRB")) {
+            boolean windKnots = tokens.endsWith(index, "KT")
+                    || tokens.endsWith(index, "KTS");
+            boolean windMPS = tokens.endsWith(index, "MPS");
+            boolean windVariable = tokens.startsWith(index, "VRB");
+            if (windKnots || windMPS || windVariable) {
                 int pos = 0;
-                boolean windInKnots = false;
+                int speed;
+
+                if (trace != null) {
+                    trace.group("wind", tokens, index);
+                }
 
                 // Note: There have been cases where wind started with VRB
                 // and did not end with KT. This seems to only happen in the
                 // US, so assuming knots.
-                if (temp.endsWith("KT") ||
-                    temp.endsWith("KTS") ||
-                    (temp.startsWith("VRB") && !temp.endsWith("MPS"))) {
-                    log.debug("MetarParser: wind speed in knots");
-                    windInKnots = true;
-                } else {
-                    log.debug("MetarParser: wind speed in meters per second");
+                boolean windInKnots = windKnots || (windVariable && !windMPS);
+                if (debug) {
+                    log.debug(windInKnots ? "MetarParser: wind speed in knots"
+                            : "MetarParser: wind speed in meters per second");
                 }
 
-                if (!((String) tokens.get(index)).substring(0, 3).equals("VRB")) {
-                    // we have gusts
-                    Integer windDirection = new Integer(((String) tokens
-                            .get(index)).substring(0, 3));
-                    metar.setWindDirection(windDirection);
+                if (!windVariable) {
+                    metar.setWindDirectionValue(tokens.parseInt(index, 0, 3));
                 } else {
-                    log.debug("MetarParser: variable wind direction <= 6 knots");
+                    if (debug) {
+                        log.debug("MetarParser: variable wind direction <= 6 knots");
+                    }
                     metar.setWindDirectionIsVariable(true);
                 }
 
-                temp = (String) tokens.get(index);
-
                 // Three digit wind only if not variable and has digit in 
                 // 5th position
-                if(!metar.getWindDirectionIsVariable() &&
-                   temp.length() >= 6 &&
-                   Character.isDigit(temp.charAt(5))){
+                if (!windVariable && tokens.isDigitAt(index, 5)) {
                     // have three-digit wind speed
-                    log.debug("MetarParser: have three-digit wind speed");
-                    if (windInKnots) {
-                        metar.setWindSpeed(new Float(((String) tokens
-                                .get(index)).substring(3, 6)));
-                    } else {
-                        metar.setWindSpeedInMPS(new Float(((String) tokens
-                                .get(index)).substring(3, 6)));
+                    if (debug) {
+                        log.debug("MetarParser: have three-digit wind speed");
                     }
+                    speed = tokens.parseInt(index, 3, 6);
                     pos = 6;
                 } else {
                     // have two-digit wind speed
-                    log.debug("MetarParser: have two-digit wind speed");
-                    if (windInKnots) {
-                        metar.setWindSpeed(new Float(((String) tokens
-                                .get(index)).substring(3, 5)));
-                    } else {
-                        metar.setWindSpeedInMPS(new Float(((String) tokens
-                                .get(index)).substring(3, 5)));
+                    if (debug) {
+                        log.debug("MetarParser: have two-digit wind speed");
                     }
+                    speed = tokens.parseInt(index, 3, 5);
                     pos = 5;
                 }
+                if (windInKnots) {
+                    metar.setWindSpeedValue(speed);
+                } else {
+                    metar.setWindSpeedInMPSValue(speed);
+                }
+                if (trace != null) {
+                    if (windVariable) {
+                        trace.value("direction", "VRB");
+                    } else {
+                        trace.value("direction", metar.getWindDirectionValue());
+                    }
+                    trace.value("speed", speed).value("unit",
+                            windInKnots ? "KT" : "MPS");
+                }
 
-                temp = (String) tokens.get(index);
-                if (temp.length() > pos && temp.charAt(pos) == 'G') {
+                if (tokens.length(index) > pos
+                        && tokens.charAt(index, pos) == 'G') {
                     // we have wind gusts
-                    log.debug("MetarParser: wind gusts");
+                    if (debug) {
+                        log.debug("MetarParser: wind gusts");
+                    }
                     pos++;
 
-                    temp = ((String) tokens.get(index)).substring(pos + 2,
-                            pos + 2);
-                    //if
-                    // (((String)tokens.get(index)).substring(pos+2,pos+2).matches("\\d"))
-                    // {
-                    try {
-                        if (matcher.matches(temp, new Perl5Compiler()
-                                .compile("\\d"))) {
-                            // have three-digit wind speed
-                            log
-                                    .debug("MetarParser: have three-digit wind speed");
-                            if (windInKnots) {
-                                metar.setWindGusts(new Float(((String) tokens
-                                        .get(index)).substring(pos, pos + 3)));
-                            } else {
-                                metar.setWindGustsInMPS(new Float(
-                                        ((String) tokens.get(index)).substring(
-                                                pos, pos + 3)));
-                            }
-                        } else {
-                            // have two-digit wind speed
-                            log.debug("MetarParser: have two-digit wind speed");
-                            if (windInKnots) {
-                                metar.setWindGusts(new Float(((String) tokens
-                                        .get(index)).substring(pos, pos + 2)));
-                            } else {
-                                metar.setWindGustsInMPS(new Float(
-                                        ((String) tokens.get(index)).substring(
-                                                pos, pos + 2)));
-                            }
+                    int gusts;
+                    // a digit in the third position means three-digit gusts
+                    if (tokens.isDigitAt(index, pos + 2)) {
+                        if (debug) {
+                            log.debug("MetarParser: have three-digit wind gusts");
+                        }
+                        gusts = tokens.parseInt(index, pos, pos + 3);
+                    } else {
+                        if (debug) {
+                            log.debug("MetarParser: have two-digit wind gusts");
                         }
-                    } catch (MalformedPatternException e) {
-                        log.error("MetarParser: error matching wind gusts: "
-                                + e);
+                        gusts = tokens.parseInt(index, pos, pos + 2);
+                    }
+                    if (windInKnots) {
+                        metar.setWindGustsValue(gusts);
+                    } else {
+                        metar.setWindGustsInMPSValue(gusts);
+                    }
+                    if (trace != null) {
+                        trace.value("gusts", gusts);
                     }
                 } else {
                     // we don't have gusts
-                    log.debug("MetarParser: no gusts");
+                    if (debug) {
+                        log.debug("MetarParser: no gusts");
+                    }
                 }
 
-                log.debug("MetarParser: wind direction: "
-                        + metar.getWindDirection());
-                if (windInKnots) {
+                if (debug) {
+                    log.debug("MetarParser: wind direction: "
+                            + metar.getWindDirection());
                     log.debug("MetarParser: wind speed: "
-                            + metar.getWindSpeedInKnots());
-                } else {
-                    log.debug("MetarParser: wind speed: "
-                            + metar.getWindSpeedInMPS());
+                            + (windInKnots ? metar.getWindSpeedInKnots()
+                                    : metar.getWindSpeedInMPS()));
+                    log.debug("MetarParser: wind gusts: "
+                            + metar.getWindGustsInKnots());
                 }
-                log.debug("MetarParser: wind gusts: "
-                        + metar.getWindGustsInKnots());
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-                log.debug("MetarParser: processing ((String)tokens.get("
-                        + index + "))=" + ((String) tokens.get(index)));
+                if (debug) {
+                    debugToken(tokens, index);
+                }
 
                 // if we have variable wind direction
-                temp = ((String) tokens.get(index));
-                try {
-                    if (matcher.matches(temp, new Perl5Compiler()
-                            .compile(".*\\d\\d\\dV\\d\\d\\d"))) {
-                        metar.setWindDirectionIsVariable(true);
+                if (MetarMatchers.isVariableWindDirection(tokens.text(),
+                        tokens.start(index), tokens.end(index))) {
+                    // the dddVddd group is always the last seven characters
+                    int groupStart = tokens.length(index) - 7;
+
+                    if (trace != null) {
+                        trace.group("variable wind", tokens, index);
+                    }
+
+                    metar.setWindDirectionIsVariable(true);
 
-                        metar.setWindDirectionMin(new Integer(((String) tokens
-                                .get(index)).substring(0, 3)));
-                        metar.setWindDirectionMax(new Integer(((String) tokens
-                                .get(index)).substring(4, 7)));
+                    metar.setWindDirectionMinValue(tokens.parseInt(index,
+                            groupStart, groupStart + 3));
+                    metar.setWindDirectionMaxValue(tokens.parseInt(index,
+                            groupStart + 4, groupStart + 7));
+                    if (trace != null) {
+                        trace.value("min", metar.getWindDirectionMinValue())
+                                .value("max", metar.getWindDirectionMaxValue());
+                    }
 
+                    if (debug) {
                         log.debug("MetarParser: variable wind direction min: "
                                 + metar.getWindDirectionMin());
                         log.debug("MetarParser: variable wind direction max: "
                                 + metar.getWindDirectionMax());
+                    }
 
-                        // on to the next token
-                        if (index < numTokens - 1) {
-                            index++;
-                        }
+                    // on to the next token
+                    if (index < numTokens - 1) {
+                        index++;
                     }
-                } catch (MalformedPatternException e) {
-                    log
-                            .error("MetarParser: error matching variable wind speed: "
-                                    + e);
                 }
             } else {
                 // unexpected token...should have been wind speed
-                log.debug("MetarParser: wind speed: not found");
+                if (debug) {
+                    log.debug("MetarParser: wind speed: not found");
+                }
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // CAVOK
             //
@@ -555,17 +839,23 @@ public class MetarParser {
             // sector altitude, whichever is the lowest and no CB
             // (Cumulonimbus) or
             // over development and no significant weather.
-            if (((String) tokens.get(index))
-                    .equals(MetarConstants.METAR_CAVOK)) {
+            if (tokens.equals(index, MetarConstants.METAR_CAVOK)) {
                 metar.setIsCavok(true);
+                if (trace != null) {
+                    trace.group("cavok", tokens, index);
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
                 // Horizontal visibility in meters
-           } else if (((String) tokens.get(index)).equals("9999")) {
-                metar.setVisibilityInKilometers(new Float(10));
+            } else if (tokens.equals(index, "9999")) {
+                metar.setVisibilityInKilometersValue(10);
+                if (trace != null) {
+                    trace.group("visibility", tokens, index).value(
+                            "kilometers", 10);
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
@@ -577,117 +867,157 @@ public class MetarParser {
                 //     (M) - used to indicate less than
                 //     VVVVV - miles (00001SM)
                 //     SM - statute miles
-            } else if (((String) tokens.get(index)).endsWith("SM")
-                    || ((index + 1 < numTokens) && ((String) tokens
-                            .get(index + 1)).endsWith("SM"))
-                    || ((String) tokens.get(index)).endsWith("KM")
-                    || ((index + 1 < numTokens) && ((String) tokens
-                            .get(index + 1)).endsWith("KM"))) {
-                log.debug("MetarParser: visibility");
-
-                String whole, fraction = "";
-                Float visibility = null;
+            } else if (tokens.endsWith(index, "SM")
+                    || ((index + 1 < numTokens) && tokens.endsWith(index + 1,
+                            "SM"))
+                    || tokens.endsWith(index, "KM")
+                    || ((index + 1 < numTokens) && tokens.endsWith(index + 1,
+                            "KM"))) {
+                if (debug) {
+                    log.debug("MetarParser: visibility");
+                }
+
+                float visibility;
                 boolean isLessThan = false;
-                String token = (String) tokens.get(index);
                 boolean visibilityInStatuteMiles = false;
+                int from = 0;
+
+                if (trace != null) {
+                    trace.group("visibility", tokens, index);
+                }
 
-                if (((String) tokens.get(index)).endsWith("SM")
-                        || ((index + 1 < numTokens) && ((String) tokens
-                                .get(index + 1)).endsWith("SM"))) {
+                // the fraction, if any, is fractionToken[fractionFrom,
+                // fractionTo)
+                int fractionToken = -1;
+                int fractionFrom = 0;
+                int fractionTo = 0;
+
+                if (tokens.endsWith(index, "SM")
+                        || ((index + 1 < numTokens) && tokens.endsWith(
+                                index + 1, "SM"))) {
                     visibilityInStatuteMiles = true;
                 }
 
-                if (token.startsWith("M")) {
-                    log.debug("MetarParser: visibility: less than");
+                if (tokens.startsWith(index, "M")) {
+                    if (debug) {
+                        log.debug("MetarParser: visibility: less than");
+                    }
                     isLessThan = true;
-                    token = token.substring(1, token.length());
+                    from = 1;
                 }
 
-                if (token.endsWith("SM") || token.endsWith("KM")) {
-                    if (token.indexOf('/') == -1) {
+                if (tokens.endsWith(index, "SM")
+                        || tokens.endsWith(index, "KM")) {
+                    int to = tokens.length(index) - 2;
+                    if (tokens.indexOf(index, '/', from) == -1) {
                         // no fractions to deal with
-                        whole = token.substring(0, token.length() - 2);
+                        visibility = tokens.parseFloat(index, from, to);
                     } else {
-                        whole = "0";
-                        fraction = token.substring(0, token.length() - 2);
+                        visibility = 0;
+                        fractionToken = index;
+                        fractionFrom = from;
+                        fractionTo = to;
                     }
                 } else {
-                    whole = token;
+                    visibility = tokens.parseFloat(index, from, tokens
+                            .length(index));
                     // next token is the fraction part
                     index++;
-                    fraction = ((String) tokens.get(index)).substring(0,
-                            ((String) tokens.get(index)).length() - 2);
+                    fractionToken = index;
+                    fractionTo = tokens.length(index) - 2;
                 }
 
-                visibility = new Float(whole);
-
-                if (!fraction.equals("")) {
+                if (fractionToken != -1 && fractionFrom < fractionTo) {
                     // we have a fraction to convert
-                    ArrayList frac = new ArrayList();
-                    try {
-                        utility.split(frac, "/\\//", fraction);
-                    } catch (MalformedPerl5PatternException e) {
-                        log
-                                .error("MetarParser: error spliting fraction on /: "
-                                        + e);
+                    int slash = tokens.indexOf(fractionToken, '/',
+                            fractionFrom);
+                    if (slash == -1 || slash >= fractionTo) {
                         throw new MetarParseException(
-                                "error spliting fraction on /:", e);
+                                "no '/' in visibility fraction: "
+                                        + tokens.substring(fractionToken,
+                                                fractionFrom, fractionTo));
                     }
 
-                    visibility = new Float(visibility.floatValue()
-                            + new Float((String) frac.get(0)).floatValue()
-                            / new Float((String) frac.get(1)).floatValue());
+                    visibility += tokens.parseFloat(fractionToken,
+                            fractionFrom, slash)
+                            / tokens.parseFloat(fractionToken, slash + 1,
+                                    fractionTo);
                 }
 
                 if (visibilityInStatuteMiles) {
-                    metar.setVisibility(visibility);
+                    metar.setVisibilityValue(visibility);
                 } else {
-                    metar.setVisibilityInKilometers(visibility);
+                    metar.setVisibilityInKilometersValue(visibility);
                 }
                 metar.setVisibilityLessThan(isLessThan);
+                if (trace != null) {
+                    trace.value(visibilityInStatuteMiles ? "miles"
+                            : "kilometers", visibility);
+                    if (isLessThan) {
+                        trace.value("less than", "true");
+                    }
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-                log.debug("MetarParser: visibility: "
-                        + metar.getVisibility() + " M");
-            } else {
-                String token = (String) tokens.get(index);
+                if (debug) {
+                    log.debug("MetarParser: visibility: "
+                            + metar.getVisibility() + " M");
+                }
+            } else if (MetarMatchers.isMeterVisibility(tokens.text(), tokens
+                    .start(index), tokens.end(index))) {
+                if (debug) {
+                    log.debug("MetarParser: visibility");
+                }
                 boolean isLessThan = false;
+                int from = 0;
+                int to = tokens.length(index);
 
-                if (utility.match("/^M?\\d+(N|NE|E|SE|S|SW|W|NW)?$/", token)) {
-                    log.debug("MetarParser: visibility");
-                    
-                    if (token.startsWith("M")) {
+                if (trace != null) {
+                    trace.group("visibility", tokens, index);
+                }
+
+                if (tokens.startsWith(index, "M")) {
+                    if (debug) {
                         log.debug("MetarParser: visibility: less than");
-                        isLessThan = true;
-                        token = token.substring(1, token.length());
-                    }
-                    
-                    // Catch case where a direction is attached. This is 
-                    // done in some countries.
-                    // TODO: For now we don't actually store the direction
-                    while(!Character.isDigit(token.charAt(token.length()-1))){
-                      token = token.substring(0,token.length()-1);
                     }
+                    isLessThan = true;
+                    from = 1;
+                }
 
-                    metar.setVisibilityInMeters(new Float(token));
-                    metar.setVisibilityLessThan(isLessThan);
+                // Catch case where a direction is attached. This is 
+                // done in some countries.
+                // TODO: For now we don't actually store the direction
+                while (!tokens.isDigitAt(index, to - 1)) {
+                    to--;
+                }
 
-                    // on to the next token
-                    if (index < numTokens - 1) {
-                        index++;
+                metar.setVisibilityInMetersValue(tokens.parseInt(index, from,
+                        to));
+                metar.setVisibilityLessThan(isLessThan);
+                if (trace != null) {
+                    trace.value("meters", metar.getVisibilityInMetersValue());
+                    if (isLessThan) {
+                        trace.value("less than", "true");
                     }
-                } else {
-                    // unexpected token...should have been visibility
+                }
+
+                // on to the next token
+                if (index < numTokens - 1) {
+                    index++;
+                }
+            } else {
+                // unexpected token...should have been visibility
+                if (debug) {
                     log.debug("MetarParser: visibility: not found");
                 }
             }
 
-
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // see if we have a Runaway Visual Range Group token
             // format: RD D /V V V V FT or RD D /V V V V VV V V V FT
@@ -705,33 +1035,41 @@ public class MetarParser {
             //     x x x x
             //    FT - feet
             //
-            while (((String) tokens.get(index)).startsWith("R")) {
+            while (tokens.startsWith(index, "R")) {
                 // check that first character after the R is a digit. this helps
                 // qualify this as a real RVR. Otherwise we could be grabbing
                 // the
                 // wx descriptor 'RA'
-                if (!Character.isDigit(((String) tokens.get(index)).charAt(1))) {
+                if (!tokens.isDigitAt(index, 1)) {
                     break;
                 }
 
-                log.debug("MetarParser: found RVR");
+                if (debug) {
+                    log.debug("MetarParser: found RVR");
+                }
+
+                if (trace != null) {
+                    trace.group("rvr", tokens, index);
+                }
 
                 // we have a runway visual range
                 RunwayVisualRange runwayVisualRange = new RunwayVisualRange();
 
                 // get our runway number
-                runwayVisualRange.setRunwayNumber(new Integer(((String) tokens
-                        .get(index)).substring(1, 3)).intValue());
-                log.debug("MetarParser: RVR runway number: "
-                        + new Integer(((String) tokens.get(index)).substring(1,
-                                3)));
+                runwayVisualRange.setRunwayNumber(tokens.parseInt(index, 1, 3));
+                if (debug) {
+                    log.debug("MetarParser: RVR runway number: "
+                            + runwayVisualRange.getRunwayNumber());
+                }
 
                 int pos = 3;
-                if (((String) tokens.get(index)).charAt(pos) != '/') {
-                    runwayVisualRange.setApproachDirection(((String) tokens
-                            .get(index)).charAt(pos));
-                    log.debug("MetarParser: RVR runway approach direction: "
-                            + ((String) tokens.get(index)).charAt(pos));
+                if (tokens.charAt(index, pos) != '/') {
+                    runwayVisualRange.setApproachDirection(tokens.charAt(index,
+                            pos));
+                    if (debug) {
+                        log.debug("MetarParser: RVR runway approach direction: "
+                                + tokens.charAt(index, pos));
+                    }
                     pos += 2; // increment past the '/'
                 } else {
                     pos++;
@@ -739,248 +1077,148 @@ public class MetarParser {
 
                 // determine if we have a modifier for above 6000ft or below
                 // 600ft
-                switch (((String) tokens.get(index)).charAt(pos)) {
+                switch (tokens.charAt(index, pos)) {
                 case 'P': // below 600ft
                 case 'M': // above 6000ft
-                    runwayVisualRange.setReportableModifier(((String) tokens
-                            .get(index)).charAt(pos));
-                    log.debug("MetarParser: RVR modifier: "
-                            + ((String) tokens.get(index)).charAt(pos));
+                    runwayVisualRange.setReportableModifier(tokens.charAt(
+                            index, pos));
+                    if (debug) {
+                        log.debug("MetarParser: RVR modifier: "
+                                + tokens.charAt(index, pos));
+                    }
                     pos++;
                 }
-                runwayVisualRange.setLowestReportable(new Integer(
-                        ((String) tokens.get(index)).substring(pos, pos + 4))
-                        .intValue());
-                log.debug("MetarParser: RVR lowest reportable: "
-                        + new Integer(((String) tokens.get(index)).substring(
-                                pos, pos + 4)));
+                runwayVisualRange.setLowestReportable(tokens.parseInt(index,
+                        pos, pos + 4));
+                if (debug) {
+                    log.debug("MetarParser: RVR lowest reportable: "
+                            + runwayVisualRange.getLowestReportable());
+                }
                 pos += 4;
                 // if we are using the format with highest reportable
-                if (((String) tokens.get(index)).charAt(pos) == 'V') {
+                if (tokens.length(index) > pos
+                        && tokens.charAt(index, pos) == 'V') {
                     pos++; // increment past V
-                    runwayVisualRange.setHighestReportable(new Integer(
-                            ((String) tokens.get(index))
-                                    .substring(pos, pos + 4)).intValue());
-                    log.debug("MetarParser: RVR highest reportable: "
-                            + new Integer(((String) tokens.get(index))
-                                    .substring(pos, pos + 4)));
+                    runwayVisualRange.setHighestReportable(tokens.parseInt(
+                            index, pos, pos + 4));
+                    if (debug) {
+                        log.debug("MetarParser: RVR highest reportable: "
+                                + runwayVisualRange.getHighestReportable());
+                    }
+                }
+
+                metar.addRunwayVisualRange(runwayVisualRange);
+                if (trace != null) {
+                    trace.value("runway", runwayVisualRange.getRunwayNumber())
+                            .value("lowest",
+                                    runwayVisualRange.getLowestReportable());
+                    if (runwayVisualRange.getHighestReportable() != 0) {
+                        trace.value("highest", runwayVisualRange
+                                .getHighestReportable());
+                    }
                 }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
+                } else {
+                    break;
                 }
-
-                metar.addRunwayVisualRange(runwayVisualRange);
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // weather groups
             // format: (+/-)ddpp
             //     (+/-) - intensity, light (-), moderate (default), heavy (+)
             //     dd - descriptor, qualifier/adjective for phenomena
             //     pp - phenomena (rain, hail, tornado, etc.)
-            // we know we have a weather group if the token starts with one of:
-            // _________________________________________________________________________________
-            // | Intensity | Descriptor | Precipitation | Obscuration | Other |
-            // +------------+---------------+------------------+---------------+---------------+
-            // | - Light | MI Shallow | DZ Drizzle | BR Mist | PO Well- |
-            // | Moderate | PR Partial | RA Rain | FG Fog | Developed |
-            // | + Heavy | BC Patches | SN Snow | FU Smoke | Dust/Sand |
-            // | | DR Low | SG Snow Grains | VA Volcanic | Whirls |
-            // | | Drifting | IC Ice Crystals | Ash | SQ Squalls |
-            // | | BL Blowing | PL Ice Pellets | DU Widespread | FC Funnel |
-            // | | SH Shower(s) | GR Hail | Dust | Cloud, |
-            // | | TS Thunder- | GS Small Hail | SA Sand | Tornado, |
-            // | | storm | and/or | HZ Haze | Waterspout |
-            // | | FZ Freezing | Snow Pellets | PY Spray | SS Sandstorm |
-            // | | | UP Unknown | | DS Duststorm |
-            // | | | Precipitation | | |
-            // +------------+---------------+------------------+---------------+---------------+
-            while (((String) tokens.get(index))
-                    .startsWith(MetarConstants.METAR_HEAVY)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_LIGHT)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SHALLOW)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_PARTIAL)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_PATCHES)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_LOW_DRIFTING)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_BLOWING)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SHOWERS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_THUNDERSTORMS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_FREEZING)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_DRIZZLE)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_RAIN)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SNOW)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SNOW_GRAINS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_ICE_CRYSTALS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_ICE_PELLETS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_HAIL)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SMALL_HAIL)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_UNKNOWN_PRECIPITATION)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_MIST)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_FOG)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SMOKE)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_VOLCANIC_ASH)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_WIDESPREAD_DUST)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SAND)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_HAZE)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SPRAY)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_DUST_SAND_WHIRLS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SQUALLS)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_FUNNEL_CLOUD)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SAND_STORM)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_DUST_STORM)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_NO_SIGNIFICANT_CHANGE)) {
-                log.debug("MetarParser: found weather groups");
+            // we know we have a weather group if the token starts with an
+            // intensity or one of the codes in the Present Weather table at
+            // the top of this file
+            while (isWeatherGroup(tokens, index)) {
+                if (debug) {
+                    log.debug("MetarParser: found weather groups");
+                }
 
                 int pos = 0;
 
-                // we have a weather condition
-                WeatherCondition weatherCondition = new WeatherCondition();
+                if (trace != null) {
+                    trace.group("weather", tokens, index);
+                }
 
-                if (((String) tokens.get(index))
-                        .startsWith(MetarConstants.METAR_HEAVY)
-                        || ((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_LIGHT)) {
-                    weatherCondition.setIntensity(String
-                            .valueOf(((String) tokens.get(index)).charAt(0)));
-                    log.debug("MetarParser: weather group: intensity: "
-                            + ((String) tokens.get(index)).charAt(0));
+                int intensity = WeatherCondition.MODERATE;
+                if (tokens.startsWith(index, MetarConstants.METAR_HEAVY)) {
+                    intensity = WeatherCondition.HEAVY;
                     pos++;
-                } else {
-                    log
-                            .debug("MetarParser: weather group: intensity: moderate");
+                } else if (tokens.startsWith(index, MetarConstants.METAR_LIGHT)) {
+                    intensity = WeatherCondition.LIGHT;
+                    pos++;
+                } else if (debug) {
+                    log.debug("MetarParser: weather group: intensity: moderate");
+                }
+                if (debug && pos > 0) {
+                    log.debug("MetarParser: weather group: intensity: "
+                            + tokens.charAt(index, 0));
                 }
 
                 // if we have a descriptor
-                if (((String) tokens.get(index)).substring(pos, pos + 2)
-                        .startsWith(MetarConstants.METAR_SHALLOW)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_PARTIAL)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_PATCHES)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_LOW_DRIFTING)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_BLOWING)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_SHOWERS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_THUNDERSTORMS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .startsWith(MetarConstants.METAR_FREEZING)) {
-                    weatherCondition.setDescriptor(((String) tokens.get(index))
-                            .substring(pos, pos + 2));
-                    log.debug("MetarParser: weather group: descriptor: "
-                            + ((String) tokens.get(index)).substring(pos,
-                                    pos + 2));
+                int descriptor = WeatherCodes.descriptor(tokens.text(),
+                        tokens.start(index) + pos, tokens.end(index));
+                if (descriptor != -1) {
+                    if (debug) {
+                        log.debug("MetarParser: weather group: descriptor: "
+                                + WeatherCodes.DESCRIPTORS[descriptor]);
+                    }
                     pos += 2;
-                } else {
-                    log
-                            .debug("MetarParser: weather group: descriptor: no descriptor");
+                } else if (debug) {
+                    log.debug("MetarParser: weather group: descriptor: no descriptor");
                 }
 
                 // if we have phenomena (we should always!)
-                if (((String) tokens.get(index)).substring(pos, pos + 2)
-                        .equals(MetarConstants.METAR_DRIZZLE)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_RAIN)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SNOW)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SNOW_GRAINS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_ICE_CRYSTALS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_ICE_PELLETS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_HAIL)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SMALL_HAIL)
-                        || ((String) tokens.get(index))
-                                .substring(pos, pos + 2)
-                                .equals(
-                                        MetarConstants.METAR_UNKNOWN_PRECIPITATION)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_MIST)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_FOG)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SMOKE)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_VOLCANIC_ASH)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_WIDESPREAD_DUST)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SAND)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_HAZE)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SPRAY)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_DUST_SAND_WHIRLS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SQUALLS)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_FUNNEL_CLOUD)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_SAND_STORM)
-                        || ((String) tokens.get(index)).substring(pos, pos + 2)
-                                .equals(MetarConstants.METAR_DUST_STORM)) {
-                    weatherCondition.setPhenomena(((String) tokens.get(index))
-                            .substring(pos, pos + 2));
-                    log.debug("MetarParser: weather group: phenomena: "
-                            + ((String) tokens.get(index)).substring(pos,
-                                    pos + 2));
+                int phenomena = WeatherCodes.phenomenon(tokens.text(),
+                        tokens.start(index) + pos, tokens.end(index));
+                if (phenomena != -1) {
+                    if (debug) {
+                        log.debug("MetarParser: weather group: phenomena: "
+                                + WeatherCodes.PHENOMENA[phenomena]);
+                    }
+                    // we have a weather condition
+                    WeatherCondition weatherCondition = WeatherCondition
+                            .valueOf(intensity, descriptor, phenomena);
                     metar.addWeatherCondition(weatherCondition);
-                    log.debug("MetarParser: "
-                            + weatherCondition.getNaturalLanguageString());
-                } else {
+                    if (trace != null) {
+                        if (intensity != WeatherCondition.MODERATE) {
+                            trace.value("intensity", tokens.charAt(index, 0));
+                        }
+                        if (descriptor != -1) {
+                            trace.value("descriptor",
+                                    WeatherCodes.DESCRIPTORS[descriptor]);
+                        }
+                        trace.value("phenomena",
+                                WeatherCodes.PHENOMENA[phenomena]);
+                    }
+                    if (debug) {
+                        log.debug("MetarParser: "
+                                + weatherCondition.getNaturalLanguageString());
+                    }
+                } else if (debug) {
                     log.debug("MetarParser: weather group: no phenomena");
                 }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
+                } else {
+                    break;
                 }
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // sky condition
             // format: NNNhhh or VVhhh or CLR/SKC
@@ -989,95 +1227,67 @@ public class MetarParser {
             //     VV - vertical visibility, indefinite ceiling
             //     SKC - clear skies (reported by manual station)
             //     CLR - clear skies (reported by automated station)
-            while (((String) tokens.get(index))
-                    .startsWith(MetarConstants.METAR_VERTICAL_VISIBILITY)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SKY_CLEAR)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_CLEAR)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_FEW)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_SCATTERED)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_BROKEN)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_OVERCAST)
-                    || ((String) tokens.get(index))
-                            .startsWith(MetarConstants.METAR_NO_SIGNIFICANT_CLOUDS)) {
-                log.debug("MetarParser: found sky conditions");
-
-                // we have a sky condition
-                SkyCondition skyCondition = new SkyCondition();
-
-                if (((String) tokens.get(index))
-                        .startsWith(MetarConstants.METAR_FEW)
-                        || ((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_SCATTERED)
-                        || ((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_BROKEN)
-                        || ((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_OVERCAST)) {
-                    skyCondition.setContraction(((String) tokens.get(index))
-                            .substring(0, 3));
+            int contraction;
+            while ((contraction = WeatherCodes.contraction(tokens.text(),
+                    tokens.start(index), tokens.end(index))) != -1) {
+                if (debug) {
+                    log.debug("MetarParser: found sky conditions");
                     log.debug("MetarParser: sky condition: contraction: "
-                            + ((String) tokens.get(index)).substring(0, 3));
-                    skyCondition.setHeight(new Integer(((String) tokens
-                            .get(index)).substring(3, 6)).intValue());
-                    log.debug("MetarParser: sky condition: height: "
-                            + ((String) tokens.get(index)).substring(3, 6));
-                    if (((String) tokens.get(index)).length() > 6) {
+                            + WeatherCodes.CONTRACTIONS[contraction]);
+                }
+
+                if (trace != null) {
+                    trace.group("sky", tokens, index);
+                }
+
+                int height = 0;
+                String modifier = null;
+                if (contraction == WeatherCodes.VERTICAL_VISIBILITY) {
+                    height = tokens.parseInt(index, 2, 5);
+                } else if (WeatherCodes.isCover(contraction)) {
+                    height = tokens.parseInt(index, 3, 6);
+                    if (tokens.length(index) > 6) {
                         // we have a modifier
-                        skyCondition.setModifier(((String) tokens.get(index))
-                                .substring(6, ((String) tokens.get(index))
-                                        .length()));
-                        log.debug("MetarParser: sky condition: modifier: "
-                                + ((String) tokens.get(index)).substring(6,
-                                        ((String) tokens.get(index)).length()));
+                        modifier = modifier(tokens, index, 6);
+                        if (debug) {
+                            log.debug("MetarParser: sky condition: modifier: "
+                                    + modifier);
+                        }
                     }
-                } else if (((String) tokens.get(index))
-                        .startsWith(MetarConstants.METAR_SKY_CLEAR)
-                        || ((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_CLEAR)) {
-                    skyCondition.setContraction(((String) tokens.get(index))
-                            .substring(0, 3));
-                    log.debug("MetarParser: sky condition: clear: "
-                            + ((String) tokens.get(index)).substring(0, 3));
-                } else if (((String) tokens.get(index))
-                        .startsWith(MetarConstants.METAR_VERTICAL_VISIBILITY)) {
-                    skyCondition.setContraction(((String) tokens.get(index))
-                            .substring(0, 2));
-                    log.debug("MetarParser: sky condition: contraction: "
-                            + ((String) tokens.get(index)).substring(0, 2));
-                    skyCondition.setHeight(new Integer(((String) tokens
-                            .get(index)).substring(2, 5)).intValue());
-                    log.debug("MetarParser: sky condition: height: "
-                            + ((String) tokens.get(index)).substring(2, 5));
-                } else if (((String) tokens.get(index))
-                        .startsWith(MetarConstants.METAR_NO_SIGNIFICANT_CLOUDS)) {
-                    skyCondition.setContraction(((String) tokens.get(index))
-                            .substring(0, 3));
-                    log
-                            .debug("MetarParser: sky condition: No Significant Clouds: "
-                                    + ((String) tokens.get(index)).substring(0,
-                                            3));
-                } else {
-                    log
-                            .debug("MetarParser: sky condition: couldn't determine which");
                 }
 
+                // we have a sky condition
+                SkyCondition skyCondition = SkyCondition.valueOf(contraction,
+                        height, modifier);
+                if (debug) {
+                    log.debug("MetarParser: sky condition: height: "
+                            + skyCondition.getHeight());
+                }
                 metar.addSkyCondition(skyCondition);
-                log.debug("MetarParser: "
-                        + skyCondition.getNaturalLanguageString());
+                if (trace != null) {
+                    trace.value("contraction",
+                            WeatherCodes.CONTRACTIONS[contraction]).value(
+                            "height", skyCondition.getHeight());
+                    if (modifier != null) {
+                        trace.value("modifier", modifier);
+                    }
+                }
+                if (debug) {
+                    log.debug("MetarParser: "
+                            + skyCondition.getNaturalLanguageString());
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
+                } else {
+                    break;
                 }
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // temperature / dew point
             // format: (M)T'T'/(M)T' T'
@@ -1088,75 +1298,56 @@ public class MetarParser {
             //       d d
             //
             // TF = ( 9 / 5 ) x TC + 32 (conversion from celsius to fahrenheit)
-            if (((String) tokens.get(index)).indexOf("/") != -1) {
-                log.debug("MetarParser: found temperature");
-                ArrayList temps = new ArrayList();
+            int slash = tokens.indexOf(index, '/', 0);
+            if (slash != -1) {
+                if (trace != null) {
+                    trace.group("temperature", tokens, index);
+                }
+                if (debug) {
+                    log.debug("MetarParser: found temperature");
+                }
 
-                try {
-                    utility.split(temps, "/\\//", ((String) tokens.get(index)));
-                } catch (MalformedPerl5PatternException e) {
-                    log.error("MetarParser: error spliting temperature on /: "
-                            + e);
-                    throw new MetarParseException(
-                            "error spliting temperature on /: " + e, e);
-                }
-
-                // we have a sub-zero temperature
-                Float temperature = null;
-                
-                // Temperature is missing from report
-                if( temps.size() == 0 || ((String)temps.get(0)).length() == 0){
-                    metar.setTemperature(null);
-                }
-                else if (((String) temps.get(0)).startsWith("M")) {
-                    temperature = new Float(((String) temps.get(0)).substring(
-                            1, 3));
-                    temperature = new Float(temperature.floatValue()
-                            - temperature.floatValue() * 2); // negate
-                    metar.setTemperature(temperature);
-                } else {
-                    temperature = new Float(((String) temps.get(0)));
-                    metar.setTemperature(temperature);
-                }
-
-                if(temperature != null)
-                  log.debug("MetarParser: temperature: " + temperature + " C, "
-                            + (temperature.floatValue() * 9 / 5 + 32) + " F");
-
-                // Investigate dewpoint
-                Float dewPoint = null;
-                
-                // DewPoint is missing from report
-                if(temps.size() < 2 || ((String)temps.get(1)).length() == 0){
-                    metar.setDewPoint(null);
-                }
-                else if (((String) temps.get(1)).startsWith("M")) {
-                    dewPoint = new Float(((String) temps.get(1))
-                            .substring(1, 3));
-                    dewPoint = new Float(dewPoint.floatValue()
-                            - dewPoint.floatValue() * 2); // negate
-                    metar.setDewPoint(dewPoint);
-                } else {
-                    dewPoint = new Float(((String) temps.get(1)));
-                    metar.setDewPoint(dewPoint);
+                // either side of the '/' may be missing from the report
+                float temperature = decodeTemperature(tokens, index, 0, slash);
+                metar.setTemperatureValue(temperature);
+
+                if (debug && !Float.isNaN(temperature)) {
+                    log.debug("MetarParser: temperature: " + temperature
+                            + " C, " + (temperature * 9 / 5 + 32) + " F");
                 }
 
-                if(dewPoint != null)
-                  log.debug("MetarParser: dew point: " + dewPoint + " C, "
-                            + (dewPoint.floatValue() * 9 / 5 + 32) + " F");
+                float dewPoint = decodeTemperature(tokens, index, slash + 1,
+                        tokens.length(index));
+                metar.setDewPointValue(dewPoint);
+                if (trace != null) {
+                    if (!Float.isNaN(temperature)) {
+                        trace.value("temperature", temperature);
+                    }
+                    if (!Float.isNaN(dewPoint)) {
+                        trace.value("dew point", dewPoint);
+                    }
+                }
+
+                if (debug && !Float.isNaN(dewPoint)) {
+                    log.debug("MetarParser: dew point: " + dewPoint + " C, "
+                            + (dewPoint * 9 / 5 + 32) + " F");
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
             } else {
-                log.debug("MetarParser: temperature/dew point not found");
-                metar.setTemperature(null);
-                metar.setDewPoint(null);
+                if (debug) {
+                    log.debug("MetarParser: temperature/dew point not found");
+                }
+                metar.setTemperatureValue(Float.NaN);
+                metar.setDewPointValue(Float.NaN);
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // altimeter
             // get pressure, which is reported in hundreths
@@ -1166,58 +1357,78 @@ public class MetarParser {
             //     A - altimeter in inches of mercury
             //     P P P P - tens, units, tenths and hundreths inches mercury
             //      h h h h (no decimal point coded)
-            if (((String) tokens.get(index)).startsWith("A")) {
-                Float pressure = new Float(((String) tokens.get(index))
-                        .substring(1, 5));
+            if (tokens.startsWith(index, "A")) {
+                if (trace != null) {
+                    trace.group("pressure", tokens, index);
+                }
+
                 // correct for no decimal point
-                pressure = new Float(pressure.floatValue() / 100);
-                metar.setPressure(pressure);
+                float pressure = tokens.parseInt(index, 1, 5);
+                metar.setPressureValue(pressure / 100);
+                if (trace != null) {
+                    trace.value("inHg", pressure / 100);
+                }
 
-                log.debug("MetarParser: pressure: " + metar.getPressure()
-                        + " Hg");
+                if (debug) {
+                    log.debug("MetarParser: pressure: " + metar.getPressure()
+                            + " Hg");
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-            } 
-	    // Alternative pressure (HPa/mB) (HectoPascal/Millbar)
-	    // QPPPP - QNH
+            }
+            // Alternative pressure (HPa/mB) (HectoPascal/Millbar)
+            // QPPPP - QNH
             // Format: "QPPPP" -> Q - indicator for QNH, PPPP - Pressure value.
             // Measured in hecto Pascal (HPa), 1 Hpa = 1 mB(millibar) 
-	    else if(((String) tokens.get(index)).startsWith("Q")){
-                Float pressure = new Float(((String) tokens.get(index))
-			       .substring(1, 5));
+            else if (tokens.startsWith(index, "Q")) {
+                if (trace != null) {
+                    trace.group("pressure", tokens, index);
+                }
+                float pressure = tokens.parseInt(index, 1, 5);
+                if (trace != null) {
+                    trace.value("hPa", pressure);
+                }
 
-                log.debug("MetarParser: pressure: " + pressure + " hPa"); 
+                if (debug) {
+                    log.debug("MetarParser: pressure: " + pressure + " hPa");
+                }
 
                 // Convert to inHg
-                pressure = new Float(pressure.floatValue() * .02953F);
-                metar.setPressure(pressure);
+                metar.setPressureValue(pressure * .02953F);
 
-                log.debug("MetarParser: pressure: " + metar.getPressure()
-                        + " Hg");
+                if (debug) {
+                    log.debug("MetarParser: pressure: " + metar.getPressure()
+                            + " Hg");
+                }
 
                 // on to the next token
                 if (index < numTokens - 1) {
                     index++;
                 }
-              
-            }
-	    else {
+            } else if (debug) {
                 log.debug("MetarParser: pressure not found");
             }
 
-            log.debug("MetarParser: processing ((String)tokens.get(" + index
-                    + "))=" + ((String) tokens.get(index)));
+            if (debug) {
+                debugToken(tokens, index);
+            }
 
             // remarks
-            if (!((String) tokens.get(index))
-                    .equals(MetarConstants.METAR_REMARKS)) {
+            if (!tokens.equals(index, MetarConstants.METAR_REMARKS)) {
                 // we have no remarks
-                log.debug("MetarParser: we have no remarks");
+                if (debug) {
+                    log.debug("MetarParser: we have no remarks");
+                }
             } else {
-                log.debug("MetarParser: we have remarks");
+                if (debug) {
+                    log.debug("MetarParser: we have remarks");
+                }
+                if (trace != null) {
+                    trace.group("remarks", tokens, index);
+                }
                 index++;
             }
             
@@ -1237,25 +1448,33 @@ public class MetarParser {
             // TODO: Determine method for safely parsing the BECMG section. It
             //       seems to be too freeform to do it?
             // ---------------------------------------------------------------
-            if(index < numTokens &&
-              MetarConstants.METAR_BECOMING.equalsIgnoreCase((String) tokens.get(index))){
-              StringBuffer sb = new StringBuffer();
-                
-              log.debug("MetarParser: processing \"BECMG\" section");
-              // BECMG seems to be consistently terminated by a remark
-              while(index < numTokens &&
-                    !MetarConstants.METAR_REMARKS
-                      .equalsIgnoreCase((String)tokens.get(index))) {
-                
-                if(sb.length() > 0) sb.append(" ");
-                  
-                log.debug("MetarParser: processing ((String)tokens.get("
-                          + index + "))=" + ((String) tokens.get(index)));
-                sb.append((String) tokens.get(index));
-                ++index;
-              }
-              
-              metar.setBecoming(sb.toString());
+            if (index < numTokens
+                    && tokens.equalsIgnoreCase(index,
+                            MetarConstants.METAR_BECOMING)) {
+                StringBuffer sb = new StringBuffer();
+
+                if (trace != null) {
+                    trace.group("becoming", tokens, index);
+                }
+                if (debug) {
+                    log.debug("MetarParser: processing \"BECMG\" section");
+                }
+                // BECMG seems to be consistently terminated by a remark
+                while (index < numTokens
+                        && !tokens.equalsIgnoreCase(index,
+                                MetarConstants.METAR_REMARKS)) {
+
+                    if (sb.length() > 0) sb.append(" ");
+
+                    if (debug) {
+                        debugToken(tokens, index);
+                    }
+                    sb.append(tokens.text(), tokens.start(index), tokens
+                            .end(index));
+                    ++index;
+                }
+
+                metar.setBecoming(sb.toString());
             }
 
             // remarks
@@ -1307,115 +1526,104 @@ public class MetarParser {
             //
             // see if we have hourly temperature
             while (index < numTokens) {
-                log.debug("MetarParser: processing ((String)tokens.get("
-                        + index + "))=" + ((String) tokens.get(index)));
+                if (debug) {
+                    debugToken(tokens, index);
+                }
+
+                int phenomena;
 
                 // if we have temperature
-                temp = (String) tokens.get(index);
-                //if (((String)tokens.get(index)).matches("T\\d{8}")) {
-                try {
-                    if (matcher.matches(temp, new Perl5Compiler()
-                            .compile("T\\d{8}"))) {
-                        log.debug("MetarParser: found detailed temp: "
-                                + ((String) tokens.get(index)));
-                        // we have a sub-zero temperature
-                        Float temperaturePrecise = new Float(((String) tokens
-                                .get(index)).substring(2, 5));
-                        if (((String) tokens.get(index)).charAt(1) == '1') {
-                            temperaturePrecise = new Float(temperaturePrecise
-                                    .floatValue()
-                                    - temperaturePrecise.floatValue() * 2); // negate
-                        }
-                        // it is in tenths
-                        temperaturePrecise = new Float(temperaturePrecise
-                                .floatValue() / 10);
-                        metar.setTemperaturePrecise(temperaturePrecise);
-
-                        // we have a sub-zero dew point
-                        Float dewPointPrecise = new Float(((String) tokens
-                                .get(index)).substring(6, 9));
-                        if (((String) tokens.get(index)).charAt(5) == '1') {
-                            dewPointPrecise = new Float(dewPointPrecise
-                                    .floatValue()
-                                    - dewPointPrecise.floatValue() * 2); // negate
-                        }
-                        // it is in tenths
-                        dewPointPrecise = new Float(dewPointPrecise
-                                .floatValue() / 10);
-                        metar.setDewPointPrecise(dewPointPrecise);
+                if (MetarMatchers.isPreciseTemperature(tokens.text(), tokens
+                        .start(index), tokens.end(index))) {
+                    if (trace != null) {
+                        trace.group("precise temperature", tokens, index);
+                    }
+
+                    // temperature and dew point are in tenths, with a
+                    // leading 1 for sub-zero values
+                    int tenths = tokens.parseInt(index, 2, 5);
+                    if (tokens.charAt(index, 1) == '1') {
+                        tenths = -tenths;
+                    }
+                    float temperaturePrecise = tenths / 10f;
+                    metar.setTemperaturePreciseValue(temperaturePrecise);
+
+                    tenths = tokens.parseInt(index, 6, 9);
+                    if (tokens.charAt(index, 5) == '1') {
+                        tenths = -tenths;
+                    }
+                    float dewPointPrecise = tenths / 10f;
+                    metar.setDewPointPreciseValue(dewPointPrecise);
+                    if (trace != null) {
+                        trace.value("temperature", temperaturePrecise).value(
+                                "dew point", dewPointPrecise);
+                    }
 
-                        log
-                                .debug("MetarParser: temperature precise: "
+                    if (debug) {
+                        log.debug("MetarParser: temperature precise: "
                                         + temperaturePrecise
                                         + " C, "
-                                        + (temperaturePrecise.floatValue() * 9 / 5 + 32)
+                                        + (temperaturePrecise * 9 / 5 + 32)
                                         + " F");
                         log.debug("MetarParser: dew point precise: "
                                 + dewPointPrecise + " C, "
-                                + (dewPointPrecise.floatValue() * 9 / 5 + 32)
+                                + (dewPointPrecise * 9 / 5 + 32)
                                 + " F");
-                        // if we have an obscuration
-                    } else if (((String) tokens.get(index))
-                            .equals(MetarConstants.METAR_MIST)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_FOG)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_SMOKE)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_VOLCANIC_ASH)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_WIDESPREAD_DUST)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_SAND)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_HAZE)
-                            || ((String) tokens.get(index))
-                                    .equals(MetarConstants.METAR_SPRAY)) {
-                        // we have an obscuration
-                        Obscuration obscuration = new Obscuration();
-                        obscuration.setPhenomena(((String) tokens.get(index)));
+                    }
+                    // if we have an obscuration
+                } else if (tokens.length(index) == 2
+                        && (phenomena = WeatherCodes.phenomenon(tokens.text(),
+                                tokens.start(index), tokens.end(index))) != -1
+                        && WeatherCodes.isObscuration(phenomena)) {
+                    if (debug) {
                         log.debug("MetarParser: weather group: phenomena: "
-                                + ((String) tokens.get(index)));
+                                + WeatherCodes.PHENOMENA[phenomena]);
+                    }
+
+                    // we have a quantity and height too
+                    int cover = index + 1 < numTokens ? WeatherCodes
+                            .contraction(tokens.text(), tokens.start(index + 1),
+                                    tokens.end(index + 1)) : -1;
+                    if (WeatherCodes.isCover(cover)) {
+                        if (trace != null) {
+                            trace.group("obscuration", tokens, index);
+                        }
 
                         // move to quantity and height token
                         index++;
 
-                        // we have a quantity and height too
-                        if (((String) tokens.get(index))
-                                .startsWith(MetarConstants.METAR_FEW)
-                                || ((String) tokens.get(index))
-                                        .startsWith(MetarConstants.METAR_SCATTERED)
-                                || ((String) tokens.get(index))
-                                        .startsWith(MetarConstants.METAR_BROKEN)
-                                || ((String) tokens.get(index))
-                                        .startsWith(MetarConstants.METAR_OVERCAST)) {
-                            obscuration.setContraction(((String) tokens
-                                    .get(index)).substring(0, 3));
-                            obscuration.setHeight(new Integer(((String) tokens
-                                    .get(index)).substring(3, 6)).intValue());
-
-                            metar.addObscuration(obscuration);
+                        // we have an obscuration
+                        int height = tokens.parseInt(index, 3, 6);
+                        Obscuration obscuration = Obscuration.valueOf(
+                                phenomena, cover, height);
+                        metar.addObscuration(obscuration);
+                        if (trace != null) {
+                            trace.value("phenomena",
+                                    WeatherCodes.PHENOMENA[phenomena]).value(
+                                    "cover", WeatherCodes.CONTRACTIONS[cover])
+                                    .value("height", height * 100);
+                        }
+                        if (debug) {
                             log.debug("MetarParser: "
                                     + obscuration.getNaturalLanguageString());
                         }
-
-                        index++;
-                        // there has been no significant change in weather
-                    } else if (((String) tokens.get(index))
-                            .equals(MetarConstants.METAR_NO_SIGNIFICANT_CHANGE)) {
-                        // have no significant change
-                        metar.setIsNoSignificantChange(true);
                     }
-                } catch (MalformedPatternException e) {
-                    log
-                            .error("MetarParser: error matching additional remarks: "
-                                    + e);
+                    // there has been no significant change in weather
+                } else if (tokens.equals(index,
+                        MetarConstants.METAR_NO_SIGNIFICANT_CHANGE)) {
+                    // have no significant change
+                    metar.setIsNoSignificantChange(true);
+                    if (trace != null) {
+                        trace.group("nosig", tokens, index);
+                    }
                 }
 
                 index++;
             }
 
-            log.debug("MetarParser: done processing metar data");
+            if (debug) {
+                log.debug("MetarParser: done processing metar data");
+            }
 
             // 6-hourly maximum temperature
             // 6-hourly minimum temperature
@@ -1425,10 +1633,72 @@ public class MetarParser {
             return metar;
         } catch (Exception exc) {
             String err = "Uncaught Exception during parse. Report:  "
-                    + metarString + " Cause: " + exc.toString();
+                    + text.subSequence(start, end) + " Cause: "
+                    + exc.toString();
             log.error(err);
+            if (trace != null) {
+                trace.fail(err);
+            }
             throw new MetarParseException(err, exc);
+        } finally {
+            tokens.clear();
+        }
+    }
+
+    /**
+     * @return true if the token starts a present weather group, see the
+     *         Present Weather table at the top of this file. NOSIG counts so
+     *         that a trend directly after the weather groups does not end up
+     *         as a sky condition.
+     */
+    private static boolean isWeatherGroup(MetarTokenizer tokens, int index) {
+        char first = tokens.charAt(index, 0);
+        if (first == '+' || first == '-') {
+            return true;
         }
+        return WeatherCodes.lookup(tokens.text(), tokens.start(index),
+                tokens.end(index)) != 0
+                || tokens.startsWith(index,
+                        MetarConstants.METAR_NO_SIGNIFICANT_CHANGE);
+    }
+
+    /**
+     * @return the cloud type following a sky cover group, e.g. 'CB' in
+     *         'BKN030CB'
+     */
+    private static String modifier(MetarTokenizer tokens, int index, int from) {
+        int modifier = WeatherCodes.modifier(tokens.text(), tokens.start(index)
+                + from, tokens.end(index));
+        if (modifier != -1) {
+            return WeatherCodes.MODIFIERS[modifier];
+        }
+        return tokens.substring(index, from, tokens.length(index));
+    }
+
+    /**
+     * Decode one side of a temperature / dew point group, e.g. 'M07'.
+     * 
+     * @return the temperature in celsius, or NaN if token[from, to) is empty
+     */
+    private static float decodeTemperature(MetarTokenizer tokens, int index,
+            int from, int to) {
+        if (from == to) {
+            return Float.NaN;
+        }
+        if (tokens.charAt(index, from) == 'M') {
+            // we have a sub-zero temperature
+            return -tokens.parseInt(index, from + 1, from + 3);
+        }
+        return tokens.parseFloat(index, from, to);
+    }
+
+    /**
+     * Log the token about to be decoded; callers check that debug output is
+     * enabled first.
+     */
+    private static void debugToken(MetarTokenizer tokens, int index) {
+        log.debug("MetarParser: processing token " + index + "="
+                + (index < tokens.count() ? tokens.toString(index) : ""));
     }
 
     protected static String getTokenString(ArrayList tokens, int index) {
@@ -1436,4 +1706,3 @@ public class MetarParser {
                 + ((String) tokens.get(index));
     }
 }
-
@@ -0,0 +1,209 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+import java.time.Instant;
+
+/**
+ * Turns the times found in METAR data into UTC instants without going through
+ * Calendar or SimpleDateFormat.
+ *
+ * A report only carries the day of month, hour and minute (DDHHMMZ), so the
+ * year and month have to come from a reference instant, e.g. the record date
+ * line or the time an archive was written. The report time is the latest
+ * instant with the report's day, hour and minute that is no more than a day
+ * after the reference; the extra day allows for clocks that lag behind the
+ * station. Months without the report's day, such as the 31st in April, are
+ * skipped. The result only depends on the report and the reference, so
+ * re-parsing an archive gives the same times no matter when it is done.
+ *
+ * Report times are worked out with plain arithmetic on epoch days. All
+ * methods are static, keep no state and are safe to call from any thread.
+ *
+ * @see MetarParser#parseReport(String, Instant)
+ */
+public final class MetarTime {
+    static final long MINUTE = 60 * 1000L;
+
+    static final long HOUR = 60 * MINUTE;
+
+    static final long DAY = 24 * HOUR;
+
+    /** how far a report may lie ahead of its reference instant */
+    static final long TOLERANCE = DAY;
+
+    private MetarTime() {
+    }
+
+    /**
+     * @param day
+     *            day of month of the report, 1 - 31
+     * @param hour
+     *            hour of the report, 0 - 24 (24:00 is midnight at the end of
+     *            the day)
+     * @param minute
+     *            minute of the report, 0 - 59
+     * @param reference
+     *            the instant the report was received or filed
+     * @return the report time
+     * @throws IllegalArgumentException
+     *             the day, hour or minute is out of range
+     */
+    public static Instant reportTime(int day, int hour, int minute,
+            Instant reference) {
+        return Instant.ofEpochMilli(reportTimeMillis(day, hour, minute,
+                reference.toEpochMilli()));
+    }
+
+    /**
+     * Same as reportTime(int, int, int, Instant) for epoch milliseconds.
+     */
+    public static long reportTimeMillis(int day, int hour, int minute,
+            long reference) {
+        if (day < 1 || day > 31 || hour < 0 || hour > 24 || minute < 0
+                || minute > 59 || (hour == 24 && minute != 0)) {
+            throw new IllegalArgumentException("no such report time: " + day
+                    + " " + hour + ":" + minute);
+        }
+        long limit = reference + TOLERANCE;
+        long civil = civilFromDays(Math.floorDiv(limit, DAY));
+        int year = (int) (civil >> 4);
+        int month = (int) (civil & 0xf);
+
+        // at most two months need to be skipped, e.g. the 31st seen from
+        // early March
+        for (int i = 0; i < 4; i++) {
+            if (day <= daysInMonth(year, month)) {
+                long time = daysFromCivil(year, month, day) * DAY + hour
+                        * HOUR + minute * MINUTE;
+                if (time <= limit) {
+                    return time;
+                }
+            }
+            if (--month == 0) {
+                month = 12;
+                year--;
+            }
+        }
+        // not reached, some month of any four has 31 days
+        throw new IllegalStateException("no month with day " + day);
+    }
+
+    /**
+     * Decode a record date line such as '2003/10/29 02:45' (UTC) held in
+     * text[start, end). Leading and trailing whitespace and anything after
+     * the minutes are ignored, as SimpleDateFormat did.
+     *
+     * @return the record date in epoch milliseconds
+     * @throws IllegalArgumentException
+     *             the text is not a valid record date
+     */
+    static long parseRecordDate(CharSequence text, int start, int end) {
+        int[] fields = new int[5];
+        int pos = start;
+        while (pos < end && MetarTokenizer.isWhitespace(text.charAt(pos))) {
+            pos++;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                char separator = i < 3 ? '/' : i == 3 ? ' ' : ':';
+                if (pos == end || text.charAt(pos) != separator) {
+                    throw new IllegalArgumentException("unparseable date: "
+                            + text.subSequence(start, end));
+                }
+                pos++;
+                while (separator == ' ' && pos < end
+                        && text.charAt(pos) == ' ') {
+                    pos++;
+                }
+            }
+            int digits = pos;
+            int value = 0;
+            while (pos < end && MetarTokenizer.isDigit(text.charAt(pos))
+                    && pos - digits < 4) {
+                value = value * 10 + (text.charAt(pos++) - '0');
+            }
+            if (pos == digits) {
+                throw new IllegalArgumentException("unparseable date: "
+                        + text.subSequence(start, end));
+            }
+            fields[i] = value;
+        }
+        int year = fields[0];
+        int month = fields[1];
+        int day = fields[2];
+        if (month < 1 || month > 12 || day < 1
+                || day > daysInMonth(year, month) || fields[3] > 23
+                || fields[4] > 59) {
+            throw new IllegalArgumentException("no such date: "
+                    + text.subSequence(start, end));
+        }
+        return daysFromCivil(year, month, day) * DAY + fields[3] * HOUR
+                + fields[4] * MINUTE;
+    }
+
+    static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29
+                    : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    /**
+     * @return days since 1970-01-01 of the given proleptic Gregorian date
+     */
+    static long daysFromCivil(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5
+                + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100
+                + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * @return the year shifted left by four bits, or'ed with the month (1 -
+     *         12), of the given day since 1970-01-01
+     */
+    static long civilFromDays(long days) {
+        days += 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524
+                - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra
+                - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year << 4 | month;
+    }
+}
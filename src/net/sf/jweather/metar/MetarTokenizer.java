@@ -0,0 +1,291 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * Splits a METAR report into whitespace separated groups without copying it.
+ *
+ * Rather than building a list of substrings, the tokenizer records the start
+ * and end offset of every group in two int arrays and answers questions about
+ * a group (its characters, prefixes, numeric values) straight from the
+ * underlying CharSequence. The arrays are kept between reports, so once they
+ * have grown to fit the longest report a thread sees, tokenizing allocates
+ * nothing at all.
+ *
+ * Offsets passed to the per-token methods are relative to the start of the
+ * token. Reading past the end of a token or asking for a token that does not
+ * exist throws IndexOutOfBoundsException, just as String.substring() and
+ * List.get() did before.
+ *
+ * A tokenizer is not thread-safe; MetarParser keeps one per thread in its
+ * MetarParseContext.
+ *
+ * @see MetarParser
+ */
+final class MetarTokenizer {
+    private CharSequence text;
+
+    private int[] starts = new int[32];
+
+    private int[] ends = new int[32];
+
+    private int count;
+
+    /**
+     * Tokenize text[start, end) on whitespace, replacing any previous
+     * tokens.
+     */
+    void reset(CharSequence text, int start, int end) {
+        this.text = text;
+        count = 0;
+
+        int pos = start;
+        while (pos < end) {
+            while (pos < end && isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == end) {
+                break;
+            }
+            int tokenStart = pos;
+            while (pos < end && !isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (count == starts.length) {
+                grow();
+            }
+            starts[count] = tokenStart;
+            ends[count] = pos;
+            count++;
+        }
+    }
+
+    /**
+     * Drop the reference to the last tokenized text so it can be collected.
+     */
+    void clear() {
+        text = null;
+        count = 0;
+    }
+
+    private void grow() {
+        int[] newStarts = new int[starts.length * 2];
+        int[] newEnds = new int[ends.length * 2];
+        System.arraycopy(starts, 0, newStarts, 0, count);
+        System.arraycopy(ends, 0, newEnds, 0, count);
+        starts = newStarts;
+        ends = newEnds;
+    }
+
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f'
+                || c == 0x0B;
+    }
+
+    /**
+     * @return the text the current tokens point into
+     */
+    CharSequence text() {
+        return text;
+    }
+
+    /**
+     * @return the number of tokens found by the last reset()
+     */
+    int count() {
+        return count;
+    }
+
+    /**
+     * @return the offset in text() at which the token starts
+     */
+    int start(int token) {
+        check(token);
+        return starts[token];
+    }
+
+    /**
+     * @return the offset in text() just past the end of the token
+     */
+    int end(int token) {
+        check(token);
+        return ends[token];
+    }
+
+    int length(int token) {
+        check(token);
+        return ends[token] - starts[token];
+    }
+
+    private void check(int token) {
+        if (token < 0 || token >= count) {
+            throw new IndexOutOfBoundsException("token " + token + " of "
+                    + count);
+        }
+    }
+
+    private void checkRange(int token, int from, int to) {
+        if (from < 0 || from > to || to > length(token)) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to
+                    + ") of token " + toString(token));
+        }
+    }
+
+    char charAt(int token, int offset) {
+        checkRange(token, offset, offset + 1);
+        return text.charAt(starts[token] + offset);
+    }
+
+    boolean isDigitAt(int token, int offset) {
+        return offset >= 0 && offset < length(token)
+                && isDigit(text.charAt(starts[token] + offset));
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    boolean equals(int token, String value) {
+        return length(token) == value.length() && startsWith(token, 0, value);
+    }
+
+    boolean startsWith(int token, String prefix) {
+        return startsWith(token, 0, prefix);
+    }
+
+    /**
+     * @return true if prefix occurs in the token at the given offset
+     */
+    boolean startsWith(int token, int offset, String prefix) {
+        int length = prefix.length();
+        if (offset < 0 || offset + length > length(token)) {
+            return false;
+        }
+        int pos = starts[token] + offset;
+        for (int i = 0; i < length; i++) {
+            if (text.charAt(pos + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean endsWith(int token, String suffix) {
+        return startsWith(token, length(token) - suffix.length(), suffix);
+    }
+
+    boolean equalsIgnoreCase(int token, String value) {
+        int length = value.length();
+        if (length(token) != length) {
+            return false;
+        }
+        int pos = starts[token];
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(pos + i);
+            char v = value.charAt(i);
+            if (c != v
+                    && Character.toUpperCase(c) != Character.toUpperCase(v)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the offset of the first occurrence of c in the token at or
+     *         after from, or -1
+     */
+    int indexOf(int token, char c, int from) {
+        int end = end(token);
+        for (int pos = starts[token] + Math.max(from, 0); pos < end; pos++) {
+            if (text.charAt(pos) == c) {
+                return pos - starts[token];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decode the unsigned decimal number held in token[from, to).
+     *
+     * @throws NumberFormatException
+     *             the range is empty or holds anything but digits
+     */
+    int parseInt(int token, int from, int to) {
+        checkRange(token, from, to);
+        if (from == to) {
+            throw new NumberFormatException("empty number in token "
+                    + toString(token));
+        }
+        int value = 0;
+        int pos = starts[token] + from;
+        int end = starts[token] + to;
+        for (; pos < end; pos++) {
+            char c = text.charAt(pos);
+            if (!isDigit(c)) {
+                throw new NumberFormatException("not a number: "
+                        + substring(token, from, to));
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * Decode the unsigned decimal number, with an optional fractional part,
+     * held in token[from, to).
+     *
+     * @throws NumberFormatException
+     *             the range does not hold a number
+     */
+    float parseFloat(int token, int from, int to) {
+        int dot = indexOf(token, '.', from);
+        if (dot == -1 || dot >= to) {
+            return parseInt(token, from, to);
+        }
+        if (dot == from && dot + 1 == to) {
+            throw new NumberFormatException("not a number: .");
+        }
+        float value = dot == from ? 0 : parseInt(token, from, dot);
+        if (dot + 1 < to) {
+            float fraction = parseInt(token, dot + 1, to);
+            for (int i = dot + 1; i < to; i++) {
+                fraction /= 10;
+            }
+            value += fraction;
+        }
+        return value;
+    }
+
+    /**
+     * @return a new String holding the token; only used for values that are
+     *         kept in the resulting Metar
+     */
+    String toString(int token) {
+        return substring(token, 0, length(token));
+    }
+
+    String substring(int token, int from, int to) {
+        checkRange(token, from, to);
+        return text.subSequence(starts[token] + from, starts[token] + to)
+                .toString();
+    }
+}
@@ -0,0 +1,260 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * A structured record of how MetarParser decoded the last report parsed on a
+ * thread, for tracking down reports that decode badly.
+ *
+ * <p>
+ * Tracing is off by default and is switched on per thread. While it is on,
+ * every group the parser recognizes is recorded as an entry holding the
+ * group kind (e.g. 'wind'), the token it was read from and the decoded
+ * values. Tokens that do not show up in any entry were skipped. If the
+ * report fails to parse, the trace holds the entries up to the failure and
+ * the error message.
+ * </p>
+ *
+ * <p>
+ * <code>
+ * MetarTrace.setEnabled(true);<br>
+ * try {<br>
+ * &nbsp;&nbsp;MetarParser.parseReport(report);<br>
+ * } finally {<br>
+ * &nbsp;&nbsp;System.err.println(MetarTrace.get());<br>
+ * }<br>
+ * </code>
+ * </p>
+ *
+ * The trace is written into buffers that are reused for every report, so
+ * once they have grown to fit a report tracing allocates nothing while
+ * parsing; Strings are only built when the trace is read. When tracing is
+ * off the parser pays a single null check per group.
+ *
+ * A trace belongs to the thread that parsed the report and must not be
+ * shared with other threads.
+ *
+ * @see MetarParser
+ */
+public final class MetarTrace {
+    /** the report followed by the values of every entry */
+    private final StringBuilder text = new StringBuilder(256);
+
+    private int reportLength;
+
+    /** offset of the report in the text the tokens point into */
+    private int reportStart;
+
+    private String[] groups = new String[16];
+
+    // token and values of each entry as offsets into text
+    private int[] tokenStarts = new int[16];
+
+    private int[] tokenEnds = new int[16];
+
+    private int[] valueStarts = new int[16];
+
+    private int[] valueEnds = new int[16];
+
+    private int count;
+
+    private String error;
+
+    MetarTrace() {
+    }
+
+    /**
+     * Switch tracing on or off for the calling thread.
+     */
+    public static void setEnabled(boolean enabled) {
+        MetarParseContext context = MetarParseContext.get();
+        if (!enabled) {
+            context.trace = null;
+        } else if (context.trace == null) {
+            context.trace = new MetarTrace();
+        }
+    }
+
+    /**
+     * @return the trace of the last report parsed by the calling thread, or
+     *         null if tracing is off
+     */
+    public static MetarTrace get() {
+        return MetarParseContext.get().trace;
+    }
+
+    /**
+     * Start tracing the report held in report[start, end).
+     */
+    void reset(CharSequence report, int start, int end) {
+        text.setLength(0);
+        text.append(report, start, end);
+        reportLength = end - start;
+        reportStart = start;
+        count = 0;
+        error = null;
+    }
+
+    /**
+     * Start a new entry for a group read from the given token of the report
+     * passed to reset().
+     */
+    MetarTrace group(String group, MetarTokenizer tokens, int token) {
+        if (count == groups.length) {
+            grow();
+        }
+        groups[count] = group;
+        tokenStarts[count] = tokens.start(token) - reportStart;
+        tokenEnds[count] = tokens.end(token) - reportStart;
+        valueStarts[count] = text.length();
+        valueEnds[count] = text.length();
+        count++;
+        return this;
+    }
+
+    private void grow() {
+        int length = groups.length * 2;
+        String[] newGroups = new String[length];
+        System.arraycopy(groups, 0, newGroups, 0, count);
+        groups = newGroups;
+        tokenStarts = copyOf(tokenStarts, length);
+        tokenEnds = copyOf(tokenEnds, length);
+        valueStarts = copyOf(valueStarts, length);
+        valueEnds = copyOf(valueEnds, length);
+    }
+
+    private int[] copyOf(int[] values, int length) {
+        int[] copy = new int[length];
+        System.arraycopy(values, 0, copy, 0, count);
+        return copy;
+    }
+
+    private StringBuilder startValue(String name) {
+        if (valueEnds[count - 1] > valueStarts[count - 1]) {
+            text.append(' ');
+        }
+        return text.append(name).append('=');
+    }
+
+    /**
+     * Add a decoded value to the current entry.
+     */
+    MetarTrace value(String name, int value) {
+        startValue(name).append(value);
+        valueEnds[count - 1] = text.length();
+        return this;
+    }
+
+    MetarTrace value(String name, float value) {
+        startValue(name).append(value);
+        valueEnds[count - 1] = text.length();
+        return this;
+    }
+
+    MetarTrace value(String name, char value) {
+        startValue(name).append(value);
+        valueEnds[count - 1] = text.length();
+        return this;
+    }
+
+    MetarTrace value(String name, String value) {
+        startValue(name).append(value);
+        valueEnds[count - 1] = text.length();
+        return this;
+    }
+
+    void fail(String error) {
+        this.error = error;
+    }
+
+    /**
+     * @return the report that was traced
+     */
+    public String getReport() {
+        return text.substring(0, reportLength);
+    }
+
+    /**
+     * @return the number of groups recognized in the report
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * @return the kind of group entry i was decoded as, e.g. 'wind', 'sky'
+     */
+    public String getGroup(int i) {
+        check(i);
+        return groups[i];
+    }
+
+    /**
+     * @return the token entry i was decoded from, e.g. '18012G25KT'
+     */
+    public String getToken(int i) {
+        check(i);
+        return text.substring(tokenStarts[i], tokenEnds[i]);
+    }
+
+    /**
+     * @return the decoded values of entry i, e.g.
+     *         'direction=180 speed=12 gusts=25 unit=KT'
+     */
+    public String getValues(int i) {
+        check(i);
+        return text.substring(valueStarts[i], valueEnds[i]);
+    }
+
+    /**
+     * @return the reason the report failed to parse, or null if it did not
+     *         fail
+     */
+    public String getError() {
+        return error;
+    }
+
+    private void check(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("entry " + i + " of " + count);
+        }
+    }
+
+    /**
+     * @return the report and one line per entry, followed by the error if
+     *         parsing failed
+     */
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(text, 0, reportLength);
+        for (int i = 0; i < count; i++) {
+            sb.append('\n').append(groups[i]).append(' ');
+            sb.append(text, tokenStarts[i], tokenEnds[i]);
+            if (valueEnds[i] > valueStarts[i]) {
+                sb.append(": ").append(text, valueStarts[i], valueEnds[i]);
+            }
+        }
+        if (error != null) {
+            sb.append("\nerror: ").append(error);
+        }
+        return sb.toString();
+    }
+}
@@ -25,7 +25,7 @@ package net.sf.jweather.metar;
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.3 $
  */
-public class Obscuration {
+public class Obscuration implements Cloneable {
 	private String phenomena = null;
   protected String decodedPhenomena = null;
 	private String contraction = null;
@@ -48,64 +48,183 @@ public class Obscuration {
 	private boolean isHaze  = false;
 	private boolean isSpray = false;
 
+	// set on the canonical instances handed out by valueOf()
+	private boolean shared = false;
+
+	/** layer heights are three digits, in hundreds of feet */
+	private static final int HEIGHTS = 1000;
+
+	/** obscuration amounts are FEW, SCT, BKN or OVC */
+	private static final int AMOUNTS = 4;
+
+	// one row per phenomena and amount, one column per layer height
+	private static final ConditionPool<Obscuration> pool =
+		new ConditionPool<Obscuration>(
+			WeatherCodes.PHENOMENA.length * AMOUNTS, HEIGHTS);
+
 	public Obscuration() {
 	}
 
+	/**
+	 * Returns the shared instance for an obscuration remark such as
+	 * 'HZ FEW000'. Every report reporting the same obscuration gets the same
+	 * instance, so shared instances are immutable: their setters throw
+	 * UnsupportedOperationException; copy() gives an instance that can
+	 * be changed.
+	 *
+	 * @param phenomena the obscuring phenomena, e.g. 'HZ'
+	 * @param layer the amount and height of the obscuration, e.g. 'FEW000'
+	 * @return the shared Obscuration
+	 * @throws IllegalArgumentException the arguments are not an obscuration
+	 */
+	public static Obscuration valueOf(String phenomena, String layer) {
+		int type = WeatherCodes.phenomenon(phenomena);
+		int contraction = layer.length() == 6 ? WeatherCodes.contraction(layer,
+			0, 3) : -1;
+		if (type == -1 || !WeatherCodes.isObscuration(type)
+				|| !WeatherCodes.isCover(contraction)) {
+			throw new IllegalArgumentException("not an obscuration: "
+				+ phenomena + " " + layer);
+		}
+		int height = 0;
+		for (int i = 3; i < 6; i++) {
+			char c = layer.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("not an obscuration: "
+					+ phenomena + " " + layer);
+			}
+			height = height * 10 + (c - '0');
+		}
+		return valueOf(type, contraction, height);
+	}
+
+	/**
+	 * @param phenomena a WeatherCodes phenomena index
+	 * @param contraction a WeatherCodes contraction index, FEW to OVC
+	 * @param height the layer height in hundreds of feet
+	 * @return the shared Obscuration for the given codes
+	 */
+	static Obscuration valueOf(int phenomena, int contraction, int height) {
+		int row = phenomena * AMOUNTS + contraction - WeatherCodes.FEW;
+		if (height >= 0 && height < HEIGHTS) {
+			Obscuration obscuration = pool.get(row, height);
+			if (obscuration != null) {
+				return obscuration;
+			}
+			return pool.intern(row, height,
+				create(phenomena, contraction, height));
+		}
+		return create(phenomena, contraction, height);
+	}
+
+	private static Obscuration create(int phenomena, int contraction, int height) {
+		Obscuration obscuration = new Obscuration();
+		obscuration.setPhenomena(WeatherCodes.PHENOMENA[phenomena]);
+		obscuration.setContraction(WeatherCodes.CONTRACTIONS[contraction]);
+		obscuration.setHeight(height);
+		obscuration.shared = true;
+		return obscuration;
+	}
+
+	/**
+	 * @return true if this is a shared instance obtained from valueOf()
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * @return a copy of this Obscuration that is not shared, so its setters
+	 * can be used
+	 */
+	public Obscuration copy() {
+		try {
+			Obscuration copy = (Obscuration) super.clone();
+			copy.shared = false;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void checkNotShared() {
+		if (shared) {
+			throw new UnsupportedOperationException(
+				"shared Obscuration instances are immutable");
+		}
+	}
+
     /**
      *
      * @param phenomena the part of a METAR obscuration token which represents
      * a specific type of phenomena (e.g. 'FG', 'HZ')
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setPhenomena(String phenomena) {
+		checkNotShared();
 		this.phenomena = phenomena;
 
-		if (phenomena.equals(MetarConstants.METAR_MIST)) {
+		int index = WeatherCodes.phenomenon(phenomena);
+		switch (index) {
+		case WeatherCodes.MIST:
 			isMist  = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_MIST;
-		} else if (phenomena.equals(MetarConstants.METAR_FOG)) {
+			break;
+		case WeatherCodes.FOG:
 			isFog   = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_FOG;
-		} else if (phenomena.equals(MetarConstants.METAR_SMOKE)) {
+			break;
+		case WeatherCodes.SMOKE:
 			isSmoke = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SMOKE;
-		} else if (phenomena.equals(MetarConstants.METAR_VOLCANIC_ASH)) {
+			break;
+		case WeatherCodes.VOLCANIC_ASH:
 			isVolcanicAsh = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_VOLCANIC_ASH;
-		} else if (phenomena.equals(MetarConstants.METAR_DUST_STORM)) {
+			break;
+		case WeatherCodes.DUST_STORM:
 			isDust  = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_DUST_STORM;
-		} else if (phenomena.equals(MetarConstants.METAR_SAND)) {
+			break;
+		case WeatherCodes.SAND:
 			isSand  = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SAND;
-		} else if (phenomena.equals(MetarConstants.METAR_HAZE)) {
+			break;
+		case WeatherCodes.HAZE:
 			isHaze  = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_HAZE;
-		} else if (phenomena.equals(MetarConstants.METAR_SPRAY)) {
+			break;
+		case WeatherCodes.SPRAY:
 			isSpray = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SPRAY;
+			break;
+		default:
+			return;
 		}
+		decodedPhenomena = WeatherCodes.DECODED_PHENOMENA[index];
 	}
 
     /**
      *
      * @param contraction the part of a METAR obscuration token which represents
      * a contraction for the phenomena (e.g. 'FEW', 'SCT')
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setContraction(String contraction) {
+		checkNotShared();
 		this.contraction = contraction;
 
-		if (contraction.equals(MetarConstants.METAR_FEW)) {
+		switch (WeatherCodes.contraction(contraction)) {
+		case WeatherCodes.FEW:
 			isSlight = true;
       decodedContraction = MetarConstants.METAR_DECODED_SLIGHT;
-		} else if (contraction.equals(MetarConstants.METAR_SCATTERED)) {
+			break;
+		case WeatherCodes.SCATTERED:
 			isModerate = true;
       decodedContraction = MetarConstants.METAR_DECODED_MODERATE;
-		} else if (contraction.equals(MetarConstants.METAR_BROKEN)) {
+			break;
+		case WeatherCodes.BROKEN:
 			isHeavy = true;
       decodedContraction = MetarConstants.METAR_DECODED_HEAVY;
-		} else if (contraction.equals(MetarConstants.METAR_OVERCAST)) {
+			break;
+		case WeatherCodes.OVERCAST:
 			isSevere = true;
       decodedContraction = MetarConstants.METAR_DECODED_SEVERE;
+			break;
 		}
 	}
 
@@ -161,8 +280,11 @@ public class Obscuration {
      *
      * @param height the part of a METAR obscuration token which represents
      * the height of the phenomena (in hundreds of feet)
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setHeight(int height) {
+		checkNotShared();
 		this.height = height * 100; // for hundreds of feet
 	}
 
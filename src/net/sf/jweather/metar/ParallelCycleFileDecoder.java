@@ -0,0 +1,298 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes the records of a cycle file on a ForkJoinPool.
+ *
+ * Records are independent of each other, so the data is split in half at the
+ * record boundary nearest the middle until the pieces are small enough to be
+ * decoded by a single worker with a CycleFileReader. MetarParser keeps its
+ * scratch state per thread, so the workers share nothing but the input.
+ *
+ * Results are handed to a MetarHandler in one of two ways:
+ * <ul>
+ * <li>ordered: once all records are decoded, the calling thread hands them
+ * over in input order. The results of the whole buffer (or of one mapping
+ * window of a file) are held until then.</li>
+ * <li>unordered: each worker hands its results over as soon as they are
+ * decoded, so the handler must be thread-safe. Nothing is held back.</li>
+ * </ul>
+ *
+ * A decoder holds no state of its own and can be shared by many threads.
+ *
+ * @see CycleFileReader
+ */
+public class ParallelCycleFileDecoder {
+    /** pieces smaller than this are decoded by a single worker */
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final ForkJoinPool pool;
+
+    private final int windowSize;
+
+    /**
+     * Decode on the common ForkJoinPool.
+     */
+    public ParallelCycleFileDecoder() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public ParallelCycleFileDecoder(ForkJoinPool pool) {
+        this(pool, CycleFileReader.DEFAULT_WINDOW_SIZE);
+    }
+
+    /**
+     * @param windowSize
+     *            the number of bytes of a file mapped at once
+     */
+    public ParallelCycleFileDecoder(ForkJoinPool pool, int windowSize) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("window size " + windowSize);
+        }
+        this.pool = pool;
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Decode the records held between the position and the limit of buffer.
+     * The buffer's position and limit are left unchanged.
+     *
+     * @param ordered
+     *            hand the results over in input order from the calling
+     *            thread, rather than from the workers as they come
+     * @return the number of reports decoded
+     */
+    public int decode(ByteBuffer buffer, MetarHandler handler,
+            boolean ordered) {
+        return decode(buffer, buffer.position(), buffer.limit(), handler,
+                ordered);
+    }
+
+    /**
+     * Memory-map a cycle file and decode its records, see
+     * decode(ByteBuffer, MetarHandler, boolean). Files larger than the window
+     * size are mapped one window at a time, each ending at a record
+     * boundary.
+     *
+     * @return the number of reports decoded
+     * @throws IOException
+     *             reading the file failed, or a record is longer than the
+     *             window size
+     */
+    public int decode(File file, MetarHandler handler, boolean ordered)
+            throws IOException {
+        FileChannel channel = new RandomAccessFile(file, "r").getChannel();
+        try {
+            long size = channel.size();
+            long offset = 0;
+            int count = 0;
+            while (offset < size) {
+                int length = (int) Math.min(size - offset, windowSize);
+                ByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY,
+                        offset, length);
+                int end = length;
+                if (offset + length < size) {
+                    end = lastRecordEnd(window, length);
+                    if (end == -1) {
+                        throw new IOException("record at offset " + offset
+                                + " of " + file + " is longer than "
+                                + windowSize + " bytes");
+                    }
+                }
+                count += decode(window, 0, end, handler, ordered);
+                offset += end;
+            }
+            return count;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private int decode(ByteBuffer buffer, int start, int end,
+            MetarHandler handler, boolean ordered) {
+        DecodeTask task = new DecodeTask(buffer, start, end, ordered ? null
+                : handler);
+        pool.invoke(task);
+        if (ordered) {
+            task.deliver(handler);
+        }
+        return task.count.get();
+    }
+
+    /**
+     * @return the offset just past the line feed that ends the first blank
+     *         line at or after from, or end if there is none
+     */
+    static int nextRecordStart(ByteBuffer buffer, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            int j = i + 1;
+            while (j < end && buffer.get(j) != '\n'
+                    && MetarTokenizer.isWhitespace((char) buffer.get(j))) {
+                j++;
+            }
+            if (j < end && buffer.get(j) == '\n') {
+                return j + 1;
+            }
+            i = j - 1;
+        }
+        return end;
+    }
+
+    /**
+     * @return the offset just past the last blank line before end, or -1
+     */
+    static int lastRecordEnd(ByteBuffer buffer, int end) {
+        for (int i = end - 1; i > 0; i--) {
+            if (buffer.get(i) != '\n') {
+                continue;
+            }
+            int j = i - 1;
+            while (j >= 0 && buffer.get(j) != '\n'
+                    && MetarTokenizer.isWhitespace((char) buffer.get(j))) {
+                j--;
+            }
+            if (j >= 0 && buffer.get(j) == '\n') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Decodes buffer[start, end), splitting it in two at a record boundary
+     * while it is larger than CHUNK_SIZE.
+     */
+    private static class DecodeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final ByteBuffer buffer;
+
+        private final int start;
+
+        private final int end;
+
+        /** handler for unordered results, null when ordered */
+        private final MetarHandler handler;
+
+        /** reports decoded by this task and the tasks below it */
+        final AtomicInteger count;
+
+        private DecodeTask left;
+
+        private DecodeTask right;
+
+        /** Metars and MetarParseExceptions in input order, when ordered */
+        private List<Object> results;
+
+        DecodeTask(ByteBuffer buffer, int start, int end,
+                MetarHandler handler) {
+            this(buffer, start, end, handler, new AtomicInteger());
+        }
+
+        private DecodeTask(ByteBuffer buffer, int start, int end,
+                MetarHandler handler, AtomicInteger count) {
+            this.buffer = buffer;
+            this.start = start;
+            this.end = end;
+            this.handler = handler;
+            this.count = count;
+        }
+
+        protected void compute() {
+            if (end - start > CHUNK_SIZE) {
+                int split = nextRecordStart(buffer, start + (end - start) / 2,
+                        end);
+                if (split < end) {
+                    left = new DecodeTask(buffer, start, split, handler, count);
+                    right = new DecodeTask(buffer, split, end, handler, count);
+                    invokeAll(left, right);
+                    return;
+                }
+            }
+
+            if (handler == null) {
+                results = new ArrayList<Object>();
+            }
+            CycleFileReader reader = new CycleFileReader(buffer, start, end);
+            int decoded = 0;
+            while (true) {
+                Object result;
+                try {
+                    result = reader.read();
+                } catch (MetarParseException exc) {
+                    result = exc;
+                } catch (IOException exc) {
+                    // the whole piece is in memory, nothing is read
+                    throw new UncheckedIOException(exc);
+                }
+                if (result == null) {
+                    break;
+                }
+                if (result instanceof Metar) {
+                    decoded++;
+                }
+                if (handler == null) {
+                    results.add(result);
+                } else if (result instanceof Metar) {
+                    handler.metar((Metar) result);
+                } else {
+                    handler.error((MetarParseException) result);
+                }
+            }
+            count.addAndGet(decoded);
+        }
+
+        /**
+         * Hand the ordered results over, left to right.
+         */
+        void deliver(MetarHandler handler) {
+            if (left != null) {
+                left.deliver(handler);
+                right.deliver(handler);
+                return;
+            }
+            for (int i = 0; i < results.size(); i++) {
+                Object result = results.get(i);
+                if (result instanceof Metar) {
+                    handler.metar((Metar) result);
+                } else {
+                    handler.error((MetarParseException) result);
+                }
+            }
+        }
+    }
+}
@@ -25,7 +25,7 @@ package net.sf.jweather.metar;
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.6 $
  */
-public class SkyCondition {
+public class SkyCondition implements Cloneable {
 	private String contraction = null;
   private String decodedContraction = null;
 	private String modifier = null;
@@ -44,39 +44,170 @@ public class SkyCondition {
 	private boolean isCumulonimbus = false;
 	private boolean isToweringCumulus = false;
 
+	// set on the canonical instances handed out by valueOf()
+	private boolean shared = false;
+
+	/** layer heights are three digits, in hundreds of feet */
+	private static final int HEIGHTS = 1000;
+
+	// one row per contraction and modifier (none, CB, TCU), one column per
+	// layer height
+	private static final ConditionPool<SkyCondition> pool =
+		new ConditionPool<SkyCondition>(
+			WeatherCodes.CONTRACTIONS.length * 3, HEIGHTS);
+
 	public SkyCondition() {
 	}
 
+	/**
+	 * Returns the shared instance for a sky condition group such as 'FEW250',
+	 * 'BKN030CB', 'VV002' or 'CLR'. Every report reporting the same layer
+	 * gets the same instance, so shared instances are immutable: their
+	 * setters throw UnsupportedOperationException; copy() gives an
+	 * instance that can be changed.
+	 *
+	 * @param code a METAR sky condition group
+	 * @return the shared SkyCondition for code
+	 * @throws IllegalArgumentException code is not a sky condition group
+	 */
+	public static SkyCondition valueOf(String code) {
+		int contraction = WeatherCodes.contraction(code, 0, code.length());
+		if (contraction == -1) {
+			throw new IllegalArgumentException("not a sky condition: " + code);
+		}
+		int pos = WeatherCodes.CONTRACTIONS[contraction].length();
+		boolean vertical = contraction == WeatherCodes.VERTICAL_VISIBILITY;
+		if (!vertical && !WeatherCodes.isCover(contraction)) {
+			// SKC, CLR and NSC stand alone
+			if (pos != code.length()) {
+				throw new IllegalArgumentException("not a sky condition: " + code);
+			}
+			return valueOf(contraction, 0, null);
+		}
+		if (code.length() < pos + 3) {
+			throw new IllegalArgumentException("not a sky condition: " + code);
+		}
+		int height = 0;
+		for (int i = pos; i < pos + 3; i++) {
+			char c = code.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new IllegalArgumentException("not a sky condition: " + code);
+			}
+			height = height * 10 + (c - '0');
+		}
+		pos += 3;
+		String modifier = null;
+		if (pos < code.length()) {
+			if (vertical) {
+				throw new IllegalArgumentException("not a sky condition: " + code);
+			}
+			modifier = code.substring(pos);
+		}
+		return valueOf(contraction, height, modifier);
+	}
+
+	/**
+	 * @param contraction a WeatherCodes contraction index
+	 * @param height the layer height in hundreds of feet
+	 * @param modifier the cloud type following the layer, or null
+	 * @return the shared SkyCondition for the given layer; unusual modifiers
+	 * and heights get an immutable instance of their own
+	 */
+	static SkyCondition valueOf(int contraction, int height, String modifier) {
+		int type = modifier == null ? -1 : WeatherCodes.modifier(modifier, 0,
+			modifier.length());
+		if (modifier != null && type == -1 || height < 0 || height >= HEIGHTS) {
+			return create(contraction, height, modifier);
+		}
+		int row = contraction * 3 + type + 1;
+		SkyCondition condition = pool.get(row, height);
+		if (condition != null) {
+			return condition;
+		}
+		return pool.intern(row, height,
+			create(contraction, height, modifier));
+	}
+
+	private static SkyCondition create(int contraction, int height, String modifier) {
+		SkyCondition condition = new SkyCondition();
+		condition.setContraction(WeatherCodes.CONTRACTIONS[contraction]);
+		if (height != 0) {
+			condition.setHeight(height);
+		}
+		if (modifier != null) {
+			condition.setModifier(modifier);
+		}
+		condition.shared = true;
+		return condition;
+	}
+
+	/**
+	 * @return true if this is a shared instance obtained from valueOf()
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * @return a copy of this SkyCondition that is not shared, so its setters
+	 * can be used
+	 */
+	public SkyCondition copy() {
+		try {
+			SkyCondition copy = (SkyCondition) super.clone();
+			copy.shared = false;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void checkNotShared() {
+		if (shared) {
+			throw new UnsupportedOperationException(
+				"shared SkyCondition instances are immutable");
+		}
+	}
+
     /**
      *
      * @param contraction the part of a METAR sky condition token which represents
      * a contraction for the sky condition (e.g. 'FEW', 'SCT')
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setContraction(String contraction) {
+		checkNotShared();
 		this.contraction = contraction;
-		if (contraction.equals(MetarConstants.METAR_VERTICAL_VISIBILITY)) {
+
+		int index = WeatherCodes.contraction(contraction);
+		if (index == -1) {
+			return;
+		}
+		decodedContraction = WeatherCodes.DECODED_CONTRACTIONS[index];
+		switch (index) {
+		case WeatherCodes.VERTICAL_VISIBILITY:
 			isVerticalVisibility = true;
-      decodedContraction = MetarConstants.METAR_DECODED_VERTICAL_VISIBILITY;
-		} else if (contraction.equals(MetarConstants.METAR_SKY_CLEAR)) {
+			break;
+		case WeatherCodes.SKY_CLEAR:
+		case WeatherCodes.CLEAR:
 			isClear = true;
-      decodedContraction = MetarConstants.METAR_DECODED_SKY_CLEAR;
-		} else if (contraction.equals(MetarConstants.METAR_CLEAR)) {
-			isClear = true;
-      decodedContraction = MetarConstants.METAR_DECODED_CLEAR;
-		} else if (contraction.equals(MetarConstants.METAR_FEW)) {
+			break;
+		case WeatherCodes.FEW:
 			isFewClouds = true;
-      decodedContraction = MetarConstants.METAR_DECODED_FEW;
-		} else if (contraction.equals(MetarConstants.METAR_SCATTERED)) {
+			break;
+		case WeatherCodes.SCATTERED:
 			isScatteredClouds = true;
-      decodedContraction = MetarConstants.METAR_DECODED_SCATTERED;
-		} else if (contraction.equals(MetarConstants.METAR_BROKEN)) {
+			break;
+		case WeatherCodes.BROKEN:
 			isBrokenClouds = true;
-      decodedContraction = MetarConstants.METAR_DECODED_BROKEN;
-		} else if (contraction.equals(MetarConstants.METAR_OVERCAST)) {
+			break;
+		case WeatherCodes.OVERCAST:
 			isOvercast = true;
-      decodedContraction = MetarConstants.METAR_DECODED_OVERCAST;
-		} else if (contraction.equals(MetarConstants.METAR_NO_SIGNIFICANT_CLOUDS)) {
+			break;
+		case WeatherCodes.NO_SIGNIFICANT_CLOUDS:
 			isNoSignificantClouds = true;
+			break;
 		}
 	}
 
@@ -84,15 +215,22 @@ public class SkyCondition {
      *
      * @param modifier the part of a METAR sky condition token which represents
      * a modifier used to specify if the sky condition is of a certain type
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setModifier(String modifier) {
+		checkNotShared();
 		this.modifier = modifier;
-		if (modifier.equals(MetarConstants.METAR_CUMULONIMBUS)) {
+
+		int index = WeatherCodes.modifier(modifier, 0, modifier.length());
+		if (index == -1) {
+			return;
+		}
+		decodedModifier = WeatherCodes.DECODED_MODIFIERS[index];
+		if (index == WeatherCodes.CUMULONIMBUS) {
 			isCumulonimbus = true;
-      decodedModifier = MetarConstants.METAR_DECODED_CUMULONIMBUS;
-		} else if (modifier.equals(MetarConstants.METAR_TOWERING_CUMULUS)) {
+		} else {
 			isToweringCumulus = true;
-      decodedModifier = MetarConstants.METAR_DECODED_TOWERING_CUMULONIMBUS;
 		}
 	}
 
@@ -108,8 +246,11 @@ public class SkyCondition {
      *
      * @param height the part of a METAR sky condition token which represents
      * the height of the sky condition (in hundreds of feet)
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setHeight(int height) {
+		checkNotShared();
 		this.height = height * 100; // for hundreds of feet
 	}
 
@@ -224,16 +365,22 @@ public class SkyCondition {
   /**
    * 
    * @param string
+   * @throws UnsupportedOperationException this is a shared instance,
+   * see copy()
    */
   public void setDecodedContraction(String string) {
+    checkNotShared();
     decodedContraction = string;
   }
 
   /**
    * 
    * @param string
+   * @throws UnsupportedOperationException this is a shared instance,
+   * see copy()
    */
   public void setDecodedModifier(String string) {
+    checkNotShared();
     decodedModifier = string;
   }
 
@@ -0,0 +1,80 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * A downloaded station file along with the validators the server sent for
+ * it, which let a later download ask for the file only if it has changed.
+ *
+ * @see MetarFetcher#fetchFileAsync(String, int, StationFile)
+ */
+public final class StationFile {
+    private final String station;
+
+    private final byte[] data;
+
+    private final String lastModified;
+
+    private final String etag;
+
+    StationFile(String station, byte[] data, String lastModified, String etag) {
+        this.station = station;
+        this.data = data;
+        this.lastModified = lastModified;
+        this.etag = etag;
+    }
+
+    /**
+     * @return the station id, e.g. 'KLAX'
+     */
+    public String getStation() {
+        return station;
+    }
+
+    /**
+     * @return the raw station file, not to be modified
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    /**
+     * @return the Last-Modified header of the response, or null
+     */
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return the ETag header of the response, or null
+     */
+    public String getETag() {
+        return etag;
+    }
+
+    /**
+     * @return true if a download can be made conditional on this file having
+     *         changed
+     */
+    public boolean isValidatable() {
+        return lastModified != null || etag != null;
+    }
+}
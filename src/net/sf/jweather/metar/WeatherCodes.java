@@ -0,0 +1,368 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.metar;
+
+/**
+ * Decoding tables for the METAR weather and sky condition codes.
+ *
+ * Every present weather descriptor and phenomenon is a two letter code, so
+ * the two letters index straight into a 26 x 26 table whose entry says what
+ * kind of code it is and which one. The three letter sky condition
+ * contractions are packed into an int and decoded with a switch. Either way a
+ * code is decoded with a single lookup instead of comparing it against each
+ * MetarConstants string in turn, and the decoded text comes from the arrays
+ * below using the same index.
+ *
+ * The index constants are used by WeatherCondition, SkyCondition and
+ * Obscuration to set their flags, and by MetarParser to recognize groups.
+ *
+ * @see MetarConstants
+ */
+final class WeatherCodes {
+    private WeatherCodes() {
+    }
+
+    // present weather descriptors
+    static final int SHALLOW = 0;
+    static final int PARTIAL = 1;
+    static final int PATCHES = 2;
+    static final int LOW_DRIFTING = 3;
+    static final int BLOWING = 4;
+    static final int SHOWERS = 5;
+    static final int THUNDERSTORMS = 6;
+    static final int FREEZING = 7;
+
+    // present weather phenomena
+    static final int DRIZZLE = 0;
+    static final int RAIN = 1;
+    static final int SNOW = 2;
+    static final int SNOW_GRAINS = 3;
+    static final int ICE_CRYSTALS = 4;
+    static final int ICE_PELLETS = 5;
+    static final int HAIL = 6;
+    static final int SMALL_HAIL = 7;
+    static final int UNKNOWN_PRECIPITATION = 8;
+    static final int MIST = 9;
+    static final int FOG = 10;
+    static final int SMOKE = 11;
+    static final int VOLCANIC_ASH = 12;
+    static final int WIDESPREAD_DUST = 13;
+    static final int SAND = 14;
+    static final int HAZE = 15;
+    static final int SPRAY = 16;
+    static final int DUST_SAND_WHIRLS = 17;
+    static final int SQUALLS = 18;
+    static final int FUNNEL_CLOUD = 19;
+    static final int SAND_STORM = 20;
+    static final int DUST_STORM = 21;
+
+    // sky condition contractions
+    static final int VERTICAL_VISIBILITY = 0;
+    static final int SKY_CLEAR = 1;
+    static final int CLEAR = 2;
+    static final int FEW = 3;
+    static final int SCATTERED = 4;
+    static final int BROKEN = 5;
+    static final int OVERCAST = 6;
+    static final int NO_SIGNIFICANT_CLOUDS = 7;
+
+    // sky condition modifiers
+    static final int CUMULONIMBUS = 0;
+    static final int TOWERING_CUMULUS = 1;
+
+    /** descriptor codes, by index */
+    static final String[] DESCRIPTORS = { MetarConstants.METAR_SHALLOW,
+            MetarConstants.METAR_PARTIAL, MetarConstants.METAR_PATCHES,
+            MetarConstants.METAR_LOW_DRIFTING, MetarConstants.METAR_BLOWING,
+            MetarConstants.METAR_SHOWERS, MetarConstants.METAR_THUNDERSTORMS,
+            MetarConstants.METAR_FREEZING };
+
+    static final String[] DECODED_DESCRIPTORS = {
+            MetarConstants.METAR_DECODED_SHALLOW,
+            MetarConstants.METAR_DECODED_PARTIAL,
+            MetarConstants.METAR_DECODED_PATCHES,
+            MetarConstants.METAR_DECODED_LOW_DRIFTING,
+            MetarConstants.METAR_DECODED_BLOWING,
+            MetarConstants.METAR_DECODED_SHOWERS,
+            MetarConstants.METAR_DECODED_THUNDERSTORMS,
+            MetarConstants.METAR_DECODED_FREEZING };
+
+    /** phenomena codes, by index */
+    static final String[] PHENOMENA = { MetarConstants.METAR_DRIZZLE,
+            MetarConstants.METAR_RAIN, MetarConstants.METAR_SNOW,
+            MetarConstants.METAR_SNOW_GRAINS,
+            MetarConstants.METAR_ICE_CRYSTALS,
+            MetarConstants.METAR_ICE_PELLETS, MetarConstants.METAR_HAIL,
+            MetarConstants.METAR_SMALL_HAIL,
+            MetarConstants.METAR_UNKNOWN_PRECIPITATION,
+            MetarConstants.METAR_MIST, MetarConstants.METAR_FOG,
+            MetarConstants.METAR_SMOKE, MetarConstants.METAR_VOLCANIC_ASH,
+            MetarConstants.METAR_WIDESPREAD_DUST, MetarConstants.METAR_SAND,
+            MetarConstants.METAR_HAZE, MetarConstants.METAR_SPRAY,
+            MetarConstants.METAR_DUST_SAND_WHIRLS,
+            MetarConstants.METAR_SQUALLS, MetarConstants.METAR_FUNNEL_CLOUD,
+            MetarConstants.METAR_SAND_STORM, MetarConstants.METAR_DUST_STORM };
+
+    static final String[] DECODED_PHENOMENA = {
+            MetarConstants.METAR_DECODED_DRIZZLE,
+            MetarConstants.METAR_DECODED_RAIN,
+            MetarConstants.METAR_DECODED_SNOW,
+            MetarConstants.METAR_DECODED_SNOW_GRAINS,
+            MetarConstants.METAR_DECODED_ICE_CRYSTALS,
+            MetarConstants.METAR_DECODED_ICE_PELLETS,
+            MetarConstants.METAR_DECODED_HAIL,
+            MetarConstants.METAR_DECODED_SMALL_HAIL,
+            MetarConstants.METAR_DECODED_UNKNOWN_PRECIP,
+            MetarConstants.METAR_DECODED_MIST,
+            MetarConstants.METAR_DECODED_FOG,
+            MetarConstants.METAR_DECODED_SMOKE,
+            MetarConstants.METAR_DECODED_VOLCANIC_ASH,
+            MetarConstants.METAR_DECODED_WIDESPREAD_DUST,
+            MetarConstants.METAR_DECODED_SAND,
+            MetarConstants.METAR_DECODED_HAZE,
+            MetarConstants.METAR_DECODED_SPRAY,
+            MetarConstants.METAR_DECODED_DUST_SAND_WHIRLS,
+            MetarConstants.METAR_DECODED_SQUALLS,
+            MetarConstants.METAR_DECODED_FUNNEL_CLOUD,
+            MetarConstants.METAR_DECODED_SAND_STORM,
+            MetarConstants.METAR_DECODED_DUST_STORM };
+
+    /** sky condition contractions, by index */
+    static final String[] CONTRACTIONS = {
+            MetarConstants.METAR_VERTICAL_VISIBILITY,
+            MetarConstants.METAR_SKY_CLEAR, MetarConstants.METAR_CLEAR,
+            MetarConstants.METAR_FEW, MetarConstants.METAR_SCATTERED,
+            MetarConstants.METAR_BROKEN, MetarConstants.METAR_OVERCAST,
+            MetarConstants.METAR_NO_SIGNIFICANT_CLOUDS };
+
+    /** decoded sky condition contractions; NSC has never had one */
+    static final String[] DECODED_CONTRACTIONS = {
+            MetarConstants.METAR_DECODED_VERTICAL_VISIBILITY,
+            MetarConstants.METAR_DECODED_SKY_CLEAR,
+            MetarConstants.METAR_DECODED_CLEAR,
+            MetarConstants.METAR_DECODED_FEW,
+            MetarConstants.METAR_DECODED_SCATTERED,
+            MetarConstants.METAR_DECODED_BROKEN,
+            MetarConstants.METAR_DECODED_OVERCAST, null };
+
+    /** sky condition modifiers, by index */
+    static final String[] MODIFIERS = { MetarConstants.METAR_CUMULONIMBUS,
+            MetarConstants.METAR_TOWERING_CUMULUS };
+
+    static final String[] DECODED_MODIFIERS = {
+            MetarConstants.METAR_DECODED_CUMULONIMBUS,
+            MetarConstants.METAR_DECODED_TOWERING_CUMULONIMBUS };
+
+    /** kind of a two letter code entry, stored above the index */
+    static final int KIND_DESCRIPTOR = 1 << 8;
+
+    static final int KIND_PHENOMENON = 2 << 8;
+
+    private static final int KIND_MASK = 0xff00;
+
+    private static final int INDEX_MASK = 0xff;
+
+    /** two letter codes; 0 for letters that are not a weather code */
+    private static final int[] TWO_LETTER_CODES = new int[26 * 26];
+
+    static {
+        for (int i = 0; i < DESCRIPTORS.length; i++) {
+            TWO_LETTER_CODES[slot(DESCRIPTORS[i].charAt(0),
+                    DESCRIPTORS[i].charAt(1))] = KIND_DESCRIPTOR | i;
+        }
+        for (int i = 0; i < PHENOMENA.length; i++) {
+            TWO_LETTER_CODES[slot(PHENOMENA[i].charAt(0),
+                    PHENOMENA[i].charAt(1))] = KIND_PHENOMENON | i;
+        }
+    }
+
+    /**
+     * @return the table slot for two letters, or -1 if either is not A-Z
+     */
+    private static int slot(char first, char second) {
+        if (first < 'A' || first > 'Z' || second < 'A' || second > 'Z') {
+            return -1;
+        }
+        return (first - 'A') * 26 + (second - 'A');
+    }
+
+    /**
+     * Look up the two letter weather code at text[pos, pos + 2).
+     *
+     * @return KIND_DESCRIPTOR or KIND_PHENOMENON combined with the index of
+     *         the code, or 0 if there is no weather code at pos
+     */
+    static int lookup(CharSequence text, int pos, int end) {
+        if (pos + 2 > end) {
+            return 0;
+        }
+        int slot = slot(text.charAt(pos), text.charAt(pos + 1));
+        return slot == -1 ? 0 : TWO_LETTER_CODES[slot];
+    }
+
+    static int kind(int entry) {
+        return entry & KIND_MASK;
+    }
+
+    static int index(int entry) {
+        return entry & INDEX_MASK;
+    }
+
+    /**
+     * @return the index of the descriptor at text[pos, pos + 2), or -1
+     */
+    static int descriptor(CharSequence text, int pos, int end) {
+        int entry = lookup(text, pos, end);
+        return kind(entry) == KIND_DESCRIPTOR ? index(entry) : -1;
+    }
+
+    /**
+     * @return the index of the phenomenon at text[pos, pos + 2), or -1
+     */
+    static int phenomenon(CharSequence text, int pos, int end) {
+        int entry = lookup(text, pos, end);
+        return kind(entry) == KIND_PHENOMENON ? index(entry) : -1;
+    }
+
+    /**
+     * @return the index of the descriptor equal to code, or -1
+     */
+    static int descriptor(String code) {
+        return code.length() == 2 ? descriptor(code, 0, 2) : -1;
+    }
+
+    /**
+     * @return the index of the phenomenon equal to code, or -1
+     */
+    static int phenomenon(String code) {
+        return code.length() == 2 ? phenomenon(code, 0, 2) : -1;
+    }
+
+    /**
+     * @return true for the phenomena reported as obscurations in the remarks,
+     *         e.g. 'HZ FEW000'
+     */
+    static boolean isObscuration(int phenomenon) {
+        switch (phenomenon) {
+        case MIST:
+        case FOG:
+        case SMOKE:
+        case VOLCANIC_ASH:
+        case WIDESPREAD_DUST:
+        case SAND:
+        case HAZE:
+        case SPRAY:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * @return three letters packed into an int, first letter highest
+     */
+    private static int pack(char first, char second, char third) {
+        return first << 16 | second << 8 | third;
+    }
+
+    // the three letter codes as packed by pack(), for use as switch labels
+
+    private static final int PACKED_SKC = 'S' << 16 | 'K' << 8 | 'C';
+
+    private static final int PACKED_CLR = 'C' << 16 | 'L' << 8 | 'R';
+
+    private static final int PACKED_FEW = 'F' << 16 | 'E' << 8 | 'W';
+
+    private static final int PACKED_SCT = 'S' << 16 | 'C' << 8 | 'T';
+
+    private static final int PACKED_BKN = 'B' << 16 | 'K' << 8 | 'N';
+
+    private static final int PACKED_OVC = 'O' << 16 | 'V' << 8 | 'C';
+
+    private static final int PACKED_NSC = 'N' << 16 | 'S' << 8 | 'C';
+
+    private static final int PACKED_TCU = 'T' << 16 | 'C' << 8 | 'U';
+
+    /**
+     * @return the index of the sky condition contraction that text[pos, end)
+     *         starts with, or -1
+     */
+    static int contraction(CharSequence text, int pos, int end) {
+        if (pos + 3 <= end) {
+            switch (pack(text.charAt(pos), text.charAt(pos + 1),
+                    text.charAt(pos + 2))) {
+            case PACKED_SKC:
+                return SKY_CLEAR;
+            case PACKED_CLR:
+                return CLEAR;
+            case PACKED_FEW:
+                return FEW;
+            case PACKED_SCT:
+                return SCATTERED;
+            case PACKED_BKN:
+                return BROKEN;
+            case PACKED_OVC:
+                return OVERCAST;
+            case PACKED_NSC:
+                return NO_SIGNIFICANT_CLOUDS;
+            }
+        }
+        if (pos + 2 <= end && text.charAt(pos) == 'V'
+                && text.charAt(pos + 1) == 'V') {
+            return VERTICAL_VISIBILITY;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the index of the contraction equal to code, or -1
+     */
+    static int contraction(String code) {
+        int contraction = contraction(code, 0, code.length());
+        return contraction != -1
+                && CONTRACTIONS[contraction].length() == code.length() ? contraction
+                : -1;
+    }
+
+    /**
+     * @return true for the contractions followed by a layer height, FEW, SCT,
+     *         BKN and OVC
+     */
+    static boolean isCover(int contraction) {
+        return contraction >= FEW && contraction <= OVERCAST;
+    }
+
+    /**
+     * @return the index of the modifier equal to text[pos, end), or -1
+     */
+    static int modifier(CharSequence text, int pos, int end) {
+        switch (end - pos) {
+        case 2:
+            return text.charAt(pos) == 'C' && text.charAt(pos + 1) == 'B' ? CUMULONIMBUS
+                    : -1;
+        case 3:
+            return pack(text.charAt(pos), text.charAt(pos + 1),
+                    text.charAt(pos + 2)) == PACKED_TCU ? TOWERING_CUMULUS : -1;
+        default:
+            return -1;
+        }
+    }
+}
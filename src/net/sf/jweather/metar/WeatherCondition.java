@@ -25,7 +25,7 @@ package net.sf.jweather.metar;
  * @author David Castro, dcastro@apu.edu
  * @version $Revision: 1.3 $
  */
-public class WeatherCondition {
+public class WeatherCondition implements Cloneable {
 	private String intensity = null;
   private String decodedIntensity = null;
 	private String descriptor = null;
@@ -75,17 +75,128 @@ public class WeatherCondition {
 	private boolean isTornado = false;
 	private boolean isWaterspout = false;
 
+	// set on the canonical instances handed out by valueOf()
+	private boolean shared = false;
+
+	/** intensity index of a group without '+' or '-' */
+	static final int MODERATE = 0;
+	/** intensity index of a '-' group */
+	static final int LIGHT = 1;
+	/** intensity index of a '+' group */
+	static final int HEAVY = 2;
+
+	// one row per intensity and descriptor (including none), one column per
+	// phenomena (including none)
+	private static final ConditionPool<WeatherCondition> pool =
+		new ConditionPool<WeatherCondition>(
+			3 * (WeatherCodes.DESCRIPTORS.length + 1),
+			WeatherCodes.PHENOMENA.length + 1);
+
 	public WeatherCondition() {
 	}
 
+	/**
+	 * Returns the shared instance for a weather group such as '-RA', '+TSRA'
+	 * or 'BR'. Every report reporting the same group gets the same instance,
+	 * so shared instances are immutable: their setters throw
+	 * UnsupportedOperationException; copy() gives an instance that can
+	 * be changed.
+	 *
+	 * @param code a METAR present weather group
+	 * @return the shared WeatherCondition for code
+	 * @throws IllegalArgumentException code is not a present weather group
+	 */
+	public static WeatherCondition valueOf(String code) {
+		int pos = 0;
+		int intensity = MODERATE;
+		if (code.startsWith(MetarConstants.METAR_LIGHT)) {
+			intensity = LIGHT;
+			pos++;
+		} else if (code.startsWith(MetarConstants.METAR_HEAVY)) {
+			intensity = HEAVY;
+			pos++;
+		}
+		int descriptor = WeatherCodes.descriptor(code, pos, code.length());
+		if (descriptor != -1) {
+			pos += 2;
+		}
+		int phenomena = WeatherCodes.phenomenon(code, pos, code.length());
+		if (phenomena != -1) {
+			pos += 2;
+		}
+		if (pos != code.length() || (descriptor == -1 && phenomena == -1)) {
+			throw new IllegalArgumentException("not a weather group: " + code);
+		}
+		return valueOf(intensity, descriptor, phenomena);
+	}
+
+	/**
+	 * @param intensity MODERATE, LIGHT or HEAVY
+	 * @param descriptor a WeatherCodes descriptor index, or -1 for none
+	 * @param phenomena a WeatherCodes phenomena index, or -1 for none
+	 * @return the shared WeatherCondition for the given codes
+	 */
+	static WeatherCondition valueOf(int intensity, int descriptor, int phenomena) {
+		int row = intensity * (WeatherCodes.DESCRIPTORS.length + 1) + descriptor + 1;
+		WeatherCondition condition = pool.get(row, phenomena + 1);
+		if (condition != null) {
+			return condition;
+		}
+		condition = new WeatherCondition();
+		if (intensity == LIGHT) {
+			condition.setIntensity(MetarConstants.METAR_LIGHT);
+		} else if (intensity == HEAVY) {
+			condition.setIntensity(MetarConstants.METAR_HEAVY);
+		}
+		if (descriptor != -1) {
+			condition.setDescriptor(WeatherCodes.DESCRIPTORS[descriptor]);
+		}
+		if (phenomena != -1) {
+			condition.setPhenomena(WeatherCodes.PHENOMENA[phenomena]);
+		}
+		condition.shared = true;
+		return pool.intern(row, phenomena + 1, condition);
+	}
+
+	/**
+	 * @return true if this is a shared instance obtained from valueOf()
+	 */
+	public boolean isShared() {
+		return shared;
+	}
+
+	/**
+	 * @return a copy of this WeatherCondition that is not shared, so its setters
+	 * can be used
+	 */
+	public WeatherCondition copy() {
+		try {
+			WeatherCondition copy = (WeatherCondition) super.clone();
+			copy.shared = false;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	private void checkNotShared() {
+		if (shared) {
+			throw new UnsupportedOperationException(
+				"shared WeatherCondition instances are immutable");
+		}
+	}
+
     /**
      * Set the intensity for this Weather Condition
      *
      * @param intensity the part of a METAR weather condition token which
      * represents the intesity of the weather condition (e.g. '-' - light,
      * '+' - heavy)
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setIntensity(String intensity) {
+		checkNotShared();
 		this.intensity = intensity;
 
 		if (intensity.equals(MetarConstants.METAR_LIGHT)) {
@@ -106,36 +217,44 @@ public class WeatherCondition {
      * @param descriptor the part of a METAR weather condition token which
      * represents a description of the quality of the phenomena (e.g. 'BC' - patches,
      * 'SH' - showers)
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setDescriptor(String descriptor) {
+		checkNotShared();
 		this.descriptor = descriptor;
 
-		if (descriptor.equals(MetarConstants.METAR_SHALLOW)) {
+		int index = WeatherCodes.descriptor(descriptor);
+		if (index == -1) {
+			// shouldn't get here
+			return;
+		}
+		decodedDescriptor = WeatherCodes.DECODED_DESCRIPTORS[index];
+		switch (index) {
+		case WeatherCodes.SHALLOW:
 			isShallow = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_SHALLOW;
-		} else if (descriptor.equals(MetarConstants.METAR_PARTIAL)) {
+			break;
+		case WeatherCodes.PARTIAL:
 			isPartial = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_PARTIAL;
-		} else if (descriptor.equals(MetarConstants.METAR_PATCHES)) {
+			break;
+		case WeatherCodes.PATCHES:
 			isPatches = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_PATCHES;
-		} else if (descriptor.equals(MetarConstants.METAR_LOW_DRIFTING)) {
+			break;
+		case WeatherCodes.LOW_DRIFTING:
 			isLowDrifting = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_LOW_DRIFTING;
-		} else if (descriptor.equals(MetarConstants.METAR_BLOWING)) {
+			break;
+		case WeatherCodes.BLOWING:
 			isBlowing = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_BLOWING;
-		} else if (descriptor.equals(MetarConstants.METAR_SHOWERS)) {
+			break;
+		case WeatherCodes.SHOWERS:
 			isShowers = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_SHOWERS;
-		} else if (descriptor.equals(MetarConstants.METAR_THUNDERSTORMS)) {
+			break;
+		case WeatherCodes.THUNDERSTORMS:
 			isThunderstorms = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_THUNDERSTORMS;
-		} else if (descriptor.equals(MetarConstants.METAR_FREEZING)) {
+			break;
+		case WeatherCodes.FREEZING:
 			isFreezing = true;
-      decodedDescriptor = MetarConstants.METAR_DECODED_FREEZING;
-		} else {
-			// shouldn't get here
+			break;
 		}
 	}
 
@@ -144,80 +263,88 @@ public class WeatherCondition {
 	 *
      * @param phenomena the part of a METAR weather condition token which
      * represents a specific type of phenomena (e.g. 'SN', 'HZ')
+     * @throws UnsupportedOperationException this is a shared instance,
+     * see copy()
      */
 	protected void setPhenomena(String phenomena) {
+		checkNotShared();
 		this.phenomena = phenomena;
 
-		if (phenomena.equals(MetarConstants.METAR_DRIZZLE)) {
+		int index = WeatherCodes.phenomenon(phenomena);
+		if (index == -1) {
+			// shouldn't get here
+			return;
+		}
+		decodedPhenomena = WeatherCodes.DECODED_PHENOMENA[index];
+		switch (index) {
+		case WeatherCodes.DRIZZLE:
 			isDrizzle = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_DRIZZLE;
-		} else if (phenomena.equals(MetarConstants.METAR_RAIN)) {
+			break;
+		case WeatherCodes.RAIN:
 			isRain = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_RAIN;
-		} else if (phenomena.equals(MetarConstants.METAR_SNOW)) {
+			break;
+		case WeatherCodes.SNOW:
 			isSnow = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SNOW;
-		} else if (phenomena.equals(MetarConstants.METAR_SNOW_GRAINS)) {
+			break;
+		case WeatherCodes.SNOW_GRAINS:
 			isSnowGrains = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SNOW_GRAINS;
-		} else if (phenomena.equals(MetarConstants.METAR_ICE_CRYSTALS)) {
+			break;
+		case WeatherCodes.ICE_CRYSTALS:
 			isIceCrystals = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_ICE_CRYSTALS;
-		} else if (phenomena.equals(MetarConstants.METAR_ICE_PELLETS)) {
+			break;
+		case WeatherCodes.ICE_PELLETS:
 			isIcePellets = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_ICE_PELLETS;
-		} else if (phenomena.equals(MetarConstants.METAR_HAIL)) {
+			break;
+		case WeatherCodes.HAIL:
 			isHail = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_HAIL;
-		} else if (phenomena.equals(MetarConstants.METAR_SMALL_HAIL)) {
+			break;
+		case WeatherCodes.SMALL_HAIL:
 			isSmallHail = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SMALL_HAIL;
-		} else if (phenomena.equals(MetarConstants.METAR_UNKNOWN_PRECIPITATION)) {
+			break;
+		case WeatherCodes.UNKNOWN_PRECIPITATION:
 			isUnknownPrecipitation = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_UNKNOWN_PRECIP;
-		} else if (phenomena.equals(MetarConstants.METAR_MIST)) {
+			break;
+		case WeatherCodes.MIST:
 			isMist = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_MIST;
-		} else if (phenomena.equals(MetarConstants.METAR_FOG)) {
+			break;
+		case WeatherCodes.FOG:
 			isFog = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_FOG;
-		} else if (phenomena.equals(MetarConstants.METAR_SMOKE)) {
+			break;
+		case WeatherCodes.SMOKE:
 			isSmoke = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SMOKE;
-		} else if (phenomena.equals(MetarConstants.METAR_VOLCANIC_ASH)) {
+			break;
+		case WeatherCodes.VOLCANIC_ASH:
 			isVolcanicAsh = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_VOLCANIC_ASH;
-		} else if (phenomena.equals(MetarConstants.METAR_WIDESPREAD_DUST)) {
+			break;
+		case WeatherCodes.WIDESPREAD_DUST:
 			isWidespreadDust = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_WIDESPREAD_DUST;
-		} else if (phenomena.equals(MetarConstants.METAR_SAND)) {
+			break;
+		case WeatherCodes.SAND:
 			isSand = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SAND;
-		} else if (phenomena.equals(MetarConstants.METAR_HAZE)) {
+			break;
+		case WeatherCodes.HAZE:
 			isHaze = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_HAZE;
-		} else if (phenomena.equals(MetarConstants.METAR_SPRAY)) {
+			break;
+		case WeatherCodes.SPRAY:
 			isSpray = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SPRAY;
-		} else if (phenomena.equals(MetarConstants.METAR_DUST_SAND_WHIRLS)) {
+			break;
+		case WeatherCodes.DUST_SAND_WHIRLS:
 			isDustSandWhirls = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_DUST_SAND_WHIRLS;
-		} else if (phenomena.equals(MetarConstants.METAR_SQUALLS)) {
+			break;
+		case WeatherCodes.SQUALLS:
 			isSqualls = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SQUALLS;
-		} else if (phenomena.equals(MetarConstants.METAR_FUNNEL_CLOUD)) {
+			break;
+		case WeatherCodes.FUNNEL_CLOUD:
 			isFunnelCloud = true;
 			isTornado = true;
 			isWaterspout = false;
-      decodedPhenomena = MetarConstants.METAR_DECODED_FUNNEL_CLOUD;
-		} else if (phenomena.equals(MetarConstants.METAR_SAND_STORM)) {
+			break;
+		case WeatherCodes.SAND_STORM:
 			isSandstorm = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_SAND_STORM;
-		} else if (phenomena.equals(MetarConstants.METAR_DUST_STORM)) {
+			break;
+		case WeatherCodes.DUST_STORM:
 			isDuststorm = true;
-      decodedPhenomena = MetarConstants.METAR_DECODED_DUST_STORM;
-		} else {
-			// shouldn't get here
+			break;
 		}
 	}
 
@@ -745,24 +872,33 @@ public class WeatherCondition {
   /**
    * 
    * @param string
+   * @throws UnsupportedOperationException this is a shared instance,
+   * see copy()
    */
   public void setDecodedDescriptor(String string) {
+    checkNotShared();
     decodedDescriptor = string;
   }
 
   /**
    * 
    * @param string
+   * @throws UnsupportedOperationException this is a shared instance,
+   * see copy()
    */
   public void setDecodedIntensity(String string) {
+    checkNotShared();
     decodedIntensity = string;
   }
 
   /**
    * 
    * @param string
+   * @throws UnsupportedOperationException this is a shared instance,
+   * see copy()
    */
   public void setDecodedPhenomena(String string) {
+    checkNotShared();
     decodedPhenomena = string;
   }
 
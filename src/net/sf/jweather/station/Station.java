@@ -0,0 +1,118 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+/**
+ * A weather station known to a StationRegistry.
+ *
+ * @see StationRegistry#get(String)
+ */
+public final class Station {
+    private final String id;
+
+    private final String name;
+
+    private final String country;
+
+    private final String region;
+
+    private final double latitude;
+
+    private final double longitude;
+
+    private final int elevation;
+
+    Station(String id, String name, String country, String region,
+            double latitude, double longitude, int elevation) {
+        this.id = id;
+        this.name = name;
+        this.country = country;
+        this.region = region;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.elevation = elevation;
+    }
+
+    /**
+     * @return the ICAO code, e.g. 'KLAX'
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * @return the name of the station, e.g. 'Los Angeles, Los Angeles
+     *         International Airport', or null
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name of the country, e.g. 'United States', or null
+     */
+    public String getCountry() {
+        return country;
+    }
+
+    /**
+     * @return the two letter country code, or for U.S. stations the state,
+     *         e.g. 'CA', or null
+     */
+    public String getRegion() {
+        return region;
+    }
+
+    /**
+     * @return the latitude in degrees north, or NaN if not known
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * @return the longitude in degrees east, or NaN if not known
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * @return true if the latitude and longitude are known
+     */
+    public boolean hasLocation() {
+        return !Double.isNaN(latitude);
+    }
+
+    /**
+     * @return the elevation in meters, or StationRegistry.MISSING if not
+     *         known
+     */
+    public int getElevation() {
+        return elevation;
+    }
+
+    public String toString() {
+        return id + " " + name + (country == null ? "" : ", " + country)
+                + (hasLocation() ? " (" + latitude + ", " + longitude + ")"
+                        : "");
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes a StationRegistry as a compact binary file, so the
+ * station lists need not be parsed at run time.
+ *
+ * <p>
+ * The build runs main() to compile stations.txt and stations_detail.txt into
+ * stations.db, which is bundled in the jar and picked up by
+ * StationRegistry.load(). A database file can also be memory-mapped with
+ * read(File).
+ * </p>
+ *
+ * The file is laid out column by column, all numbers big-endian:
+ *
+ * <pre>
+ * int     magic 'JWSD'
+ * int     version
+ * int     number of stations n
+ * strings ids, in order
+ * strings names
+ * strings country dictionary, then n shorts indexing it (-1 for none)
+ * strings region dictionary, then n shorts indexing it (-1 for none)
+ * short   n latitudes, n longitudes, n elevations (-32768 for missing)
+ *
+ * strings: int count, count shorts of lengths (-1 for null) and the
+ *          ISO-8859-1 bytes of all of them
+ * </pre>
+ */
+public final class StationDatabase {
+    static final int MAGIC = 0x4a575344; // JWSD
+
+    static final int VERSION = 1;
+
+    private static final short MISSING = Short.MIN_VALUE;
+
+    private StationDatabase() {
+    }
+
+    /**
+     * Compile the station lists into a database.
+     *
+     * @param args stations.txt, stations_detail.txt and the database file
+     *        to write
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: StationDatabase stations.txt stations_detail.txt stations.db");
+            System.exit(1);
+        }
+        StationRegistry registry = StationRegistry.load(new File(args[0]),
+                new File(args[1]));
+        File database = new File(args[2]);
+        File parent = database.getAbsoluteFile().getParentFile();
+        if (parent != null) {
+            parent.mkdirs();
+        }
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(
+                database));
+        try {
+            write(registry, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Write a registry to a stream, which is not closed.
+     */
+    public static void write(StationRegistry registry, OutputStream out)
+            throws IOException {
+        int n = registry.size();
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeInt(VERSION);
+        data.writeInt(n);
+        writeStrings(data, registry.ids, n);
+        writeStrings(data, registry.names, n);
+        writeDictionary(data, registry.countries);
+        writeDictionary(data, registry.regions);
+        writeShorts(data, registry.latitudes);
+        writeShorts(data, registry.longitudes);
+        writeShorts(data, registry.elevations);
+        data.flush();
+    }
+
+    private static void writeStrings(DataOutputStream data, String[] strings,
+            int count) throws IOException {
+        data.writeInt(count);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            if (strings[i] == null) {
+                data.writeShort(-1);
+            } else {
+                byte[] b = strings[i].getBytes(StandardCharsets.ISO_8859_1);
+                if (b.length > Short.MAX_VALUE) {
+                    throw new IOException("string too long: " + strings[i]);
+                }
+                data.writeShort(b.length);
+                bytes.write(b);
+            }
+        }
+        bytes.writeTo(data);
+    }
+
+    private static void writeDictionary(DataOutputStream data,
+            String[] column) throws IOException {
+        Map<String, Integer> codes = new HashMap<String, Integer>();
+        String[] dictionary = new String[column.length];
+        short[] indexes = new short[column.length];
+        for (int i = 0; i < column.length; i++) {
+            if (column[i] == null) {
+                indexes[i] = -1;
+                continue;
+            }
+            Integer code = codes.get(column[i]);
+            if (code == null) {
+                code = Integer.valueOf(codes.size());
+                if (code.intValue() > Short.MAX_VALUE) {
+                    throw new IOException("too many distinct values");
+                }
+                codes.put(column[i], code);
+                dictionary[code.intValue()] = column[i];
+            }
+            indexes[i] = code.shortValue();
+        }
+        writeStrings(data, dictionary, codes.size());
+        for (int i = 0; i < indexes.length; i++) {
+            data.writeShort(indexes[i]);
+        }
+    }
+
+    private static void writeShorts(DataOutputStream data, int[] column)
+            throws IOException {
+        for (int i = 0; i < column.length; i++) {
+            int value = column[i];
+            if (value == StationRegistry.MISSING) {
+                data.writeShort(MISSING);
+            } else if (value <= MISSING || value > Short.MAX_VALUE) {
+                throw new IOException("value out of range: " + value);
+            } else {
+                data.writeShort(value);
+            }
+        }
+    }
+
+    /**
+     * Read a registry from a stream, which is not closed.
+     */
+    public static StationRegistry read(InputStream in) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512 * 1024);
+        byte[] buffer = new byte[64 * 1024];
+        int count;
+        while ((count = in.read(buffer)) > 0) {
+            bytes.write(buffer, 0, count);
+        }
+        return read(ByteBuffer.wrap(bytes.toByteArray()));
+    }
+
+    /**
+     * Read a registry from a memory-mapped database file.
+     */
+    public static StationRegistry read(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size()));
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Read a registry from the database held in buffer, from its position.
+     */
+    public static StationRegistry read(ByteBuffer buffer) throws IOException {
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not a station database");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("unsupported station database version "
+                        + version);
+            }
+            int n = buffer.getInt();
+            // every station takes at least a two byte id length
+            if (n < 0 || n > buffer.remaining() / 2) {
+                throw new IOException("corrupt station database");
+            }
+            String[] ids = readStrings(buffer);
+            String[] names = readStrings(buffer);
+            if (ids.length != n || names.length != n) {
+                throw new IOException("corrupt station database");
+            }
+            for (int i = 0; i < n; i++) {
+                if (ids[i] == null || names[i] == null) {
+                    throw new IOException("corrupt station database");
+                }
+            }
+            String[] countries = readDictionary(buffer, n);
+            String[] regions = readDictionary(buffer, n);
+            int[] latitudes = readShorts(buffer, n);
+            int[] longitudes = readShorts(buffer, n);
+            int[] elevations = readShorts(buffer, n);
+            return new StationRegistry(ids, names, countries, regions,
+                    latitudes, longitudes, elevations);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("truncated station database");
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("corrupt station database");
+        }
+    }
+
+    private static String[] readStrings(ByteBuffer buffer)
+            throws IOException {
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining() / 2) {
+            throw new IOException("corrupt station database");
+        }
+        short[] lengths = new short[count];
+        buffer.asShortBuffer().get(lengths);
+        buffer.position(buffer.position() + 2 * count);
+
+        String[] strings = new String[count];
+        byte[] bytes = null;
+        if (buffer.hasArray()) {
+            bytes = buffer.array();
+        }
+        for (int i = 0; i < count; i++) {
+            int length = lengths[i];
+            if (length < 0) {
+                continue;
+            }
+            if (bytes != null) {
+                int offset = buffer.arrayOffset() + buffer.position();
+                if (length > buffer.remaining()) {
+                    throw new BufferUnderflowException();
+                }
+                strings[i] = new String(bytes, offset, length,
+                        StandardCharsets.ISO_8859_1);
+                buffer.position(buffer.position() + length);
+            } else {
+                byte[] b = new byte[length];
+                buffer.get(b);
+                strings[i] = new String(b, StandardCharsets.ISO_8859_1);
+            }
+        }
+        return strings;
+    }
+
+    private static String[] readDictionary(ByteBuffer buffer, int n)
+            throws IOException {
+        String[] dictionary = readStrings(buffer);
+        String[] column = new String[n];
+        for (int i = 0; i < n; i++) {
+            short index = buffer.getShort();
+            if (index >= 0) {
+                column[i] = dictionary[index];
+            }
+        }
+        return column;
+    }
+
+    private static int[] readShorts(ByteBuffer buffer, int n) {
+        short[] values = new short[n];
+        buffer.asShortBuffer().get(values);
+        buffer.position(buffer.position() + 2 * n);
+        int[] column = new int[n];
+        for (int i = 0; i < n; i++) {
+            column[i] = values[i] == MISSING ? StationRegistry.MISSING
+                    : values[i];
+        }
+        return column;
+    }
+}
@@ -0,0 +1,425 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+import java.util.Arrays;
+
+/**
+ * Finds the stations of a StationRegistry nearest to a point, by great-circle
+ * distance.
+ *
+ * <p>
+ * <code>
+ * StationIndex index = StationIndex.getDefault();<br>
+ * int[] nearest = index.nearest(34.05, -118.25, 5);<br>
+ * Station closest = index.getRegistry().get(nearest[0]);
+ * </code>
+ * </p>
+ *
+ * Stations with a known location are kept in a k-d tree over points on the
+ * unit sphere. The straight-line distance between two such points only grows
+ * with their great-circle distance, so searching the tree by straight-line
+ * distance gives the exact great-circle neighbours, with no special cases at
+ * the poles or across the date line. The tree is laid out in arrays, the
+ * median of each range being its root, and a query visits a few dozen nodes.
+ * An index is immutable and safe to share between threads.
+ */
+public final class StationIndex {
+    /** mean radius of the earth in kilometers */
+    public static final double EARTH_RADIUS = 6371.0;
+
+    private final StationRegistry registry;
+
+    // registry index of each tree node
+    private final int[] stations;
+
+    // x, y and z of each tree node
+    private final double[] points;
+
+    // axis each tree node splits its range along
+    private final byte[] axes;
+
+    /**
+     * Index the stations of a registry that have a location.
+     */
+    public StationIndex(StationRegistry registry) {
+        this.registry = registry;
+        int n = 0;
+        for (int i = 0; i < registry.size(); i++) {
+            if (registry.hasLocation(i)) {
+                n++;
+            }
+        }
+        int[] order = new int[n];
+        double[] unordered = new double[3 * registry.size()];
+        n = 0;
+        for (int i = 0; i < registry.size(); i++) {
+            if (registry.hasLocation(i)) {
+                order[n++] = i;
+                toPoint(registry.getLatitude(i), registry.getLongitude(i),
+                        unordered, 3 * i);
+            }
+        }
+        axes = new byte[n];
+        build(order, unordered, 0, n);
+
+        stations = order;
+        points = new double[3 * n];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(unordered, 3 * order[i], points, 3 * i, 3);
+        }
+    }
+
+    /**
+     * @return the index of the bundled station lists, built on first use
+     */
+    public static StationIndex getDefault() {
+        return DefaultIndex.INSTANCE;
+    }
+
+    public StationRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the number of stations indexed
+     */
+    public int size() {
+        return stations.length;
+    }
+
+    /**
+     * Find the k stations nearest to a point.
+     *
+     * @param latitude degrees north
+     * @param longitude degrees east
+     * @param k the number of stations
+     * @return the registry indexes of the stations, nearest first; fewer
+     *         than k if there are not as many stations
+     */
+    public int[] nearest(double latitude, double longitude, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k = " + k);
+        }
+        double[] q = new double[3];
+        toPoint(latitude, longitude, q, 0);
+        Neighbours neighbours = new Neighbours(Math.min(k, stations.length));
+        if (neighbours.capacity > 0) {
+            searchNearest(0, stations.length, q, neighbours);
+        }
+        return neighbours.sorted();
+    }
+
+    /**
+     * Find the stations within a distance of a point.
+     *
+     * @param latitude degrees north
+     * @param longitude degrees east
+     * @param radius the distance in kilometers
+     * @return the registry indexes of the stations, nearest first
+     */
+    public int[] within(double latitude, double longitude, double radius) {
+        double[] q = new double[3];
+        toPoint(latitude, longitude, q, 0);
+        double limit = chord(radius);
+        Neighbours found = new Neighbours(-1);
+        searchWithin(0, stations.length, q, limit * limit, found);
+        return found.sorted();
+    }
+
+    /**
+     * @return the great-circle distance in kilometers between two points,
+     *         given in degrees
+     */
+    public static double distance(double latitude1, double longitude1,
+            double latitude2, double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinDPhi = Math.sin((phi2 - phi1) / 2);
+        double sinDLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double h = sinDPhi * sinDPhi + Math.cos(phi1) * Math.cos(phi2)
+                * sinDLambda * sinDLambda;
+        return 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * @return the straight-line distance on the unit sphere between two
+     *         points a great-circle distance apart
+     */
+    private static double chord(double distance) {
+        if (distance >= Math.PI * EARTH_RADIUS) {
+            return 2;
+        }
+        return 2 * Math.sin(distance / (2 * EARTH_RADIUS));
+    }
+
+    private static void toPoint(double latitude, double longitude,
+            double[] point, int offset) {
+        double phi = Math.toRadians(latitude);
+        double lambda = Math.toRadians(longitude);
+        double cosPhi = Math.cos(phi);
+        point[offset] = cosPhi * Math.cos(lambda);
+        point[offset + 1] = cosPhi * Math.sin(lambda);
+        point[offset + 2] = Math.sin(phi);
+    }
+
+    /**
+     * Arrange order[lo, hi) as a tree rooted at its middle, split along the
+     * axis its points are most spread out on.
+     */
+    private void build(int[] order, double[] coords, int lo, int hi) {
+        if (hi - lo <= 1) {
+            return;
+        }
+        int axis = 0;
+        double widest = -1;
+        for (int a = 0; a < 3; a++) {
+            double min = Double.POSITIVE_INFINITY;
+            double max = Double.NEGATIVE_INFINITY;
+            for (int i = lo; i < hi; i++) {
+                double v = coords[3 * order[i] + a];
+                min = Math.min(min, v);
+                max = Math.max(max, v);
+            }
+            if (max - min > widest) {
+                widest = max - min;
+                axis = a;
+            }
+        }
+        int mid = (lo + hi) >>> 1;
+        select(order, coords, axis, lo, hi - 1, mid);
+        axes[mid] = (byte) axis;
+        build(order, coords, lo, mid);
+        build(order, coords, mid + 1, hi);
+    }
+
+    /**
+     * Move the k-th smallest point along axis of order[left, right] to k,
+     * with no larger points before it and no smaller ones after it.
+     */
+    private static void select(int[] order, double[] coords, int axis,
+            int left, int right, int k) {
+        while (right > left) {
+            double pivot = coords[3 * order[(left + right) >>> 1] + axis];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (coords[3 * order[i] + axis] < pivot) {
+                    i++;
+                }
+                while (coords[3 * order[j] + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int t = order[i];
+                    order[i] = order[j];
+                    order[j] = t;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private double distanceSquared(int node, double[] q) {
+        double dx = points[3 * node] - q[0];
+        double dy = points[3 * node + 1] - q[1];
+        double dz = points[3 * node + 2] - q[2];
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    private void searchNearest(int lo, int hi, double[] q,
+            Neighbours neighbours) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        neighbours.offer(stations[mid], distanceSquared(mid, q));
+        double diff = q[axes[mid]] - points[3 * mid + axes[mid]];
+        if (diff < 0) {
+            searchNearest(lo, mid, q, neighbours);
+            if (diff * diff < neighbours.worst()) {
+                searchNearest(mid + 1, hi, q, neighbours);
+            }
+        } else {
+            searchNearest(mid + 1, hi, q, neighbours);
+            if (diff * diff < neighbours.worst()) {
+                searchNearest(lo, mid, q, neighbours);
+            }
+        }
+    }
+
+    private void searchWithin(int lo, int hi, double[] q, double limit,
+            Neighbours found) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        double d = distanceSquared(mid, q);
+        if (d <= limit) {
+            found.add(stations[mid], d);
+        }
+        double diff = q[axes[mid]] - points[3 * mid + axes[mid]];
+        if (diff <= 0 || diff * diff <= limit) {
+            searchWithin(lo, mid, q, limit, found);
+        }
+        if (diff >= 0 || diff * diff <= limit) {
+            searchWithin(mid + 1, hi, q, limit, found);
+        }
+    }
+
+    /**
+     * Stations with their squared distances, either the nearest few kept in
+     * a max-heap or all of them.
+     */
+    private static final class Neighbours {
+        // the most stations kept, or -1 for no limit
+        final int capacity;
+
+        int[] stations;
+
+        double[] distances;
+
+        int size;
+
+        Neighbours(int capacity) {
+            this.capacity = capacity;
+            int length = capacity < 0 ? 16 : capacity;
+            stations = new int[length];
+            distances = new double[length];
+        }
+
+        /**
+         * @return the largest distance kept if the heap is full, otherwise
+         *         infinity
+         */
+        double worst() {
+            return size < capacity ? Double.POSITIVE_INFINITY : distances[0];
+        }
+
+        void add(int station, double distance) {
+            if (size == stations.length) {
+                stations = Arrays.copyOf(stations, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            stations[size] = station;
+            distances[size] = distance;
+            size++;
+        }
+
+        void offer(int station, double distance) {
+            if (size < capacity) {
+                // sift up
+                int i = size++;
+                while (i > 0) {
+                    int parent = (i - 1) >>> 1;
+                    if (distances[parent] >= distance) {
+                        break;
+                    }
+                    stations[i] = stations[parent];
+                    distances[i] = distances[parent];
+                    i = parent;
+                }
+                stations[i] = station;
+                distances[i] = distance;
+            } else if (distance < distances[0]) {
+                siftDown(0, station, distance, size);
+            }
+        }
+
+        /**
+         * Put a station at node i of heap[0, n), whose subtrees are heaps,
+         * and restore the heap below i.
+         */
+        private void siftDown(int i, int station, double distance, int n) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    break;
+                }
+                if (child + 1 < n && distances[child + 1] > distances[child]) {
+                    child++;
+                }
+                if (distances[child] <= distance) {
+                    break;
+                }
+                stations[i] = stations[child];
+                distances[i] = distances[child];
+                i = child;
+            }
+            stations[i] = station;
+            distances[i] = distance;
+        }
+
+        /**
+         * @return the stations, nearest first
+         */
+        int[] sorted() {
+            if (capacity < 0 && size > 32) {
+                for (int i = size / 2 - 1; i >= 0; i--) {
+                    siftDown(i, stations[i], distances[i], size);
+                }
+            } else if (capacity < 0) {
+                insertionSort();
+                return Arrays.copyOf(stations, size);
+            }
+            // heap sort, taking the farthest station off the heap
+            for (int n = size - 1; n > 0; n--) {
+                int station = stations[0];
+                double distance = distances[0];
+                siftDown(0, stations[n], distances[n], n);
+                stations[n] = station;
+                distances[n] = distance;
+            }
+            return Arrays.copyOf(stations, size);
+        }
+
+        private void insertionSort() {
+            for (int i = 1; i < size; i++) {
+                int station = stations[i];
+                double distance = distances[i];
+                int j = i - 1;
+                while (j >= 0 && distances[j] > distance) {
+                    stations[j + 1] = stations[j];
+                    distances[j + 1] = distances[j];
+                    j--;
+                }
+                stations[j + 1] = station;
+                distances[j + 1] = distance;
+            }
+        }
+    }
+
+    /**
+     * Holds the index of the bundled station lists, built on first use.
+     */
+    private static class DefaultIndex {
+        static final StationIndex INSTANCE = new StationIndex(
+                StationRegistry.getDefault());
+    }
+}
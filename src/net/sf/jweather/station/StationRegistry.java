@@ -0,0 +1,321 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The weather stations listed in stations.txt and stations_detail.txt, by
+ * ICAO code.
+ *
+ * <p>
+ * <code>
+ * Station station = StationRegistry.getDefault().get("KLAX");<br>
+ * System.out.println(station.getLatitude() + ", " + station.getLongitude());
+ * </code>
+ * </p>
+ *
+ * The bundled lists are compiled into a binary database when jWeather is
+ * built, see StationDatabase, which loads in a fraction of the time it takes
+ * to parse the text files.
+ *
+ * The stations are held in parallel arrays sorted by ICAO code, with
+ * coordinates and elevations as plain ints, and looked up through an open
+ * addressing hash table of array indexes. A registry is immutable and safe
+ * to share between threads. Callers going through many stations can read the
+ * columns by index instead of creating Station objects.
+ */
+public final class StationRegistry {
+    /** resource name of the station names and countries */
+    public static final String STATIONS = "/stations.txt";
+
+    /** resource name of the station locations */
+    public static final String STATION_DETAILS = "/stations_detail.txt";
+
+    /** resource name of both lists compiled by StationDatabase */
+    public static final String DATABASE = "/stations.db";
+
+    /** value of a coordinate or elevation that is not known */
+    public static final int MISSING = Integer.MIN_VALUE;
+
+    // the columns, read by StationDatabase
+    final String[] ids;
+
+    final String[] names;
+
+    final String[] countries;
+
+    final String[] regions;
+
+    // hundredths of a degree, or MISSING
+    final int[] latitudes;
+
+    final int[] longitudes;
+
+    // meters, or MISSING
+    final int[] elevations;
+
+    // index + 1 of the station hashed to each slot, 0 for an empty slot
+    private final int[] table;
+
+    StationRegistry(String[] ids, String[] names, String[] countries,
+            String[] regions, int[] latitudes, int[] longitudes,
+            int[] elevations) {
+        this.ids = ids;
+        this.names = names;
+        this.countries = countries;
+        this.regions = regions;
+        this.latitudes = latitudes;
+        this.longitudes = longitudes;
+        this.elevations = elevations;
+
+        // at most half full, so probe sequences stay short
+        int capacity = Integer.highestOneBit(Math.max(ids.length, 1) * 2 - 1) << 1;
+        table = new int[capacity];
+        for (int i = 0; i < ids.length; i++) {
+            int slot = hash(ids[i]) & (capacity - 1);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            table[slot] = i + 1;
+        }
+    }
+
+    /**
+     * @return the registry of the station lists bundled with jWeather, loaded
+     *         on first use
+     * @throws UncheckedIOException
+     *             the station lists could not be read
+     */
+    public static StationRegistry getDefault() {
+        return DefaultRegistry.INSTANCE;
+    }
+
+    /**
+     * Load the station lists bundled with jWeather from the class path, from
+     * the compiled database if there is one.
+     */
+    public static StationRegistry load() throws IOException {
+        InputStream database = StationRegistry.class
+                .getResourceAsStream(DATABASE);
+        if (database != null) {
+            try {
+                return StationDatabase.read(database);
+            } finally {
+                database.close();
+            }
+        }
+        return loadText();
+    }
+
+    /**
+     * Load the station text files bundled with jWeather from the class
+     * path.
+     */
+    static StationRegistry loadText() throws IOException {
+        InputStream stations = resource(STATIONS);
+        try {
+            InputStream details = resource(STATION_DETAILS);
+            try {
+                return load(stations, details);
+            } finally {
+                details.close();
+            }
+        } finally {
+            stations.close();
+        }
+    }
+
+    /**
+     * Load the station lists from files.
+     *
+     * @param stations stations.txt, or null
+     * @param details stations_detail.txt, or null
+     */
+    public static StationRegistry load(File stations, File details)
+            throws IOException {
+        InputStream stationsIn = stations == null ? null
+                : new FileInputStream(stations);
+        try {
+            InputStream detailsIn = details == null ? null
+                    : new FileInputStream(details);
+            try {
+                return load(stationsIn, detailsIn);
+            } finally {
+                if (detailsIn != null) {
+                    detailsIn.close();
+                }
+            }
+        } finally {
+            if (stationsIn != null) {
+                stationsIn.close();
+            }
+        }
+    }
+
+    /**
+     * Load the station lists from streams, which are not closed.
+     *
+     * @param stations the contents of stations.txt, or null
+     * @param details the contents of stations_detail.txt, or null
+     */
+    public static StationRegistry load(InputStream stations,
+            InputStream details) throws IOException {
+        StationRegistryBuilder builder = new StationRegistryBuilder();
+        if (stations != null) {
+            builder.readStations(reader(stations));
+        }
+        if (details != null) {
+            builder.readDetails(reader(details));
+        }
+        return builder.build();
+    }
+
+    private static InputStream resource(String name) throws IOException {
+        InputStream in = StationRegistry.class.getResourceAsStream(name);
+        if (in == null) {
+            throw new IOException("no resource " + name);
+        }
+        return in;
+    }
+
+    private static BufferedReader reader(InputStream in) {
+        return new BufferedReader(new InputStreamReader(in,
+                StandardCharsets.ISO_8859_1));
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the number of stations
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param id an ICAO code, e.g. 'KLAX'
+     * @return the index of the station, or -1 if there is no such station
+     */
+    public int indexOf(String id) {
+        int mask = table.length - 1;
+        for (int slot = hash(id) & mask;; slot = (slot + 1) & mask) {
+            int entry = table[slot];
+            if (entry == 0) {
+                return -1;
+            }
+            if (ids[entry - 1].equals(id)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    public boolean contains(String id) {
+        return indexOf(id) >= 0;
+    }
+
+    /**
+     * @param id an ICAO code, e.g. 'KLAX'
+     * @return the station, or null if there is no such station
+     */
+    public Station get(String id) {
+        int index = indexOf(id);
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * @param index the index of a station, 0 - size() - 1; stations are in
+     *        order of their ICAO codes
+     */
+    public Station get(int index) {
+        return new Station(ids[index], names[index], countries[index],
+                regions[index], getLatitude(index), getLongitude(index),
+                elevations[index]);
+    }
+
+    public String getId(int index) {
+        return ids[index];
+    }
+
+    public String getName(int index) {
+        return names[index];
+    }
+
+    public String getCountry(int index) {
+        return countries[index];
+    }
+
+    public String getRegion(int index) {
+        return regions[index];
+    }
+
+    public boolean hasLocation(int index) {
+        return latitudes[index] != MISSING;
+    }
+
+    /**
+     * @return the latitude in degrees north, or NaN if not known
+     */
+    public double getLatitude(int index) {
+        int value = latitudes[index];
+        return value == MISSING ? Double.NaN : value / 100.0;
+    }
+
+    /**
+     * @return the longitude in degrees east, or NaN if not known
+     */
+    public double getLongitude(int index) {
+        int value = longitudes[index];
+        return value == MISSING ? Double.NaN : value / 100.0;
+    }
+
+    /**
+     * @return the elevation in meters, or MISSING if not known
+     */
+    public int getElevation(int index) {
+        return elevations[index];
+    }
+
+    /**
+     * Holds the bundled registry, loaded on first use.
+     */
+    private static class DefaultRegistry {
+        static final StationRegistry INSTANCE;
+
+        static {
+            try {
+                INSTANCE = load();
+            } catch (IOException e) {
+                throw new UncheckedIOException("unable to load stations", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the station lists into rows by ICAO code and turns them into a
+ * StationRegistry.
+ *
+ * stations.txt holds one 'ICAO=name;country' line per station.
+ * stations_detail.txt is a fixed-width list of station number, call letters,
+ * name, country or U.S. state, latitude and longitude in hundredths of a
+ * degree and elevation in meters; stations without call letters cannot be
+ * asked for by ICAO code and are left out. A station listed more than once
+ * keeps the first entry with a location.
+ */
+final class StationRegistryBuilder {
+    private final Map<String, Row> rows = new HashMap<String, Row>();
+
+    /**
+     * Read stations.txt.
+     */
+    void readStations(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            int equals = line.indexOf('=');
+            if (equals <= 0) {
+                continue;
+            }
+            int semicolon = line.indexOf(';', equals);
+            String id = line.substring(0, equals).trim();
+            Row row = row(id);
+            if (semicolon < 0) {
+                row.name = emptyToNull(line.substring(equals + 1).trim());
+            } else {
+                row.name = emptyToNull(line.substring(equals + 1, semicolon)
+                        .trim());
+                row.country = emptyToNull(line.substring(semicolon + 1)
+                        .trim());
+            }
+        }
+    }
+
+    /**
+     * Read stations_detail.txt.
+     */
+    void readDetails(BufferedReader in) throws IOException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            // station lines start with the six digit station number
+            if (line.length() < 36 || !isDigits(line, 0, 6)) {
+                continue;
+            }
+            String id = line.substring(7, 13).trim();
+            if (id.length() == 0) {
+                continue;
+            }
+            int latitude = field(line, 37, 42);
+            int longitude = field(line, 43, 49);
+            if (latitude == StationRegistry.MISSING
+                    || longitude == StationRegistry.MISSING
+                    || Math.abs(latitude) > 9000
+                    || Math.abs(longitude) > 18000) {
+                latitude = StationRegistry.MISSING;
+                longitude = StationRegistry.MISSING;
+            }
+
+            Row row = row(id);
+            if (row.detailed && row.latitude != StationRegistry.MISSING) {
+                continue;
+            }
+            row.detailed = true;
+            row.detailName = emptyToNull(line.substring(14, 34).trim());
+            row.region = emptyToNull(line.substring(34, 36).trim());
+            row.latitude = latitude;
+            row.longitude = longitude;
+            row.elevation = field(line, 50, 55);
+        }
+    }
+
+    StationRegistry build() {
+        List<String> ids = new ArrayList<String>(rows.keySet());
+        Collections.sort(ids);
+        int n = ids.size();
+        String[] names = new String[n];
+        String[] countries = new String[n];
+        String[] regions = new String[n];
+        int[] latitudes = new int[n];
+        int[] longitudes = new int[n];
+        int[] elevations = new int[n];
+        for (int i = 0; i < n; i++) {
+            Row row = rows.get(ids.get(i));
+            names[i] = row.name != null ? row.name : row.detailName;
+            countries[i] = row.country;
+            regions[i] = row.region;
+            latitudes[i] = row.latitude;
+            longitudes[i] = row.longitude;
+            elevations[i] = row.elevation;
+        }
+        return new StationRegistry(ids.toArray(new String[n]), names,
+                countries, regions, latitudes, longitudes, elevations);
+    }
+
+    private Row row(String id) {
+        Row row = rows.get(id);
+        if (row == null) {
+            row = new Row();
+            rows.put(id, row);
+        }
+        return row;
+    }
+
+    private static boolean isDigits(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the signed number in line[start, end), or MISSING if the
+     *         field is blank, cut off or not a number
+     */
+    static int field(String line, int start, int end) {
+        if (line.length() < end) {
+            return StationRegistry.MISSING;
+        }
+        int pos = start;
+        boolean negative = false;
+        char sign = line.charAt(pos);
+        if (sign == '+' || sign == '-') {
+            negative = sign == '-';
+            pos++;
+        }
+        if (pos == end) {
+            return StationRegistry.MISSING;
+        }
+        int value = 0;
+        for (; pos < end; pos++) {
+            char c = line.charAt(pos);
+            if (c < '0' || c > '9') {
+                return StationRegistry.MISSING;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return negative ? -value : value;
+    }
+
+    private static String emptyToNull(String s) {
+        return s.length() == 0 ? null : s;
+    }
+
+    private static final class Row {
+        String name;
+
+        String country;
+
+        String detailName;
+
+        String region;
+
+        boolean detailed;
+
+        int latitude = StationRegistry.MISSING;
+
+        int longitude = StationRegistry.MISSING;
+
+        int elevation = StationRegistry.MISSING;
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ jWeather(TM) is a Java library for parsing raw weather data
+ Copyright (C) 2004 David Castro
+
+ This library is free software; you can redistribute it and/or
+ modify it under the terms of the GNU Lesser General Public
+ License as published by the Free Software Foundation; either
+ version 2.1 of the License, or (at your option) any later version.
+
+ This library is distributed in the hope that it will be useful,
+ but WITHOUT ANY WARRANTY; without even the implied warranty of
+ MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ Lesser General Public License for more details.
+
+ You should have received a copy of the GNU Lesser General Public
+ License along with this library; if not, write to the Free Software
+ Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+ For more information, please email arimus@users.sourceforge.net
+ */
+package net.sf.jweather.station;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the stations of a StationRegistry by name, country or ICAO code, for
+ * completing station names as they are typed.
+ *
+ * <p>
+ * <code>
+ * StationSearch search = StationSearch.getDefault();<br>
+ * int[] found = search.search("heathrow lon", 10);<br>
+ * Station best = search.getRegistry().get(found[0]);
+ * </code>
+ * </p>
+ *
+ * A query is split into words, ignoring case, accents and punctuation, and
+ * a station matches if every word is the start of a word of its name,
+ * country or code. Stations are ranked by how well they match: a code typed
+ * in full comes first, then whole words before prefixes. If that finds fewer
+ * stations than asked for, words of three or more letters also match words
+ * that start within one edit of them, two for words of six or more, so
+ * 'londn' and 'heatrow' still find London Heathrow; such matches rank last.
+ *
+ * The distinct words of the registry are kept in a sorted array, each with
+ * the stations it occurs in, so a prefix is a binary search followed by a
+ * scan. Typos are looked up through the trigrams of the words of names and
+ * countries, and only words sharing enough trigrams with the query are
+ * compared letter by letter. Each thread keeps its own scratch arrays, so a
+ * search over the bundled lists allocates little and takes a few tens of
+ * microseconds at most. An index is immutable and safe to share between
+ * threads.
+ */
+public final class StationSearch {
+    // how well a query word matches a station word
+    private static final int EXACT = 3;
+
+    private static final int PREFIX = 2;
+
+    private static final int FUZZY = 1;
+
+    /** added to the rank of a station whose code is the whole query */
+    private static final int CODE = 1000;
+
+    private final StationRegistry registry;
+
+    // distinct words, sorted
+    private final String[] words;
+
+    // stations of word i are postings[starts[i], starts[i + 1])
+    private final int[] starts;
+
+    private final int[] postings;
+
+    // trigram hash << 32 | word, sorted, for the words of names and
+    // countries
+    private final long[] trigrams;
+
+    // scratch space of the searches on each thread
+    private final ThreadLocal<Matches> scratch = new ThreadLocal<Matches>() {
+        protected Matches initialValue() {
+            return new Matches();
+        }
+    };
+
+    /**
+     * Index the names, countries and codes of the stations of a registry.
+     */
+    public StationSearch(StationRegistry registry) {
+        this.registry = registry;
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        List<String> distinct = new ArrayList<String>();
+        // whether each word occurs in a name or country, not just as a code
+        boolean[] named = new boolean[64];
+        int[] pairWords = new int[4 * registry.size()];
+        int[] pairStations = new int[pairWords.length];
+        int pairs = 0;
+        for (int i = 0; i < registry.size(); i++) {
+            String text = registry.getId(i) + ' ' + text(registry.getName(i))
+                    + ' ' + text(registry.getCountry(i));
+            String[] split = split(text);
+            for (int j = 0; j < split.length; j++) {
+                String word = split[j];
+                Integer id = ids.get(word);
+                if (id == null) {
+                    id = Integer.valueOf(distinct.size());
+                    ids.put(word, id);
+                    distinct.add(word);
+                    if (id.intValue() == named.length) {
+                        named = Arrays.copyOf(named, 2 * named.length);
+                    }
+                }
+                // the code comes first
+                named[id.intValue()] |= j > 0;
+                if (pairs == pairWords.length) {
+                    pairWords = Arrays.copyOf(pairWords, 2 * pairs);
+                    pairStations = Arrays.copyOf(pairStations, 2 * pairs);
+                }
+                pairWords[pairs] = id.intValue();
+                pairStations[pairs] = i;
+                pairs++;
+            }
+        }
+
+        words = distinct.toArray(new String[distinct.size()]);
+        Arrays.sort(words);
+        int[] rank = new int[words.length];
+        for (int i = 0; i < words.length; i++) {
+            rank[ids.get(words[i]).intValue()] = i;
+        }
+
+        boolean[] fuzzy = new boolean[words.length];
+        for (int i = 0; i < words.length; i++) {
+            fuzzy[i] = named[ids.get(words[i]).intValue()];
+        }
+
+        // group the stations by word, stations being in order already
+        starts = new int[words.length + 1];
+        for (int p = 0; p < pairs; p++) {
+            starts[rank[pairWords[p]] + 1]++;
+        }
+        for (int i = 0; i < words.length; i++) {
+            starts[i + 1] += starts[i];
+        }
+        int[] next = Arrays.copyOf(starts, words.length);
+        int[] grouped = new int[pairs];
+        for (int p = 0; p < pairs; p++) {
+            int w = rank[pairWords[p]];
+            // a word may occur twice in the same station
+            if (next[w] == starts[w] || grouped[next[w] - 1] != pairStations[p]) {
+                grouped[next[w]++] = pairStations[p];
+            }
+        }
+        int n = 0;
+        for (int w = 0; w < words.length; w++) {
+            int start = n;
+            for (int p = starts[w]; p < next[w]; p++) {
+                grouped[n++] = grouped[p];
+            }
+            starts[w] = start;
+        }
+        starts[words.length] = n;
+        postings = Arrays.copyOf(grouped, n);
+
+        n = 0;
+        long[] grams = new long[64];
+        for (int w = 0; w < words.length; w++) {
+            if (!fuzzy[w]) {
+                // codes have to be typed right
+                continue;
+            }
+            String word = words[w];
+            for (int i = 0; i < word.length(); i++) {
+                if (n == grams.length) {
+                    grams = Arrays.copyOf(grams, 2 * n);
+                }
+                grams[n++] = (long) trigram(word, i) << 32 | w;
+            }
+        }
+        Arrays.sort(grams, 0, n);
+        int distinctGrams = 0;
+        for (int i = 0; i < n; i++) {
+            if (i == 0 || grams[i] != grams[i - 1]) {
+                grams[distinctGrams++] = grams[i];
+            }
+        }
+        trigrams = Arrays.copyOf(grams, distinctGrams);
+    }
+
+    /**
+     * @return the index of the bundled station lists, built on first use
+     */
+    public static StationSearch getDefault() {
+        return DefaultSearch.INSTANCE;
+    }
+
+    public StationRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return the number of distinct words indexed
+     */
+    public int size() {
+        return words.length;
+    }
+
+    /**
+     * Find the stations best matching a query.
+     *
+     * @param query words from the name, country or code of a station, the
+     *        last of which may be incomplete
+     * @param limit the most stations to return
+     * @return the registry indexes of the stations, best match first
+     */
+    public int[] search(String query, int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("limit = " + limit);
+        }
+        String[] terms = split(query);
+        if (terms.length == 0 || limit == 0) {
+            return new int[0];
+        }
+        Matches matches = scratch.get();
+        try {
+            if (match(terms, false, matches) < limit) {
+                matches.clear();
+                match(terms, true, matches);
+            }
+            return matches.best(terms, limit);
+        } finally {
+            matches.clear();
+        }
+    }
+
+    /**
+     * @return the number of stations matching all of the terms
+     */
+    private int match(String[] terms, boolean fuzzy, Matches matches) {
+        for (int t = 0; t < terms.length; t++) {
+            String term = terms[t];
+            int lo = lowerBound(term);
+            int hi = lo;
+            while (hi < words.length && words[hi].startsWith(term)) {
+                hi++;
+            }
+            for (int w = lo; w < hi; w++) {
+                matches.credit(t, w == lo && words[w].equals(term) ? EXACT
+                        : PREFIX, postings, starts[w], starts[w + 1]);
+            }
+            if (fuzzy && term.length() >= 3) {
+                matchFuzzy(term, t, lo, hi, matches);
+            }
+            if (matches.count(t + 1) == 0) {
+                return 0;
+            }
+        }
+        return matches.count(terms.length);
+    }
+
+    /**
+     * Credit the stations with a word starting within a few edits of term,
+     * other than the words in [lo, hi) which start with it.
+     */
+    private void matchFuzzy(String term, int t, int lo, int hi,
+            Matches matches) {
+        int edits = term.length() >= 6 ? 2 : 1;
+        // an edit changes at most three trigrams of the term
+        int needed = Math.max(1, term.length() - 3 * edits);
+        int[] shared = matches.shared;
+        int[] touched = matches.touched;
+        int count = 0;
+        int candidates = touched.length;
+        for (int i = 0; i < term.length(); i++) {
+            int gram = trigram(term, i);
+            boolean seen = false;
+            for (int j = 0; j < i && !seen; j++) {
+                seen = trigram(term, j) == gram;
+            }
+            if (seen) {
+                continue;
+            }
+            int g = lowerBound(trigrams, (long) gram << 32);
+            for (; g < trigrams.length && (int) (trigrams[g] >>> 32) == gram; g++) {
+                int w = (int) trigrams[g];
+                if (shared[w]++ == 0) {
+                    touched[count++] = w;
+                }
+                if (shared[w] == needed && (w < lo || w >= hi)) {
+                    touched[--candidates] = w;
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            shared[touched[i]] = 0;
+        }
+        for (int i = candidates; i < touched.length; i++) {
+            int w = touched[i];
+            if (prefixDistance(term, words[w], edits) <= edits) {
+                matches.credit(t, FUZZY, postings, starts[w], starts[w + 1]);
+            }
+        }
+    }
+
+    /**
+     * @return the fewest edits turning term into a prefix of word, or more
+     *         than limit if that takes more than limit edits
+     */
+    static int prefixDistance(String term, String word, int limit) {
+        int m = term.length();
+        int n = Math.min(word.length(), m + limit);
+        int[] previous = new int[n + 1];
+        int[] current = new int[n + 1];
+        for (int j = 0; j <= n; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= m; i++) {
+            current[0] = i;
+            int best = i;
+            char c = term.charAt(i - 1);
+            for (int j = 1; j <= n; j++) {
+                int d = previous[j - 1] + (c == word.charAt(j - 1) ? 0 : 1);
+                d = Math.min(d, Math.min(previous[j], current[j - 1]) + 1);
+                current[j] = d;
+                best = Math.min(best, d);
+            }
+            if (best > limit) {
+                return best;
+            }
+            int[] t = previous;
+            previous = current;
+            current = t;
+        }
+        int distance = previous[0];
+        for (int j = 1; j <= n; j++) {
+            distance = Math.min(distance, previous[j]);
+        }
+        return distance;
+    }
+
+    private int lowerBound(String term) {
+        int lo = 0;
+        int hi = words.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (words[mid].compareTo(term) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static int lowerBound(long[] values, long key) {
+        int lo = 0;
+        int hi = values.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @return a hash of the three letters of word ending at i, padded with
+     *         blanks at the start
+     */
+    private static int trigram(String word, int i) {
+        int c1 = i >= 2 ? word.charAt(i - 2) : ' ';
+        int c2 = i >= 1 ? word.charAt(i - 1) : ' ';
+        return (c1 * 31 + c2) * 31 + word.charAt(i) & 0x7fffffff;
+    }
+
+    private static String text(String s) {
+        return s == null ? "" : s;
+    }
+
+    /**
+     * @return the words of text in lower case, without accents
+     */
+    static String[] split(String text) {
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        String s = Normalizer.normalize(text, Normalizer.Form.NFD);
+        for (int i = 0; i <= s.length(); i++) {
+            char c = i < s.length() ? s.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                word.append(Character.toLowerCase(c));
+            } else if (Character.getType(c) != Character.NON_SPACING_MARK
+                    && word.length() > 0) {
+                words.add(word.toString());
+                word.setLength(0);
+            }
+        }
+        return words.toArray(new String[words.size()]);
+    }
+
+    /**
+     * The stations matching the first terms of a query, with their ranks.
+     * Only the entries of the stations matching the first term are set, so
+     * clearing takes no longer than the search did.
+     */
+    private final class Matches {
+        // number of terms each station has matched
+        final int[] matched = new int[registry.size()];
+
+        final int[] ranks = new int[registry.size()];
+
+        // the stations matching the first term
+        int[] stations = new int[64];
+
+        int size;
+
+        // trigrams each word shares with a term, and the words sharing any
+        // from the start, the candidates from the end
+        final int[] shared = new int[words.length];
+
+        final int[] touched = new int[2 * words.length];
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                matched[stations[i]] = 0;
+                ranks[stations[i]] = 0;
+            }
+            size = 0;
+        }
+
+        /**
+         * Credit term t to the stations in list[from, to) that matched all
+         * the terms before it, unless a better word of theirs has.
+         */
+        void credit(int t, int rank, int[] list, int from, int to) {
+            for (int p = from; p < to; p++) {
+                int s = list[p];
+                if (matched[s] != t) {
+                    continue;
+                }
+                matched[s] = t + 1;
+                ranks[s] += rank;
+                if (t == 0) {
+                    if (size == stations.length) {
+                        stations = Arrays.copyOf(stations, 2 * size);
+                    }
+                    stations[size++] = s;
+                }
+            }
+        }
+
+        /**
+         * @return the number of stations matching the first terms
+         */
+        int count(int terms) {
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                if (matched[stations[i]] == terms) {
+                    n++;
+                }
+            }
+            return n;
+        }
+
+        /**
+         * @return the best ranked stations, ties going to the shortest name
+         */
+        int[] best(String[] terms, int limit) {
+            // the best keys so far, in order
+            long[] keys = new long[Math.min(limit, size)];
+            int n = 0;
+            for (int i = 0; i < size; i++) {
+                int s = stations[i];
+                if (matched[s] != terms.length) {
+                    continue;
+                }
+                int rank = ranks[s];
+                if (terms.length == 1
+                        && registry.getId(s).equalsIgnoreCase(terms[0])) {
+                    rank += CODE;
+                }
+                rank = Math.min(rank, 0x7fff);
+                String name = registry.getName(s);
+                int length = Math.min(name == null ? 0xffff : name.length(),
+                        0xffff);
+                // best rank first, then shortest name, then registry order
+                long key = (long) (0x7fff - rank) << 48 | (long) length << 32
+                        | s;
+                if (n == keys.length && key >= keys[n - 1]) {
+                    continue;
+                }
+                int j = n == keys.length ? n - 1 : n++;
+                for (; j > 0 && keys[j - 1] > key; j--) {
+                    keys[j] = keys[j - 1];
+                }
+                keys[j] = key;
+            }
+            int[] best = new int[n];
+            for (int i = 0; i < best.length; i++) {
+                best[i] = (int) keys[i];
+            }
+            return best;
+        }
+    }
+
+    private static class DefaultSearch {
+        static final StationSearch INSTANCE = new StationSearch(
+                StationRegistry.getDefault());
+    }
+}
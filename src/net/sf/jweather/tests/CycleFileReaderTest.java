@@ -0,0 +1,171 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.metar.*;
+import junit.framework.TestCase;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads cycle files through CycleFileReader, streamed and memory-mapped,
+ * including records that straddle buffer refills, wrapped reports and bad
+ * records.
+ */
+public class CycleFileReaderTest extends TestCase {
+  static final String CYCLE_FILE =
+    "2004/01/06 02:50\r\n" +
+    "KLAX 060250Z 34010KT 10SM CLR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003\r\n" +
+    "\r\n" +
+    "2004/01/28 03:20\n" +
+    "EDDB 280320Z 21003KT 2300 BR FEW028 SCT062 01/M03 Q1000\n" +
+    "     NOSIG\n" +
+    "\n" +
+    "\n" +
+    "2004/13/28 03:20\n" +
+    "EGPF 280320Z 30008KT CAVOK 01/M03 Q1006\n" +
+    "  \n" +
+    "2004/09/20 08:50\n" +
+    "EGBJ 200850Z 23007G17KT 4000NE RADZ BKN009 BKN015 15/14 Q1006";
+
+  public CycleFileReaderTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(CycleFileReaderTest.class);
+  }
+
+  public void testReadRecords() throws Exception {
+    checkRecords(new CycleFileReader(new ByteArrayInputStream(CYCLE_FILE.getBytes("US-ASCII"))));
+  }
+
+  public void testReadOneByteAtATime() throws Exception {
+    // every read returns a single byte and the buffer only holds two records
+    InputStream in = new ByteArrayInputStream(CYCLE_FILE.getBytes("US-ASCII")) {
+      public synchronized int read(byte[] b, int off, int len) {
+        return super.read(b, off, Math.min(len, 1));
+      }
+    };
+    checkRecords(new CycleFileReader(Channels.newChannel(in), 256));
+  }
+
+  public void testReadMappedFile() throws Exception {
+    File file = writeCycleFile(CYCLE_FILE);
+    try {
+      checkRecords(new CycleFileReader(file));
+      // small windows make records straddle remappings
+      checkRecords(new CycleFileReader(file, 128));
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  public void testReadAll() throws Exception {
+    File first = writeCycleFile(CYCLE_FILE);
+    File second = writeCycleFile("\n\n" + CYCLE_FILE + "\n\n");
+    try {
+      final List<String> metars = new ArrayList<String>();
+      final List<String> errors = new ArrayList<String>();
+      int count = CycleFileReader.readAll(Arrays.asList(new File[] { first, second }), new MetarHandler() {
+        public void metar(Metar metar) {
+          metars.add(metar.getStationID());
+        }
+
+        public void error(MetarParseException exception) {
+          errors.add(exception.getRecord());
+        }
+      });
+      assertEquals(6, count);
+      assertEquals(Arrays.asList(new String[] { "KLAX", "EDDB", "EGBJ", "KLAX", "EDDB", "EGBJ" }), metars);
+      assertEquals(2, errors.size());
+      assertEquals("2004/13/28 03:20\nEGPF 280320Z 30008KT CAVOK 01/M03 Q1006", errors.get(0));
+    }
+    finally {
+      first.delete();
+      second.delete();
+    }
+  }
+
+  private File writeCycleFile(String contents) throws Exception {
+    File file = File.createTempFile("cycle", ".TXT");
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents.getBytes("US-ASCII"));
+    }
+    finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private void checkRecords(CycleFileReader reader) throws Exception {
+    Metar metar = reader.read();
+    assertEquals("2004/01/06 02:50", metar.getDateString());
+    assertEquals("KLAX 060250Z 34010KT 10SM CLR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003", metar.getReportString());
+    assertEquals(14.4f, metar.getTemperaturePreciseInCelsiusValue(), 0.001f);
+
+    metar = reader.read();
+    assertEquals("EDDB", metar.getStationID());
+    assertEquals("EDDB 280320Z 21003KT 2300 BR FEW028 SCT062 01/M03 Q1000 NOSIG", metar.getReportString());
+    assertTrue(metar.getIsNoSignificantChange());
+    assertEquals(2, reader.getRecordNumber());
+
+    try {
+      reader.read();
+      fail("there is no 13th month");
+    }
+    catch (MetarParseException e) {
+    }
+    assertEquals(3, reader.getRecordNumber());
+
+    metar = reader.read();
+    assertEquals("EGBJ", metar.getStationID());
+    assertEquals(4, reader.getRecordNumber());
+    assertNull(reader.read());
+    assertNull(reader.read());
+    reader.close();
+  }
+
+  public void testSkipRecordLongerThanBuffer() throws Exception {
+    StringBuffer sb = new StringBuffer("2004/01/06 02:50\nKLAX 060250Z");
+    for (int i = 0; i < 100; i++) {
+      sb.append(" RMK");
+    }
+    sb.append("\n\n").append(CYCLE_FILE);
+    CycleFileReader reader = new CycleFileReader(Channels.newChannel(new ByteArrayInputStream(sb.toString().getBytes("US-ASCII"))), 128);
+    try {
+      reader.read();
+      fail("the first record does not fit in the buffer");
+    }
+    catch (MetarParseException e) {
+    }
+    assertEquals("KLAX", reader.read().getStationID());
+    assertEquals("EDDB", reader.read().getStationID());
+  }
+}
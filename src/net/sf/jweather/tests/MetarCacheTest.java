@@ -0,0 +1,107 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.*;
+import net.sf.jweather.metar.*;
+import junit.framework.TestCase;
+
+/**
+ * Expiry, eviction and statistics of the report cache.
+ */
+public class MetarCacheTest extends TestCase {
+  private static final long MINUTE = 60 * 1000L;
+
+  public MetarCacheTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(MetarCacheTest.class);
+  }
+
+  private static Metar metar(String station, String date, String time) throws Exception {
+    return MetarParser.parseRecord(date + "\n" + station + " " + time + " 34010KT 10SM CLR 14/M07 A3012\n");
+  }
+
+  public void testNextReportTime() throws Exception {
+    long observed = metar("KLAX", "2004/01/06 02:53", "060253Z").getDateValue();
+    assertEquals(observed + 60 * MINUTE, MetarCache.nextReportTime(observed));
+    assertEquals(observed, MetarCache.nextReportTime(observed - 20 * MINUTE));
+    assertEquals(observed, MetarCache.nextReportTime(observed - 1));
+  }
+
+  public void testExpiryTime() throws Exception {
+    MetarCache cache = new MetarCache(10);
+    Metar metar = metar("KLAX", "2004/01/06 02:53", "060253Z");
+    long observed = metar.getDateValue();
+
+    // fetched soon after publication: kept until the next one is out
+    assertEquals(observed + 65 * MINUTE, cache.expiryTime(metar, observed + 5 * MINUTE));
+    // the next report is late: check again after the minimum ttl
+    assertEquals(observed + 67 * MINUTE, cache.expiryTime(metar, observed + 65 * MINUTE));
+    // a report from the future is kept no longer than the maximum ttl
+    assertEquals(observed - 5 * MINUTE, cache.expiryTime(metar, observed - 65 * MINUTE));
+
+    assertEquals(1000 + MetarCache.DEFAULT_MIN_TTL, cache.expiryTime(new Metar(), 1000));
+  }
+
+  public void testExpiry() throws Exception {
+    MetarCache cache = new MetarCache(10, 50, 50);
+    Metar metar = metar("KLAX", "2004/01/06 02:53", "060253Z");
+    cache.put("KLAX", metar);
+    assertSame(metar, cache.get("KLAX"));
+    Thread.sleep(100);
+    assertNull(cache.get("KLAX"));
+    assertEquals(1, cache.size());
+  }
+
+  public void testLeastRecentlyUsedEviction() throws Exception {
+    MetarCache cache = new MetarCache(2, MINUTE, MINUTE);
+    cache.put("KLAX", metar("KLAX", "2004/01/06 02:53", "060253Z"));
+    cache.put("KSFO", metar("KSFO", "2004/01/06 02:53", "060253Z"));
+    assertNotNull(cache.get("KLAX"));
+    cache.put("KSAN", metar("KSAN", "2004/01/06 02:53", "060253Z"));
+
+    assertEquals(2, cache.size());
+    assertNull(cache.get("KSFO"));
+    assertNotNull(cache.get("KLAX"));
+    assertNotNull(cache.get("KSAN"));
+    assertEquals(1, cache.getEvictions());
+  }
+
+  public void testStatistics() throws Exception {
+    MetarCache cache = new MetarCache(10, MINUTE, MINUTE);
+    assertEquals(0.0, cache.getHitRate(), 0.0);
+    cache.get("KLAX");
+    cache.put("KLAX", metar("KLAX", "2004/01/06 02:53", "060253Z"));
+    cache.get("KLAX");
+    cache.get("KLAX");
+    cache.get("KLAX");
+    assertEquals(3, cache.getHits());
+    assertEquals(1, cache.getMisses());
+    assertEquals(0.75, cache.getHitRate(), 0.0);
+
+    cache.resetStatistics();
+    assertEquals(0, cache.getHits());
+    assertEquals(0, cache.getMisses());
+  }
+}
@@ -0,0 +1,218 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.metar.*;
+import junit.framework.TestCase;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Fetches station files from an embedded HTTP server standing in for the
+ * NOAA site.
+ */
+public class MetarFetcherTest extends TestCase {
+  static {
+    // the server writes headers and body separately, without this every
+    // response waits for a delayed ACK
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private HttpServer server;
+
+  private MetarFetcher fetcher;
+
+  // client ports of the connections the server has seen
+  private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+  public MetarFetcherTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(MetarFetcherTest.class);
+  }
+
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/stations/", new StationHandler(clientPorts));
+    server.start();
+    fetcher = new MetarFetcher(baseURL(), 5000);
+  }
+
+  protected void tearDown() throws Exception {
+    fetcher.close();
+    server.stop(0);
+  }
+
+  private String baseURL() {
+    return "http://127.0.0.1:" + server.getAddress().getPort() + "/stations/";
+  }
+
+  static final String LAST_MODIFIED = "Tue, 06 Jan 2004 02:55:00 GMT";
+
+  static String etag(String station) {
+    return "\"" + station + "-060250\"";
+  }
+
+  /**
+   * @return true if the request asks for a file the client already has, in
+   *         which case a 304 response has been sent
+   */
+  static boolean notModified(HttpExchange exchange, String station) throws IOException {
+    String etag = exchange.getRequestHeaders().getFirst("If-None-Match");
+    String since = exchange.getRequestHeaders().getFirst("If-Modified-Since");
+    if (etag != null ? etag.equals(etag(station)) : LAST_MODIFIED.equals(since)) {
+      // the JDK server may drop the connection after a response without a
+      // body, keep the client from reusing it
+      exchange.getResponseHeaders().set("Connection", "close");
+      exchange.sendResponseHeaders(304, -1);
+      exchange.close();
+      return true;
+    }
+    exchange.getResponseHeaders().set("ETag", etag(station));
+    exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+    return false;
+  }
+
+  static String stationFile(String station) {
+    return "2004/01/06 02:50\n" + station + " 060250Z 34010KT 10SM CLR 14/M07 A3012\n";
+  }
+
+  public void testFetchAsync() throws Exception {
+    String metarData = fetcher.fetchAsync("KLAX").get(10, TimeUnit.SECONDS);
+    assertEquals(stationFile("KLAX") + "\n", metarData);
+    assertEquals("KLAX", MetarParser.parseRecord(metarData).getStationID());
+  }
+
+  public void testMissingStation() throws Exception {
+    try {
+      fetcher.fetchBytesAsync("NONE").get(10, TimeUnit.SECONDS);
+      fail("there is no station NONE");
+    }
+    catch (ExecutionException e) {
+      assertTrue(e.getCause() instanceof IOException);
+    }
+  }
+
+  public void testManyStationsInFlight() throws Exception {
+    CompletableFuture<?>[] futures = new CompletableFuture<?>[200];
+    for (int i = 0; i < futures.length; i++) {
+      futures[i] = fetcher.fetchAsync("K" + (100 + i));
+    }
+    CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+    for (int i = 0; i < futures.length; i++) {
+      assertEquals(stationFile("K" + (100 + i)) + "\n", futures[i].get());
+    }
+  }
+
+  public void testConditionalGet() throws Exception {
+    StationFile first = fetcher.fetchFileAsync("KLAX", 5000, null).get(10, TimeUnit.SECONDS);
+    assertEquals(stationFile("KLAX"), new String(first.getData(), "US-ASCII"));
+    assertEquals(etag("KLAX"), first.getETag());
+    assertEquals(LAST_MODIFIED, first.getLastModified());
+
+    StationFile second = fetcher.fetchFileAsync("KLAX", 5000, first).get(10, TimeUnit.SECONDS);
+    assertSame(first, second);
+
+    // another station's validators do not match
+    StationFile other = fetcher.fetchFileAsync("KSFO", 5000, first).get(10, TimeUnit.SECONDS);
+    assertNotSame(first, other);
+    assertEquals(stationFile("KSFO"), new String(other.getData(), "US-ASCII"));
+  }
+
+  public void testConnectionReuse() throws Exception {
+    MetarFetcher pooled = new MetarFetcher(baseURL(), 5000, 4, 2);
+    try {
+      for (int round = 0; round < 5; round++) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[10];
+        for (int i = 0; i < futures.length; i++) {
+          futures[i] = pooled.fetchAsync("K" + (100 + i));
+        }
+        CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+      }
+      // 50 downloads over at most two kept-alive connections
+      assertTrue(clientPorts.size() + " connections", clientPorts.size() <= 2);
+      assertTrue(pooled.getIdleConnections() > 0);
+    }
+    finally {
+      pooled.close();
+    }
+  }
+
+  public void testMaxConnectionsPerHost() throws Exception {
+    MetarFetcher pooled = new MetarFetcher(baseURL(), 5000, 4, 4);
+    try {
+      pooled.setMaxConnectionsPerHost("http://127.0.0.1:" + server.getAddress().getPort(), 1);
+      CompletableFuture<?>[] futures = new CompletableFuture<?>[20];
+      for (int i = 0; i < futures.length; i++) {
+        futures[i] = pooled.fetchAsync("K" + (100 + i));
+      }
+      CompletableFuture.allOf(futures).get(30, TimeUnit.SECONDS);
+      assertEquals(1, clientPorts.size());
+    }
+    finally {
+      pooled.close();
+    }
+  }
+
+  /**
+   * Serves a station file for every station but NONE.
+   */
+  static class StationHandler implements HttpHandler {
+    private final Set<Integer> clientPorts;
+
+    StationHandler(Set<Integer> clientPorts) {
+      this.clientPorts = clientPorts;
+    }
+
+    public void handle(HttpExchange exchange) throws IOException {
+      clientPorts.add(Integer.valueOf(exchange.getRemoteAddress().getPort()));
+      String path = exchange.getRequestURI().getPath();
+      String station = path.substring(path.lastIndexOf('/') + 1, path.length() - ".TXT".length());
+      if (station.equals("NONE")) {
+        // with no body at all the JDK server may reset the kept-alive
+        // connection before the next request on it
+        exchange.sendResponseHeaders(404, 2);
+        exchange.getResponseBody().write("no".getBytes());
+        exchange.close();
+        return;
+      }
+      if (notModified(exchange, station)) {
+        return;
+      }
+      byte[] body = stationFile(station).getBytes("US-ASCII");
+      exchange.sendResponseHeaders(200, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+    }
+  }
+}
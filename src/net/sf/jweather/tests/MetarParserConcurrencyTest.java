@@ -0,0 +1,161 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.metar.*;
+import junit.framework.TestCase;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Parses the same corpus from many threads at once and checks that every
+ * result is identical to the one produced by single-threaded parsing.
+ */
+public class MetarParserConcurrencyTest extends TestCase {
+  static final String[] RECORDS = {
+    "2004/01/06 02:50\nKLAX 060250Z 34010KT 10SM CLR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003",
+    "2004/01/23 12:00\nKMYV 231200Z AUTO 00000KT M1/4SM FG VV003 03/03 A3027 RMK AO2",
+    "2004/01/06 02:50\nKLAX 060250Z 34010KT 1/2SM BR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003",
+    "2004/01/06 02:50\nKLAX 060250Z 34010KT 1 1/2KM BR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003",
+    "2004/01/06 20:50\nLOXT 062050Z VRB03KT 10KM FEW060SC BKN120AC M10/M12 Q1025 BNK",
+    "2004/01/07 20:50\nLOWW 072050Z 15002KT 4000 -SN BR FEW008 SCT011 BKN067 M05/M06 Q1020 NOSIG 11490531 16490336",
+    "2004/01/30 06:15\nKVCB 300615Z AUTO 00000KT 2 1/2SM RA CLR 06/06 A3017 RMK AO2",
+    "2004/01/06 02:50\nKLAX 060250Z 34020MPS 10SM CLR 14/M07 A3012 RMK AO2 SLP199 T01441072 55003",
+    "2004/01/28 03:20\nEGPF 280320Z 30008KT CAVOK 01/M03 Q1006",
+    "2004/01/28 03:20\nEGPF 280320Z 30008KT 9999 01/M03 Q1006",
+    "2004/01/28 03:20\nEDDB 280320Z 21003KT 2300 BR FEW028 SCT062 01/M03 Q1000 NOSIG",
+    "2004/01/28 03:20\nEDDB 280320Z 21003KT 2300 NSC 01/M03 Q1000",
+    "2004/08/26 00:50\nKWHP 260050Z 16008KT 10SM SKC 28/ A2993",
+    "2004/08/26 00:50\nKWHP 260050Z 16008KT 10SM SKC /28 A2993",
+    "2004/08/26 06:54\nK12N 260654Z AUTO 00000KT 13/12 A3032 RMK AO2 SLP264 T01330117 PWINO TSNO",
+    "2004/09/03 00:50\nEGDL 030050Z 19006KT CAVOK 14/11 Q1018 BECMG 7000 HZ",
+    "2004/09/23 16:47\nKPAO 231647Z VRB05 30SM FEW150 20/12 A3005",
+    "2004/09/16 00:19\nKHSA 160019Z AUTO 02017KT 23/22 A2949 RMK",
+    "2004/09/20 08:50\nEGBJ 200850Z 23007G17KT 4000NE RADZ BKN009 BKN015 15/14 Q1006",
+    "2004/01/06 17:56\nKSFO 061756Z 28012KT 1/2SM R28L/2400FT FG VV002 12/11 A3001",
+    "2003/10/29 02:45\nKCNO 291753Z 26006KT 4SM HZ CLR A2991 RMK AO2 SLPNO 57007",
+    "2003/10/23 16:53\nKCNO 231653Z VRB04KT 1 3/4SM HZ BKN010 18/15 A2997 RMK AO2 SLP145 HZ FEW000 T01780150"
+  };
+
+  static final int ITERATIONS = 200;
+
+  public MetarParserConcurrencyTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(MetarParserConcurrencyTest.class);
+  }
+
+  public void testConcurrentParsingMatchesSingleThreaded() throws Exception {
+    final String[] expected = new String[RECORDS.length];
+    for (int i = 0; i < RECORDS.length; i++) {
+      expected[i] = describe(MetarParser.parseRecord(RECORDS[i]));
+    }
+
+    int threadCount = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+    final CountDownLatch start = new CountDownLatch(1);
+    final String[] failures = new String[threadCount];
+    Thread[] threads = new Thread[threadCount];
+
+    for (int t = 0; t < threadCount; t++) {
+      final int id = t;
+      threads[t] = new Thread("metar-parser-" + t) {
+        public void run() {
+          try {
+            start.await();
+            for (int n = 0; n < ITERATIONS; n++) {
+              // stagger the order so threads hit different reports at once
+              for (int i = 0; i < RECORDS.length; i++) {
+                int r = (i + id + n) % RECORDS.length;
+                String actual = describe(MetarParser.parseRecord(RECORDS[r]));
+                if (!expected[r].equals(actual)) {
+                  failures[id] = "record " + r + " expected <" + expected[r]
+                    + "> but was <" + actual + ">";
+                  return;
+                }
+              }
+            }
+          }
+          catch (Throwable e) {
+            failures[id] = e.toString();
+          }
+        }
+      };
+      threads[t].start();
+    }
+
+    start.countDown();
+    for (int t = 0; t < threadCount; t++) {
+      threads[t].join();
+    }
+    for (int t = 0; t < threadCount; t++) {
+      assertNull(failures[t], failures[t]);
+    }
+  }
+
+  /**
+   * @return a string covering every decoded value of the report, used to
+   * compare two parse results
+   */
+  static String describe(Metar metar) {
+    StringBuffer sb = new StringBuffer();
+    sb.append(metar.getStationID()).append('|')
+      .append(metar.getDate() == null ? null : Long.valueOf(metar.getDate().getTime())).append('|')
+      .append(metar.getDateString()).append('|')
+      .append(metar.getReportModifier()).append('|')
+      .append(metar.getWindDirection()).append('|')
+      .append(metar.getWindDirectionMin()).append('|')
+      .append(metar.getWindDirectionMax()).append('|')
+      .append(metar.getWindDirectionIsVariable()).append('|')
+      .append(metar.getWindSpeedInKnots()).append('|')
+      .append(metar.getWindGustsInKnots()).append('|')
+      .append(metar.getIsCavok()).append('|')
+      .append(metar.getVisibility()).append('|')
+      .append(metar.getVisibilityInKilometers()).append('|')
+      .append(metar.getVisibilityLessThan()).append('|')
+      .append(metar.getPressure()).append('|')
+      .append(metar.getTemperatureInCelsius()).append('|')
+      .append(metar.getTemperaturePreciseInCelsius()).append('|')
+      .append(metar.getDewPointInCelsius()).append('|')
+      .append(metar.getDewPointPreciseInCelsius()).append('|')
+      .append(metar.getIsNoSignificantChange()).append('|')
+      .append(metar.getBecoming());
+
+    Iterator<?> i = metar.getWeatherConditions().iterator();
+    while (i.hasNext()) {
+      sb.append("|wx:").append(((WeatherCondition) i.next()).getNaturalLanguageString());
+    }
+    i = metar.getSkyConditions().iterator();
+    while (i.hasNext()) {
+      sb.append("|sky:").append(((SkyCondition) i.next()).getNaturalLanguageString());
+    }
+    i = metar.getRunwayVisualRanges().iterator();
+    while (i.hasNext()) {
+      sb.append("|rvr:").append(((RunwayVisualRange) i.next()).getNaturalLanguageString());
+    }
+    i = metar.getObscurations().iterator();
+    while (i.hasNext()) {
+      sb.append("|obs:").append(((Obscuration) i.next()).getNaturalLanguageString());
+    }
+    return sb.toString();
+  }
+}
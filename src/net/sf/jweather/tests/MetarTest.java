@@ -22,6 +22,8 @@ package net.sf.jweather.tests;
 
 import net.sf.jweather.metar.*;
 import junit.framework.TestCase;
+import java.nio.ByteBuffer;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.TimeZone;
 
@@ -1158,4 +1160,257 @@ public void testMissingDewPoint() {
         fail("exception in testDirectionalVisibility. message: " + e.getMessage());
       }
    }
+   
+   public void testThreeDigitGustsAndVariableDirection() {
+      metarData = "2004/09/20 08:50\n";
+      metarData += "EGBJ 200850Z 27065G105KT 250V290 4000 BKN009 15/14 Q1006\n";
+
+      try {
+        metar = MetarParser.parseRecord(metarData);
+        assertEquals(new Integer(270), metar.getWindDirection());
+        assertEquals(new Float(65), metar.getWindSpeedInKnots());
+        assertEquals(new Float(105), metar.getWindGustsInKnots());
+        assertEquals(new Integer(250), metar.getWindDirectionMin());
+        assertEquals(new Integer(290), metar.getWindDirectionMax());
+        assertEquals(new Float(4000), metar.getVisibilityInMeters());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testThreeDigitGustsAndVariableDirection. message: " + e.getMessage());
+      }
+   }
+   
+   public void testParseReportFromCharArraySlice() {
+      String report = "KCNO 231653Z VRB04KT 1 3/4SM HZ BKN010 18/15 A2997 RMK AO2 SLP145 HZ FEW000 T01780150";
+      char[] buffer = ("junk " + report + " junk").toCharArray();
+
+      try {
+        metar = MetarParser.parseReport(buffer, 5, report.length());
+        assertEquals(report, metar.getReportString());
+        assertEquals("KCNO", metar.getStationID());
+        assertEquals(new Float(1.75), metar.getVisibility());
+        assertEquals(1, metar.getSkyConditions().size());
+        assertEquals(1, metar.getObscurations().size());
+        // the T-group following the obscuration must not be skipped
+        assertEquals(new Float(17.8), metar.getTemperaturePreciseInCelsius());
+        assertEquals(new Float(15.0), metar.getDewPointPreciseInCelsius());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testParseReportFromCharArraySlice. message: " + e.getMessage());
+      }
+   }
+   
+   public void testReportEndingInWeatherGroup() {
+      try {
+        metar = MetarParser.parseReport("KXXX 060250Z 34010KT 10SM -RA");
+        assertEquals(1, metar.getWeatherConditions().size());
+        assertEquals("-", metar.getWeatherCondition(0).getIntensity());
+        assertEquals("RA", metar.getWeatherCondition(0).getPhenomena());
+
+        metar = MetarParser.parseReport("KXXX 060250Z 34010KT 10SM CLR");
+        assertEquals(1, metar.getSkyConditions().size());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testReportEndingInWeatherGroup. message: " + e.getMessage());
+      }
+   }
+   
+   public void testParseRecordFromBytes() {
+      try {
+        for (int i = 0; i < MetarParserConcurrencyTest.RECORDS.length; i++) {
+          String record = MetarParserConcurrencyTest.RECORDS[i];
+          String expected = MetarParserConcurrencyTest.describe(MetarParser.parseRecord(record));
+          byte[] bytes = ("\n\n" + record + "\n\n").getBytes("US-ASCII");
+
+          metar = MetarParser.parseRecord(bytes, 2, record.length());
+          assertEquals(expected, MetarParserConcurrencyTest.describe(metar));
+          assertEquals(record.substring(record.indexOf('\n') + 1), metar.getReportString());
+
+          ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+          direct.put(bytes);
+          direct.position(2);
+          direct.limit(2 + record.length());
+          metar = MetarParser.parseRecord(direct);
+          assertEquals(expected, MetarParserConcurrencyTest.describe(metar));
+          assertEquals(2, direct.position());
+        }
+
+        String report = "EGBJ 200850Z 23007G17KT 4000NE RADZ BKN009 BKN015 15/14 Q1006";
+        metar = MetarParser.parseReport(report.getBytes("US-ASCII"), 0, report.length());
+        assertEquals(report, metar.getReportString());
+        assertEquals(new Float(17), metar.getWindGustsInKnots());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testParseRecordFromBytes. message: " + e.getMessage());
+      }
+   }
+   
+   public void testPrimitiveValues() {
+      try {
+        metar = MetarParser.parseReport("KWHP 260050Z 16008KT 10SM SKC 28/ A2993");
+        assertEquals(160, metar.getWindDirectionValue());
+        assertEquals(Metar.MISSING, metar.getWindDirectionMinValue());
+        assertEquals(8f, metar.getWindSpeedInKnotsValue(), 0f);
+        assertTrue(Float.isNaN(metar.getWindGustsInKnotsValue()));
+        assertNull(metar.getWindGustsInKnots());
+        assertNull(metar.getWindGustsInMPS());
+        assertEquals(10f, metar.getVisibilityValue(), 0f);
+        assertEquals(16093.44f, metar.getVisibilityInMetersValue(), 0.01f);
+        assertEquals(new Float(metar.getVisibilityInMetersValue()), metar.getVisibilityInMeters());
+        assertEquals(29.93f, metar.getPressureValue(), 0f);
+        assertEquals(1014, metar.getPressureInHectoPascalsValue());
+        assertEquals(28f, metar.getTemperatureInCelsiusValue(), 0f);
+        assertEquals(82.4f, metar.getTemperatureInFahrenheitValue(), 0f);
+        assertTrue(Float.isNaN(metar.getDewPointInCelsiusValue()));
+        assertTrue(Float.isNaN(metar.getDewPointMostPreciseInFahrenheitValue()));
+        assertNull(metar.getDewPointInCelsius());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testPrimitiveValues. message: " + e.getMessage());
+      }
+   }
+
+   public void testSharedConditions() {
+      try {
+        Metar first = MetarParser.parseReport("KSEA 101853Z 18012KT 8SM -RA FEW025 BKN250CB 09/06 A3002 RMK HZ FEW000");
+        Metar second = MetarParser.parseReport("KPDX 101855Z 20010KT 6SM -RA FEW025 OVC045 10/07 A3001 RMK HZ FEW000");
+        assertSame(first.getWeatherCondition(0), second.getWeatherCondition(0));
+        assertSame(first.getSkyCondition(0), second.getSkyCondition(0));
+        assertSame(first.getObscuration(0), second.getObscuration(0));
+        assertSame(first.getWeatherCondition(0), WeatherCondition.valueOf("-RA"));
+        assertSame(first.getSkyCondition(0), SkyCondition.valueOf("FEW025"));
+        assertSame(first.getSkyCondition(1), SkyCondition.valueOf("BKN250CB"));
+        assertSame(first.getObscuration(0), Obscuration.valueOf("HZ", "FEW000"));
+        assertEquals("Light Rain", first.getWeatherCondition(0).getNaturalLanguageString());
+        assertEquals("Broken clouds at 25000 feet (cumulonimbus)", first.getSkyCondition(1).getNaturalLanguageString());
+        assertTrue(WeatherCondition.valueOf("+TSRA").isThunderstorms());
+        assertTrue(SkyCondition.valueOf("CLR").isClear());
+        assertTrue(first.getSkyCondition(0).isShared());
+        assertFalse(new SkyCondition().isShared());
+      }
+      catch (Exception e) {
+        e.printStackTrace(System.err);
+        fail("exception in testSharedConditions. message: " + e.getMessage());
+      }
+      try {
+        SkyCondition.valueOf("FEW025").setDecodedContraction("a few clouds");
+        fail("shared SkyCondition was modified");
+      }
+      catch (UnsupportedOperationException e) {
+      }
+      // a copy can be changed and leaves the shared instance alone
+      SkyCondition few = SkyCondition.valueOf("FEW025").copy();
+      assertFalse(few.isShared());
+      few.setDecodedContraction("a few clouds");
+      assertEquals("a few clouds", few.getDecodedContraction());
+      assertEquals(2500, few.getHeight());
+      assertFalse("a few clouds".equals(SkyCondition.valueOf("FEW025").getDecodedContraction()));
+      WeatherCondition rain = WeatherCondition.valueOf("-RA").copy();
+      rain.setDecodedIntensity("slight");
+      assertTrue(rain.isRain());
+      assertFalse(Obscuration.valueOf("HZ", "FEW000").copy().isShared());
+      try {
+        WeatherCondition.valueOf("XX");
+        fail("XX is not a weather group");
+      }
+      catch (IllegalArgumentException e) {
+      }
+   }
+
+   public void testDecodedCodes() {
+      WeatherCondition condition = WeatherCondition.valueOf("+FZDZ");
+      assertEquals("Freezing", condition.getDecodedDescriptor());
+      assertEquals("Drizzle", condition.getDecodedPhenomena());
+      assertTrue(condition.isFreezing() && condition.isDrizzle());
+      condition = WeatherCondition.valueOf("FC");
+      assertTrue(condition.isFunnelCloud() && condition.isTornado());
+      assertNull(condition.getDecodedDescriptor());
+      SkyCondition sky = SkyCondition.valueOf("SCT040TCU");
+      assertEquals("Scattered", sky.getDecodedContraction());
+      assertEquals("Tower Cumulonimbus", sky.getDecodedModifier());
+      assertTrue(sky.isToweringCumulus());
+      assertNull(SkyCondition.valueOf("NSC").getDecodedContraction());
+      assertEquals("Slight Sand at 200 feet", Obscuration.valueOf("SA", "FEW002").getNaturalLanguageString());
+      try {
+        WeatherCondition.valueOf("RAX");
+        fail("RAX is not a weather group");
+      }
+      catch (IllegalArgumentException e) {
+      }
+   }
+
+   public void testTrace() throws Exception {
+      MetarTrace.setEnabled(true);
+      try {
+        MetarParser.parseReport("KLAX 290245Z 18012G25KT 10SM -RA BKN030 15/10 A2992 RMK AO2 T01500100");
+        MetarTrace trace = MetarTrace.get();
+        assertEquals(10, trace.size());
+        assertEquals("wind", trace.getGroup(2));
+        assertEquals("18012G25KT", trace.getToken(2));
+        assertEquals("direction=180 speed=12 unit=KT gusts=25", trace.getValues(2));
+        assertEquals("weather", trace.getGroup(4));
+        assertEquals("intensity=- phenomena=RA", trace.getValues(4));
+        assertEquals("T01500100", trace.getToken(9));
+        assertNull(trace.getError());
+
+        try {
+          MetarParser.parseReport("KLAX 290245Z 18012G25KT 10SM BKNXYZ");
+          fail("BKNXYZ has no height");
+        }
+        catch (MetarParseException e) {
+        }
+        assertSame(trace, MetarTrace.get());
+        assertEquals("sky", trace.getGroup(trace.size() - 1));
+        assertEquals("BKNXYZ", trace.getToken(trace.size() - 1));
+        assertEquals("", trace.getValues(trace.size() - 1));
+        assertNotNull(trace.getError());
+      }
+      finally {
+        MetarTrace.setEnabled(false);
+      }
+      assertNull(MetarTrace.get());
+   }
+
+   public void testReportTimeFromReference() throws Exception {
+      Metar metar = MetarParser.parseReport("KLAX 290245Z 18012KT 10SM CLR 15/10 A2992", Instant.parse("2004-03-01T10:00:00Z"));
+      assertEquals(Instant.parse("2004-02-29T02:45:00Z"), metar.getInstant());
+      assertEquals(metar.getDate().getTime(), metar.getDateValue());
+      // April has no 31st
+      assertEquals(Instant.parse("2004-03-31T12:00:00Z"), MetarTime.reportTime(31, 12, 0, Instant.parse("2004-05-01T00:00:00Z")));
+      assertEquals(Instant.parse("2003-12-31T23:50:00Z"), MetarTime.reportTime(31, 23, 50, Instant.parse("2004-01-01T00:00:00Z")));
+      // a report slightly ahead of the reference stays in the next month
+      assertEquals(Instant.parse("2004-02-01T00:05:00Z"), MetarTime.reportTime(1, 0, 5, Instant.parse("2004-01-31T23:30:00Z")));
+      for (int day = 1; day <= 28; day++) {
+        Instant reference = Instant.parse("2100-02-" + (day < 10 ? "0" : "") + day + "T06:00:00Z");
+        assertEquals(reference, MetarTime.reportTime(day, 6, 0, reference));
+      }
+      try {
+        MetarParser.parseReport("KLAX 320245Z 18012KT 10SM CLR 15/10 A2992", Instant.parse("2004-03-01T10:00:00Z"));
+        fail("there is no 32nd");
+      }
+      catch (MetarParseException e) {
+      }
+
+      assertEquals(Instant.parse("2004-01-06T02:50:00Z").toEpochMilli(), MetarParser.parseRecordDateString(" 2004/01/06 02:50 ").getTime());
+      try {
+        MetarParser.parseRecordDateString("2004/02/30 02:50");
+        fail("there is no 30 February");
+      }
+      catch (MetarParseException e) {
+      }
+   }
+
+   public void testEmptyListsNotStored() throws Exception {
+      Metar metar = MetarParser.parseReport("KLAX 060250Z 34010KT 10SM 14/M07 A3012");
+      // reports are shared once cached, so reading one must not change it
+      assertEquals(0, metar.getRunwayVisualRanges().size());
+      assertNotSame(metar.getRunwayVisualRanges(), metar.getRunwayVisualRanges());
+      assertNotSame(metar.getWeatherConditions(), metar.getWeatherConditions());
+      assertNotSame(metar.getSkyConditions(), metar.getSkyConditions());
+      assertNotSame(metar.getObscurations(), metar.getObscurations());
+   }
 }
@@ -0,0 +1,124 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.metar.*;
+import junit.framework.TestCase;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Decodes a cycle file large enough to be split many times and checks the
+ * results against a sequential CycleFileReader.
+ */
+public class ParallelCycleFileDecoderTest extends TestCase {
+  private byte[] cycleFile;
+
+  private List<String> expected;
+
+  public ParallelCycleFileDecoderTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(ParallelCycleFileDecoderTest.class);
+  }
+
+  protected void setUp() throws Exception {
+    StringBuffer sb = new StringBuffer();
+    for (int i = 0; i < 200; i++) {
+      for (int r = 0; r < MetarParserConcurrencyTest.RECORDS.length; r++) {
+        sb.append(MetarParserConcurrencyTest.RECORDS[r]).append("\n\n");
+      }
+      if (i % 20 == 0) {
+        sb.append("2004/01/06 02:50\nKLAX 06X250Z\n\n");
+      }
+    }
+    cycleFile = sb.toString().getBytes("US-ASCII");
+
+    final List<String> results = new ArrayList<String>();
+    new CycleFileReader(new ByteArrayInputStream(cycleFile)).readAll(new Recorder(results));
+    expected = results;
+  }
+
+  public void testOrdered() throws Exception {
+    List<String> results = new ArrayList<String>();
+    ParallelCycleFileDecoder decoder = new ParallelCycleFileDecoder(new ForkJoinPool(4));
+    ByteBuffer buffer = ByteBuffer.wrap(cycleFile);
+    int count = decoder.decode(buffer, new Recorder(results), true);
+    assertEquals(200 * MetarParserConcurrencyTest.RECORDS.length, count);
+    assertEquals(expected, results);
+    assertEquals(0, buffer.position());
+  }
+
+  public void testUnordered() throws Exception {
+    List<String> results = Collections.synchronizedList(new ArrayList<String>());
+    int count = new ParallelCycleFileDecoder().decode(ByteBuffer.wrap(cycleFile), new Recorder(results), false);
+    assertEquals(200 * MetarParserConcurrencyTest.RECORDS.length, count);
+    List<String> sorted = new ArrayList<String>(results);
+    Collections.sort(sorted);
+    List<String> sortedExpected = new ArrayList<String>(expected);
+    Collections.sort(sortedExpected);
+    assertEquals(sortedExpected, sorted);
+  }
+
+  public void testMappedFileInWindows() throws Exception {
+    File file = File.createTempFile("cycle", ".TXT");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(cycleFile);
+      out.close();
+      List<String> results = new ArrayList<String>();
+      // windows hold a few hundred records each
+      new ParallelCycleFileDecoder(new ForkJoinPool(4), 40000).decode(file, new Recorder(results), true);
+      assertEquals(expected, results);
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  /**
+   * Records the station and report of each Metar, and the record of each
+   * error.
+   */
+  static class Recorder implements MetarHandler {
+    private final List<String> results;
+
+    Recorder(List<String> results) {
+      this.results = results;
+    }
+
+    public void metar(Metar metar) {
+      results.add(metar.getStationID() + " " + metar.getDateValue() + " " + metar.getReportString());
+    }
+
+    public void error(MetarParseException exception) {
+      results.add("error " + exception.getRecord());
+    }
+  }
+}
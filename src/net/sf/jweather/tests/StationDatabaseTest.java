@@ -0,0 +1,160 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.station.*;
+import junit.framework.TestCase;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Writes station registries to a StationDatabase and reads them back.
+ */
+public class StationDatabaseTest extends TestCase {
+  public StationDatabaseTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(StationDatabaseTest.class);
+  }
+
+  static void assertSameStations(StationRegistry expected, StationRegistry actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.getId(i), actual.getId(i));
+      assertEquals(expected.getName(i), actual.getName(i));
+      assertEquals(expected.getCountry(i), actual.getCountry(i));
+      assertEquals(expected.getRegion(i), actual.getRegion(i));
+      assertEquals(expected.hasLocation(i), actual.hasLocation(i));
+      if (expected.hasLocation(i)) {
+        assertEquals(expected.getLatitude(i), actual.getLatitude(i), 0);
+        assertEquals(expected.getLongitude(i), actual.getLongitude(i), 0);
+      }
+      assertEquals(expected.getElevation(i), actual.getElevation(i));
+    }
+  }
+
+  static byte[] write(StationRegistry registry) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    StationDatabase.write(registry, out);
+    return out.toByteArray();
+  }
+
+  public void testRoundTrip() throws Exception {
+    StationRegistry registry = StationRegistry.load(
+      StationRegistryTest.stream(StationRegistryTest.STATIONS),
+      StationRegistryTest.stream(StationRegistryTest.DETAILS));
+    StationRegistry read = StationDatabase.read(new ByteArrayInputStream(write(registry)));
+    assertSameStations(registry, read);
+    assertEquals("KLAX", read.get("KLAX").getId());
+    assertNull(read.get("KSFO"));
+  }
+
+  public void testBundledStations() throws Exception {
+    StationRegistry text = StationRegistry.load(new File("stations.txt"),
+      new File("stations_detail.txt"));
+    byte[] bytes = write(text);
+
+    File file = File.createTempFile("stations", ".db");
+    try {
+      FileOutputStream out = new FileOutputStream(file);
+      out.write(bytes);
+      out.close();
+      assertSameStations(text, StationDatabase.read(file));
+    } finally {
+      file.delete();
+    }
+
+    // the build bundles the same database, which load() prefers
+    assertNotNull(StationRegistry.class.getResource(StationRegistry.DATABASE));
+    assertSameStations(text, StationRegistry.load());
+  }
+
+  static void assertCorrupt(byte[] bytes, String message) throws Exception {
+    try {
+      StationDatabase.read(new ByteArrayInputStream(bytes));
+      fail(message);
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+  static byte[] withInt(byte[] bytes, int offset, int value) {
+    byte[] copy = (byte[]) bytes.clone();
+    ByteBuffer.wrap(copy).putInt(offset, value);
+    return copy;
+  }
+
+  public void testCorrupt() throws Exception {
+    byte[] bytes = write(StationRegistry.load(
+      StationRegistryTest.stream(StationRegistryTest.STATIONS),
+      StationRegistryTest.stream(StationRegistryTest.DETAILS)));
+    byte[] truncated = new byte[bytes.length - 3];
+    System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+    try {
+      StationDatabase.read(new ByteArrayInputStream(truncated));
+      fail("read a truncated database");
+    } catch (IOException e) {
+      // expected
+    }
+
+    // the station count follows the magic number and version, then the
+    // count of station ids
+    assertCorrupt(withInt(bytes, 8, -1), "read a negative station count");
+    assertCorrupt(withInt(bytes, 8, Integer.MAX_VALUE), "read a huge station count");
+    assertCorrupt(withInt(bytes, 12, -1), "read a negative string count");
+    assertCorrupt(withInt(bytes, 12, Integer.MAX_VALUE), "read a huge string count");
+
+    // one station without an id
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    DataOutputStream data = new DataOutputStream(out);
+    data.write(bytes, 0, 8);
+    data.writeInt(1);
+    data.writeInt(1);
+    data.writeShort(-1);
+    data.writeInt(1);
+    data.writeShort(1);
+    data.writeByte('A');
+    for (int i = 0; i < 2; i++) {
+      data.writeInt(0);
+      data.writeShort(-1);
+    }
+    for (int i = 0; i < 3; i++) {
+      data.writeShort(0);
+    }
+    data.close();
+    assertCorrupt(out.toByteArray(), "read a station without an id");
+
+    bytes[0] = 'X';
+    try {
+      StationDatabase.read(new ByteArrayInputStream(bytes));
+      fail("read a database with a bad magic number");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+}
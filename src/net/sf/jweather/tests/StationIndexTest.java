@@ -0,0 +1,113 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.station.*;
+import junit.framework.TestCase;
+import java.util.Random;
+
+/**
+ * Checks nearest-station and radius queries against a linear scan of the
+ * bundled station lists.
+ */
+public class StationIndexTest extends TestCase {
+  public StationIndexTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(StationIndexTest.class);
+  }
+
+  public void testDistance() {
+    // KLAX to KJFK
+    assertEquals(3974, StationIndex.distance(33.94, -118.41, 40.64, -73.78), 5);
+    assertEquals(0, StationIndex.distance(10, 20, 10, 20), 0);
+    // across the date line
+    assertEquals(StationIndex.distance(0, 179.5, 0, -179.5), StationIndex.distance(0, -0.5, 0, 0.5), 1e-9);
+  }
+
+  public void testNearest() {
+    StationIndex index = StationIndex.getDefault();
+    StationRegistry registry = index.getRegistry();
+    int[] nearest = index.nearest(51.48, -0.45, 3);
+    assertEquals(3, nearest.length);
+    assertEquals("EGLL", registry.getId(nearest[0]));
+
+    Random random = new Random(42);
+    for (int n = 0; n < 200; n++) {
+      double latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double longitude = n < 20 ? 179.9 - 0.01 * n : 360 * random.nextDouble() - 180;
+      int k = 1 + random.nextInt(10);
+      int[] found = index.nearest(latitude, longitude, k);
+      assertEquals(k, found.length);
+      double[] expected = scan(registry, latitude, longitude);
+      for (int i = 0; i < k; i++) {
+        double distance = StationIndex.distance(latitude, longitude, registry.getLatitude(found[i]), registry.getLongitude(found[i]));
+        assertEquals(expected[i], distance, 1e-6);
+      }
+    }
+  }
+
+  public void testWithin() {
+    StationIndex index = StationIndex.getDefault();
+    StationRegistry registry = index.getRegistry();
+    Random random = new Random(7);
+    for (int n = 0; n < 100; n++) {
+      double latitude = Math.toDegrees(Math.asin(2 * random.nextDouble() - 1));
+      double longitude = 360 * random.nextDouble() - 180;
+      double radius = n == 0 ? 25000 : 1000 * random.nextDouble();
+      int[] found = index.within(latitude, longitude, radius);
+      double[] expected = scan(registry, latitude, longitude);
+      int count = 0;
+      while (count < expected.length && expected[count] <= radius - 1e-6) {
+        count++;
+      }
+      assertTrue(found.length >= count);
+      double previous = 0;
+      for (int i = 0; i < found.length; i++) {
+        double distance = StationIndex.distance(latitude, longitude, registry.getLatitude(found[i]), registry.getLongitude(found[i]));
+        assertTrue(distance <= radius + 1e-6);
+        assertTrue(distance >= previous - 1e-6);
+        previous = distance;
+      }
+    }
+    assertEquals(index.size(), index.within(0, 0, 25000).length);
+    assertEquals(0, index.nearest(0, 0, 0).length);
+  }
+
+  /**
+   * @return the distances of all stations with a location, sorted
+   */
+  private static double[] scan(StationRegistry registry, double latitude, double longitude) {
+    double[] distances = new double[registry.size()];
+    int n = 0;
+    for (int i = 0; i < registry.size(); i++) {
+      if (registry.hasLocation(i)) {
+        distances[n++] = StationIndex.distance(latitude, longitude, registry.getLatitude(i), registry.getLongitude(i));
+      }
+    }
+    double[] sorted = new double[n];
+    System.arraycopy(distances, 0, sorted, 0, n);
+    java.util.Arrays.sort(sorted);
+    return sorted;
+  }
+}
@@ -0,0 +1,112 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.station.*;
+import junit.framework.TestCase;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
+/**
+ * Loads station lists into a StationRegistry, both the bundled ones and
+ * small lists covering duplicate and incomplete entries.
+ */
+public class StationRegistryTest extends TestCase {
+  static final String STATIONS =
+    "KLAX=Los Angeles, Los Angeles International Airport;United States\r\n" +
+    "BIX1=Bogus;Nowhere\r\n";
+
+  static final String DETAILS =
+    "NUMBER CALL   NAME + COUNTRY/STATE   LAT   LON    ELEV  \r\n" +
+    "\r\n" +
+    "722950 KLAX   LOS ANGELES INTL AR CA +3393 -11840 +0030\r\n" +
+    "680235 FBMP   BOGUS BOTSWANA      BC                   \r\n" +
+    "920147 AYGA   GOROKA              NG -0606 +14538 +1587\r\n" +
+    "920100 AYGA   GOROKA ATS          NG -0606 +14539 +1588\r\n" +
+    "136120        DURRES              AB +4130 +01946 +0008\r\n";
+
+  public StationRegistryTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(StationRegistryTest.class);
+  }
+
+  static InputStream stream(String s) throws Exception {
+    return new ByteArrayInputStream(s.getBytes("ISO-8859-1"));
+  }
+
+  public void testLoad() throws Exception {
+    StationRegistry registry = StationRegistry.load(stream(STATIONS), stream(DETAILS));
+    // DURRES has no call letters
+    assertEquals(4, registry.size());
+    assertEquals("AYGA", registry.getId(0));
+    assertEquals(-1, registry.indexOf("KSFO"));
+    assertNull(registry.get("KSFO"));
+
+    Station klax = registry.get("KLAX");
+    assertEquals("KLAX", klax.getId());
+    assertEquals("Los Angeles, Los Angeles International Airport", klax.getName());
+    assertEquals("United States", klax.getCountry());
+    assertEquals("CA", klax.getRegion());
+    assertEquals(33.93, klax.getLatitude(), 1e-9);
+    assertEquals(-118.40, klax.getLongitude(), 1e-9);
+    assertEquals(30, klax.getElevation());
+
+    // the first of two entries is kept, the detail name is used if there is no other
+    Station ayga = registry.get("AYGA");
+    assertEquals("GOROKA", ayga.getName());
+    assertNull(ayga.getCountry());
+    assertEquals(-6.06, ayga.getLatitude(), 1e-9);
+    assertEquals(145.38, ayga.getLongitude(), 1e-9);
+    assertEquals(1587, ayga.getElevation());
+
+    Station fbmp = registry.get("FBMP");
+    assertFalse(fbmp.hasLocation());
+    assertTrue(Double.isNaN(fbmp.getLatitude()));
+    assertEquals(StationRegistry.MISSING, fbmp.getElevation());
+
+    Station bix1 = registry.get("BIX1");
+    assertEquals("Nowhere", bix1.getCountry());
+    assertNull(bix1.getRegion());
+    assertFalse(bix1.hasLocation());
+  }
+
+  public void testDefault() throws Exception {
+    StationRegistry registry = StationRegistry.getDefault();
+    assertSame(registry, StationRegistry.getDefault());
+    assertTrue(registry.size() > 7000);
+
+    Station egll = registry.get("EGLL");
+    assertEquals("London / Heathrow Airport", egll.getName());
+    assertEquals(51.48, egll.getLatitude(), 1e-9);
+    assertEquals(-0.45, egll.getLongitude(), 1e-9);
+
+    // every station can be found again by its code
+    for (int i = 0; i < registry.size(); i++) {
+      assertEquals(i, registry.indexOf(registry.getId(i)));
+      if (i > 0) {
+        assertTrue(registry.getId(i - 1).compareTo(registry.getId(i)) < 0);
+      }
+    }
+  }
+}
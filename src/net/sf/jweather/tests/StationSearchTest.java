@@ -0,0 +1,114 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.station.*;
+import junit.framework.TestCase;
+
+/**
+ * Looks up stations by name, country and code with a StationSearch.
+ */
+public class StationSearchTest extends TestCase {
+  static final String STATIONS =
+    "EGLL=London / Heathrow Airport;United Kingdom\r\n" +
+    "EGLC=London City Airport;United Kingdom\r\n" +
+    "CYXU=London, Ont.;Canada\r\n" +
+    "LSZH=Z\u00fcrich-Kloten;Switzerland\r\n" +
+    "KLAX=Los Angeles, Los Angeles International Airport;United States\r\n" +
+    "KSFO=San Francisco, San Francisco International Airport;United States\r\n";
+
+  static final String DETAILS =
+    "NUMBER CALL   NAME + COUNTRY/STATE   LAT   LON    ELEV  \r\n";
+
+  StationSearch search;
+
+  public StationSearchTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(StationSearchTest.class);
+  }
+
+  protected void setUp() throws Exception {
+    search = new StationSearch(StationRegistry.load(
+      StationRegistryTest.stream(STATIONS), StationRegistryTest.stream(DETAILS)));
+  }
+
+  String[] ids(String query, int limit) {
+    int[] found = search.search(query, limit);
+    String[] ids = new String[found.length];
+    for (int i = 0; i < found.length; i++) {
+      ids[i] = search.getRegistry().getId(found[i]);
+    }
+    return ids;
+  }
+
+  void assertIds(String[] expected, String[] actual) {
+    assertEquals(java.util.Arrays.asList(expected), java.util.Arrays.asList(actual));
+  }
+
+  public void testPrefix() throws Exception {
+    // the shortest name first when all match as well
+    assertIds(new String[] {"CYXU", "EGLC", "EGLL"}, ids("lond", 10));
+    assertIds(new String[] {"CYXU"}, ids("lond", 1));
+    assertIds(new String[] {"EGLL"}, ids("Heathrow, LON", 10));
+    assertIds(new String[] {"EGLC", "EGLL"}, ids("united king", 10));
+    assertIds(new String[] {"KSFO"}, ids("san fr", 10));
+    // accents and case are ignored
+    assertIds(new String[] {"LSZH"}, ids("ZURICH", 10));
+    assertIds(new String[] {"LSZH"}, ids("z\u00fcr", 10));
+    assertEquals(0, search.search("", 10).length);
+    assertEquals(0, search.search(" / ", 10).length);
+    assertEquals(0, search.search("london", 0).length);
+  }
+
+  public void testRanking() throws Exception {
+    // a whole word ranks above a prefix, a code typed in full above both
+    assertIds(new String[] {"KLAX", "KSFO"}, ids("international", 10));
+    assertIds(new String[] {"KLAX"}, ids("klax", 10));
+    assertEquals("EGLL", ids("egll", 10)[0]);
+    // every word has to match
+    assertEquals(0, search.search("klax london", 10).length);
+  }
+
+  public void testFuzzy() throws Exception {
+    assertIds(new String[] {"EGLL"}, ids("londn heatrow", 10));
+    assertIds(new String[] {"KSFO"}, ids("san fransisco", 10));
+    // misspelled words only match if too few stations match exactly
+    assertIds(new String[] {"EGLL"}, ids("heathrow", 10));
+    assertEquals(0, search.search("xyzzy", 10).length);
+    // codes have to be typed right
+    assertEquals(0, search.search("kxla", 10).length);
+  }
+
+  public void testDefault() throws Exception {
+    StationSearch search = StationSearch.getDefault();
+    assertSame(search, StationSearch.getDefault());
+    assertSame(StationRegistry.getDefault(), search.getRegistry());
+    int[] found = search.search("heathrow", 5);
+    assertEquals("EGLL", search.getRegistry().getId(found[0]));
+    found = search.search("lax", 5);
+    assertTrue(found.length > 0);
+    found = search.search("KLAX", 5);
+    assertEquals("KLAX", search.getRegistry().getId(found[0]));
+  }
+}
@@ -0,0 +1,349 @@
+/*
+jWeather(TM) is a Java library for parsing raw weather data
+Copyright (C) 2004 David Castro
+
+This library is free software; you can redistribute it and/or
+modify it under the terms of the GNU Lesser General Public
+License as published by the Free Software Foundation; either
+version 2.1 of the License, or (at your option) any later version.
+
+This library is distributed in the hope that it will be useful,
+but WITHOUT ANY WARRANTY; without even the implied warranty of
+MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+Lesser General Public License for more details.
+
+You should have received a copy of the GNU Lesser General Public
+License along with this library; if not, write to the Free Software
+Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+For more information, please email arimus@users.sourceforge.net
+*/
+package net.sf.jweather.tests;
+
+import net.sf.jweather.*;
+import net.sf.jweather.metar.*;
+import net.sf.jweather.station.*;
+import junit.framework.TestCase;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Gets batches of stations from an embedded HTTP server that answers every
+ * request after a delay.
+ */
+public class WeatherTest extends TestCase {
+  static {
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private static final int DELAY = 200;
+
+  private HttpServer server;
+
+  private ExecutorService executor;
+
+  private MetarFetcher fetcher;
+
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final AtomicInteger maxInFlight = new AtomicInteger();
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private final AtomicInteger conditional = new AtomicInteger();
+
+  // stations whose report is from ten minutes ago rather than from 2004
+  private final Set<String> fresh = ConcurrentHashMap.newKeySet();
+
+  // stations that never answer
+  private final Set<String> silent = ConcurrentHashMap.newKeySet();
+
+  public WeatherTest(String str) {
+    super(str);
+  }
+
+  public static void main(String args[]) {
+    junit.textui.TestRunner.run(WeatherTest.class);
+  }
+
+  protected void setUp() throws Exception {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/stations/", new SlowHandler());
+    executor = Executors.newCachedThreadPool();
+    server.setExecutor(executor);
+    server.start();
+    fetcher = new MetarFetcher("http://127.0.0.1:" + server.getAddress().getPort() + "/stations/", 5000, 64, 64);
+  }
+
+  protected void tearDown() throws Exception {
+    Weather.setFetcher(null);
+    Weather.setCycleURL(null);
+    Weather.setFailover(0, 0, 0);
+    fetcher.close();
+    server.stop(0);
+    executor.shutdownNow();
+  }
+
+  private static List<String> stations(int count) {
+    List<String> stations = new ArrayList<String>();
+    for (int i = 0; i < count; i++) {
+      stations.add("K" + (100 + i));
+    }
+    return stations;
+  }
+
+  public void testGetMetars() throws Exception {
+    List<String> stations = stations(20);
+    long start = System.nanoTime();
+    Map<String, MetarResult> results = Weather.getMetars(fetcher, stations, 20, 5000);
+    long millis = (System.nanoTime() - start) / 1000000;
+
+    assertEquals(stations, new ArrayList<String>(results.keySet()));
+    for (MetarResult result : results.values()) {
+      assertTrue(result.toString(), result.isSuccess());
+      assertEquals(result.getStation(), result.getMetar().getStationID());
+    }
+    // one round of downloads, not twenty of them in turn
+    assertTrue(millis + " ms", millis < 10 * DELAY);
+  }
+
+  public void testParallelismLimit() throws Exception {
+    Map<String, MetarResult> results = Weather.getMetars(fetcher, stations(12), 3, 5000);
+    assertEquals(12, results.size());
+    assertTrue(maxInFlight.get() + " in flight", maxInFlight.get() <= 3);
+  }
+
+  public void testErrors() throws Exception {
+    Map<String, MetarResult> results = Weather.getMetars(fetcher, Arrays.asList(new String[] { "KLAX", "NONE", "BAD", "KLAX" }), 2, 5000);
+    assertEquals(3, results.size());
+    assertTrue(results.get("KLAX").isSuccess());
+
+    MetarResult missing = results.get("NONE");
+    assertFalse(missing.isSuccess());
+    assertNull(missing.getMetar());
+    assertTrue(missing.getError() instanceof IOException);
+
+    MetarResult bad = results.get("BAD");
+    assertTrue(bad.toString(), bad.getError() instanceof MetarParseException);
+  }
+
+  public void testConcurrentGetMetar() throws Exception {
+    Weather.setFetcher(fetcher);
+    List<Callable<Metar>> calls = new ArrayList<Callable<Metar>>();
+    for (int i = 0; i < 20; i++) {
+      calls.add(new Callable<Metar>() {
+        public Metar call() {
+          return Weather.getMetar("KLAX", 5000);
+        }
+      });
+    }
+    ExecutorService threads = Executors.newFixedThreadPool(20);
+    try {
+      List<Future<Metar>> futures = threads.invokeAll(calls);
+      Metar first = futures.get(0).get();
+      assertEquals("KLAX", first.getStationID());
+      for (Future<Metar> future : futures) {
+        assertSame(first, future.get());
+      }
+    }
+    finally {
+      threads.shutdown();
+    }
+    // all threads shared one download, later ones were served by the cache
+    assertEquals(1, requests.get());
+    assertEquals(1, Weather.getCache().size());
+    assertSame(Weather.getMetar("KLAX", 5000), Weather.getMetars(Arrays.asList(new String[] { "KLAX" })).get("KLAX").getMetar());
+    assertEquals(1, requests.get());
+  }
+
+  public void testRevalidation() throws Exception {
+    Weather.setFetcher(fetcher);
+    Metar metar = Weather.getMetar("KLAX", 5000);
+    assertNotNull(metar);
+    Weather.getCache().invalidate("KLAX");
+    assertSame(metar, Weather.getMetar("KLAX", 5000));
+    assertEquals(2, requests.get());
+    assertEquals(1, conditional.get());
+  }
+
+  public void testLoadCycle() throws Exception {
+    File dir = File.createTempFile("cycles", "");
+    dir.delete();
+    dir.mkdir();
+    File file = new File(dir, "05Z.TXT");
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write((MetarFetcherTest.stationFile("KLAX") + "\n" +
+                 MetarFetcherTest.stationFile("KSFO") + "\n" +
+                 "garbage\n\n" +
+                 "2004/01/06 01:50\nKLAX 060150Z 00000KT 10SM CLR 10/M07 A3012\n").getBytes("US-ASCII"));
+    }
+    finally {
+      out.close();
+    }
+    try {
+      Weather.setFetcher(fetcher);
+      Weather.setCycleURL(dir.toURI().toString());
+      assertEquals(2, Weather.loadCycle(5, 0));
+
+      // served from the cache, the earlier KLAX report did not replace the later one
+      Metar metar = Weather.getMetar("KLAX", 5000);
+      assertEquals(14, metar.getTemperatureInCelsiusValue(), 0.0);
+      assertEquals("KSFO", Weather.getMetar("KSFO", 5000).getStationID());
+      assertEquals(0, requests.get());
+
+      try {
+        Weather.loadCycle(6, 0);
+        fail("there is no 06Z cycle file");
+      }
+      catch (IOException e) {
+      }
+    }
+    finally {
+      file.delete();
+      dir.delete();
+    }
+  }
+
+  static String freshFile(String station) {
+    ZonedDateTime time = ZonedDateTime.now(ZoneOffset.UTC).minusMinutes(10);
+    return time.format(DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm")) + "\n" + station + " " + time.format(DateTimeFormatter.ofPattern("ddHHmm")) + "Z 34010KT 10SM CLR 14/M07 A3012\n";
+  }
+
+  public void testFailover() throws Exception {
+    StationRegistry registry = StationIndex.getDefault().getRegistry();
+    Station klax = registry.get("KLAX");
+    int[] nearby = StationIndex.getDefault().nearest(klax.getLatitude(), klax.getLongitude(), 4);
+    assertEquals("KLAX", registry.getId(nearby[0]));
+    String neighbour = registry.getId(nearby[2]);
+    fresh.add(neighbour);
+    Weather.setFetcher(fetcher);
+
+    // failover is off
+    MetarResult result = Weather.getFreshMetar("KLAX", 5000);
+    assertEquals("KLAX", result.getSource());
+    assertFalse(result.isSubstitute());
+
+    Weather.setFailover(2 * 60 * 60 * 1000L, 3, 200);
+    result = Weather.getFreshMetar("KLAX", 5000);
+    assertTrue(result.toString(), result.isSubstitute());
+    assertEquals("KLAX", result.getStation());
+    assertEquals(neighbour, result.getSource());
+    assertSame(result.getMetar(), Weather.getMetar("KLAX", 5000));
+
+    // a fresh report of the station itself is kept
+    fresh.add("KSFO");
+    Weather.getCache().clear();
+    assertEquals("KSFO", Weather.getMetar("KSFO", 5000).getStationID());
+
+    // no nearby station is fresher, the station's own report is returned
+    Weather.setFailover(2 * 60 * 60 * 1000L, 3, 1);
+    assertEquals("KLAX", Weather.getFreshMetar("KLAX", 5000).getSource());
+  }
+
+  public void testFailoverDeadline() throws Exception {
+    StationRegistry registry = StationIndex.getDefault().getRegistry();
+    Station klax = registry.get("KLAX");
+    int[] nearby = StationIndex.getDefault().nearest(klax.getLatitude(), klax.getLongitude(), 4);
+    silent.add(registry.getId(nearby[1]));
+    String neighbour = registry.getId(nearby[2]);
+    fresh.add(neighbour);
+    Weather.setFetcher(fetcher);
+
+    // without a timeout of its own the lookup waits for the failover timeout
+    Weather.setFailover(2 * 60 * 60 * 1000L, 3, 200, 1000);
+    long start = System.currentTimeMillis();
+    MetarResult result = Weather.getFreshMetar("KLAX", 0);
+    long elapsed = System.currentTimeMillis() - start;
+    assertEquals(neighbour, result.getSource());
+    assertTrue("took " + elapsed + " ms", elapsed >= 1000 && elapsed < 3000);
+
+    // a silent station itself gives up at the deadline too
+    start = System.currentTimeMillis();
+    result = Weather.getFreshMetar(registry.getId(nearby[1]), 800);
+    elapsed = System.currentTimeMillis() - start;
+    assertTrue("took " + elapsed + " ms", elapsed < 2000);
+  }
+
+  public void testClosedFetcher() throws Exception {
+    fetcher.close();
+    Map<String, MetarResult> results = Weather.getMetars(fetcher, stations(5), 2, 5000);
+    assertEquals(5, results.size());
+    for (MetarResult result : results.values()) {
+      assertFalse(result.isSuccess());
+    }
+  }
+
+  /**
+   * Serves station files after a delay; NONE does not exist and BAD has no
+   * report.
+   */
+  class SlowHandler implements HttpHandler {
+    public void handle(HttpExchange exchange) throws IOException {
+      requests.incrementAndGet();
+      int now = inFlight.incrementAndGet();
+      for (int max; now > (max = maxInFlight.get()) && !maxInFlight.compareAndSet(max, now);) {
+      }
+      try {
+        Thread.sleep(DELAY);
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      String path = exchange.getRequestURI().getPath();
+      String station = path.substring(path.lastIndexOf('/') + 1, path.length() - ".TXT".length());
+      inFlight.decrementAndGet();
+      if (silent.contains(station)) {
+        try {
+          // until the server is stopped
+          Thread.sleep(60000);
+        }
+        catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        exchange.close();
+        return;
+      }
+      if (station.equals("NONE")) {
+        // with no body at all the JDK server may reset the kept-alive
+        // connection before the next request on it
+        exchange.sendResponseHeaders(404, 2);
+        exchange.getResponseBody().write("no".getBytes());
+        exchange.close();
+        return;
+      }
+      if (exchange.getRequestHeaders().containsKey("If-None-Match")) {
+        conditional.incrementAndGet();
+      }
+      if (MetarFetcherTest.notModified(exchange, station)) {
+        return;
+      }
+      String file = station.equals("BAD") ? "garbage\n" : fresh.contains(station) ? freshFile(station) : MetarFetcherTest.stationFile(station);
+      byte[] body = file.getBytes("US-ASCII");
+      exchange.sendResponseHeaders(200, body.length);
+      OutputStream out = exchange.getResponseBody();
+      out.write(body);
+      out.close();
+    }
+  }
+}